@@ -0,0 +1,58 @@
+package benchmark;
+
+import main.models.InterestRule;
+import main.repository.BankDataStoreI;
+
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rules and account histories used by the benchmarks. Histories are spread over the current year up to
+ * {@link #LAST_DATE}, with most postings in June so the June statement has many transactions.
+ */
+final class Fixtures {
+
+    static final int YEAR = Year.now().getValue();
+    static final String LAST_DATE = YEAR + "1231";
+
+    private Fixtures() {
+
+    }
+
+    /**
+     * @return - Rules spread evenly over the current year, changing the rate on every rule
+     */
+    static List<InterestRule> rules(int ruleCount) {
+        List<InterestRule> rules = new ArrayList<>(ruleCount);
+        LocalDate firstDay = LocalDate.of(YEAR, 1, 1);
+        int spacing = Math.max(1, firstDay.lengthOfYear() / ruleCount);
+        for (int i = 0; i < ruleCount; i++) {
+            rules.add(new InterestRule(firstDay.plusDays((long) i * spacing), "RULE" + i, 10_000L + i * 100L));
+        }
+        return rules;
+    }
+
+    static void addRules(BankDataStoreI dataStore, int ruleCount) {
+        for (InterestRule rule : rules(ruleCount)) {
+            dataStore.addInterestRule(rule);
+        }
+    }
+
+    /**
+     * Posts a deposit in May, then the given number of alternating deposits and withdrawals in June.
+     */
+    static void addHistory(BankDataStoreI dataStore, String account, int historyLength) throws ParseException {
+        dataStore.deposit(account, YEAR + "0501", 1_000_000L, "D");
+        for (int i = 0; i < historyLength; i++) {
+            String date = String.format("%d06%02d", YEAR, 1 + i * 30 / historyLength);
+            if (i % 2 == 0) {
+                dataStore.deposit(account, date, 500L, "D");
+            } else {
+                dataStore.withdrawIfSufficient(account, date, 300L);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package benchmark;
+
+import main.models.Transaction;
+import main.repository.IdempotencyIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claims of new postings and of replays in an index holding a window of a given number of postings, spread over its
+ * generations. The window is long enough that nothing expires while measuring.
+ */
+@State(Scope.Thread)
+public class IdempotencyBenchmark extends BenchmarkDefaults {
+
+    private static final int ACCOUNTS = 10_000;
+
+    @Param({"10000", "1000000"})
+    int windowPostings;
+
+    private IdempotencyIndex index;
+    private String[] accounts;
+    private long nextAmount;
+    private long replayed;
+
+    @Setup
+    public void setUp() {
+        long[] clock = new long[1];
+        long window = TimeUnit.MINUTES.toNanos(10);
+        // Generations of the index are only started by the clock here, not by their size
+        index = new IdempotencyIndex(window, windowPostings * 4, () -> clock[0]);
+        accounts = new String[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = "AC" + i;
+        }
+        for (int i = 0; i < windowPostings; i++) {
+            clock[0] = window * i / windowPostings;
+            index.claim(accounts[i % ACCOUNTS], 19509, Transaction.DEPOSIT, i + 1L, null);
+        }
+        nextAmount = windowPostings + 1L;
+    }
+
+    @Benchmark
+    public boolean claimNew() {
+        long amount = nextAmount++;
+        return index.claim(accounts[(int) (amount % ACCOUNTS)], 19509, Transaction.DEPOSIT, amount, null);
+    }
+
+    @Benchmark
+    public boolean claimReplay() {
+        long amount = replayed++ % windowPostings + 1L;
+        return index.claim(accounts[(int) ((amount - 1) % ACCOUNTS)], 19509, Transaction.DEPOSIT, amount, null);
+    }
+}
@@ -0,0 +1,66 @@
+package benchmark;
+
+import main.models.InterestRule;
+import main.repository.BankDataStore;
+import main.service.statement.StatementService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.List;
+
+/**
+ * Monthly interest of an account and interest over a date range, at varied rule counts and history lengths.
+ * <p>
+ * The statement service works on the shared data store, so every fork sets up its own rules and account in it.
+ */
+@State(Scope.Benchmark)
+public class InterestBenchmark extends BenchmarkDefaults {
+
+    private static final String ACCOUNT = "AC001";
+
+    @Param({"1", "12", "365"})
+    int ruleCount;
+
+    @Param({"10", "1000", "100000"})
+    int historyLength;
+
+    private StatementService statementService;
+    private List<InterestRule> rules;
+    private LocalDate startDate;
+    private LocalDate endDate;
+
+    @Setup
+    public void setUp() throws ParseException {
+        BankDataStore dataStore = BankDataStore.getInstance();
+        Fixtures.addRules(dataStore, ruleCount);
+        Fixtures.addHistory(dataStore, ACCOUNT, historyLength);
+        statementService = StatementService.getInstance();
+        rules = Fixtures.rules(ruleCount);
+        startDate = LocalDate.of(Fixtures.YEAR, 2, 10);
+        endDate = LocalDate.of(Fixtures.YEAR, 11, 20);
+    }
+
+    @Benchmark
+    public long generateMonthlyInterestForAccount() {
+        return statementService.generateMonthlyInterestForAccount(ACCOUNT, Month.JUNE);
+    }
+
+    @Benchmark
+    public long calculateInterestBetweenDates() {
+        return statementService.calculateInterestBetweenDates(startDate, endDate, 100_000L);
+    }
+
+    /**
+     * Same result as {@link #calculateInterestBetweenDates()}, with the rate calendar built from the rules on every call.
+     */
+    @Benchmark
+    public long calculateInterestBetweenDatesWithRuleList() {
+        return statementService.calculateInterestBetweenDates(startDate, endDate, 100_000L, rules);
+    }
+}
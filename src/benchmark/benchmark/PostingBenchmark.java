@@ -0,0 +1,51 @@
+package benchmark;
+
+import main.models.BankAccount;
+import main.models.PostingResult;
+import main.repository.BankDataStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.ParseException;
+
+/**
+ * Deposits and withdrawals on an account with a given history, accruing interest at a given number of rules. The
+ * account is rebuilt for every iteration, as every operation grows its history.
+ */
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PostingBenchmark extends BenchmarkDefaults {
+
+    @Param({"10", "10000"})
+    int historyLength;
+
+    @Param({"1", "365"})
+    int ruleCount;
+
+    private BankAccount bankAccount;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws ParseException {
+        BankDataStore dataStore = BankDataStore.newInstance();
+        Fixtures.addRules(dataStore, ruleCount);
+        Fixtures.addHistory(dataStore, "AC001", historyLength);
+        bankAccount = dataStore.getBankAccount("AC001");
+    }
+
+    @Benchmark
+    public PostingResult deposit() throws ParseException {
+        return bankAccount.deposit(Fixtures.LAST_DATE, 100L, "D");
+    }
+
+    @Benchmark
+    public PostingResult withdraw() throws ParseException {
+        // Keep the balance up, so that every withdrawal is posted
+        bankAccount.deposit(Fixtures.LAST_DATE, 100L, "D");
+        return bankAccount.withdraw(Fixtures.LAST_DATE, 100L);
+    }
+}
@@ -0,0 +1,70 @@
+package benchmark;
+
+import main.repository.BankDataStore;
+import main.service.query.AccountQueryService;
+import main.service.query.BalanceSummary;
+import main.util.DateCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.ParseException;
+import java.time.LocalDate;
+
+/**
+ * Point in time and date range queries over a history spread over ten years, ending at the end of this year.
+ * <p>
+ * The query service works on the shared data store, so every fork sets up its own account in it.
+ */
+@State(Scope.Benchmark)
+public class QueryBenchmark extends BenchmarkDefaults {
+
+    private static final String ACCOUNT = "AC001";
+    private static final int DAYS = 3650;
+
+    @Param({"1000", "1000000"})
+    int historyLength;
+
+    private AccountQueryService queryService;
+    private LocalDate date;
+    private LocalDate monthStart;
+    private LocalDate monthEnd;
+    private LocalDate yearStart;
+
+    @Setup
+    public void setUp() throws ParseException {
+        BankDataStore dataStore = BankDataStore.getInstance();
+        int firstDay = (int) LocalDate.of(Fixtures.YEAR, 12, 31).toEpochDay() - DAYS + 1;
+        dataStore.deposit(ACCOUNT, DateCodec.format(firstDay), 1_000_000L, "D");
+        for (int i = 0; i < historyLength; i++) {
+            String day = DateCodec.format(firstDay + (int) ((long) i * DAYS / historyLength));
+            if (i % 2 == 0) {
+                dataStore.deposit(ACCOUNT, day, 500L, "D");
+            } else {
+                dataStore.withdrawIfSufficient(ACCOUNT, day, 300L);
+            }
+        }
+        queryService = AccountQueryService.getInstance();
+        date = LocalDate.of(Fixtures.YEAR - 5, 6, 15);
+        monthStart = LocalDate.of(Fixtures.YEAR - 5, 6, 1);
+        monthEnd = LocalDate.of(Fixtures.YEAR - 5, 6, 30);
+        yearStart = LocalDate.of(Fixtures.YEAR - 5, 1, 1);
+    }
+
+    @Benchmark
+    public long getBalanceAsOf() {
+        return queryService.getBalanceAsOf(ACCOUNT, date);
+    }
+
+    @Benchmark
+    public int getTransactionsOfMonth() {
+        return queryService.getTransactions(ACCOUNT, monthStart, monthEnd).size();
+    }
+
+    @Benchmark
+    public BalanceSummary getDailyBalanceSummaryOfYear() {
+        return queryService.getDailyBalanceSummary(ACCOUNT, yearStart, yearStart.plusYears(1).minusDays(1));
+    }
+}
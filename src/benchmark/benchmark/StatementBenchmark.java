@@ -0,0 +1,48 @@
+package benchmark;
+
+import main.Main;
+import main.models.BankAccount;
+import main.repository.BankDataStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.text.ParseException;
+import java.time.Month;
+
+/**
+ * Rendering of the June statement of an account, written to a stream that discards it.
+ */
+@State(Scope.Benchmark)
+public class StatementBenchmark extends BenchmarkDefaults {
+
+    @Param({"10", "1000"})
+    int historyLength;
+
+    private BankAccount bankAccount;
+    private PrintStream console;
+
+    @Setup
+    public void setUp() throws ParseException {
+        BankDataStore dataStore = BankDataStore.newInstance();
+        Fixtures.addHistory(dataStore, "AC001", historyLength);
+        bankAccount = dataStore.getBankAccount("AC001");
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public void printAccountStatement() {
+        Main.printAccountStatement(bankAccount, Month.JUNE);
+    }
+}
@@ -0,0 +1,45 @@
+package benchmark;
+
+import main.models.BankAccount;
+import main.repository.BankDataStore;
+import main.service.statement.StatementLayout;
+import main.service.statement.StatementRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.time.YearMonth;
+
+/**
+ * Rendering of the June statement of an account in every layout, into a sink that only consumes the bytes.
+ */
+@State(Scope.Thread)
+public class StatementRendererBenchmark extends BenchmarkDefaults {
+
+    @Param({"10", "1000"})
+    int historyLength;
+
+    @Param({"TEXT", "CSV", "FIXED_WIDTH"})
+    StatementLayout layout;
+
+    private BankAccount bankAccount;
+    private StatementRenderer renderer;
+
+    @Setup
+    public void setUp(Blackhole blackhole) throws ParseException {
+        BankDataStore dataStore = BankDataStore.newInstance();
+        Fixtures.addHistory(dataStore, "AC001", historyLength);
+        bankAccount = dataStore.getBankAccount("AC001");
+        renderer = new StatementRenderer(layout, (bytes, offset, length) -> blackhole.consume(bytes[offset + length - 1]));
+    }
+
+    @Benchmark
+    public void renderStatement() throws IOException {
+        renderer.renderStatement(bankAccount, YearMonth.of(Fixtures.YEAR, 6));
+    }
+}
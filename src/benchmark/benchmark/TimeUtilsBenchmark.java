@@ -0,0 +1,43 @@
+package benchmark;
+
+import main.util.DateCodec;
+import main.util.TimeUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.ParseException;
+import java.time.LocalDate;
+
+/**
+ * Parsing and formatting of yyyyMMdd dates, done for every posting and every statement line.
+ */
+@State(Scope.Thread)
+public class TimeUtilsBenchmark extends BenchmarkDefaults {
+
+    private final String dateString = Fixtures.YEAR + "0626";
+    private final LocalDate date = LocalDate.of(Fixtures.YEAR, 6, 26);
+    private final int epochDay = (int) date.toEpochDay();
+    private final byte[] buffer = new byte[DateCodec.LENGTH];
+
+    @Benchmark
+    public LocalDate toLocalDate() throws ParseException {
+        return TimeUtils.toLocalDate(dateString);
+    }
+
+    @Benchmark
+    public String toDateString() {
+        return TimeUtils.toDateString(date);
+    }
+
+    @Benchmark
+    public int parseEpochDay() {
+        return DateCodec.parse(dateString);
+    }
+
+    @Benchmark
+    public byte[] formatIntoBuffer() {
+        DateCodec.format(epochDay, buffer, 0);
+        return buffer;
+    }
+}
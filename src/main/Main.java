@@ -2,26 +2,82 @@ package main;
 
 import main.models.BankAccount;
 import main.models.InterestRule;
+import main.models.PostingResult;
 import main.models.Transaction;
-import main.repository.BankDataStore;
+import main.repository.BankDataStoreProvider;
 import main.repository.BankDataStoreI;
+import main.repository.IdempotencyIndex;
+import main.server.BankingHttpServer;
+import main.service.close.CloseSummary;
+import main.service.close.MonthEndCloseService;
+import main.service.close.MonthEndCloseServiceI;
+import main.service.importer.ImportSummary;
+import main.service.importer.TransactionImportService;
+import main.service.importer.TransactionImportServiceI;
+import main.service.interchange.InterchangeReader;
+import main.service.interchange.InterchangeService;
+import main.service.interchange.InterchangeServiceI;
+import main.service.statement.StatementExportService;
+import main.service.statement.StatementExportServiceI;
+import main.service.statement.StatementLayout;
+import main.service.statement.StatementRenderer;
 import main.service.statement.StatementService;
+import main.service.statement.StatementSink;
 import main.service.statement.StatementServiceI;
+import main.util.DateCodec;
+import main.util.Money;
 import main.util.TimeUtils;
 
-import java.text.DecimalFormat;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
 import java.text.ParseException;
 import java.time.LocalDate;
 import java.time.Month;
 import java.time.Year;
+import java.time.YearMonth;
 import java.util.*;
 
 public class Main {
 
-    private static final BankDataStoreI DATA_STORE = BankDataStore.getInstance();
+    private static final BankDataStoreI DATA_STORE = BankDataStoreProvider.getDataStore();
     private static final StatementServiceI STATEMENT_SERVICE = StatementService.getInstance();
+    private static final TransactionImportServiceI IMPORT_SERVICE = TransactionImportService.getInstance();
+    private static final MonthEndCloseServiceI CLOSE_SERVICE = MonthEndCloseService.getInstance();
+    private static final InterchangeServiceI INTERCHANGE_SERVICE = InterchangeService.getInstance();
+    private static final StatementExportServiceI STATEMENT_EXPORT_SERVICE = StatementExportService.getInstance();
+    // Writes to the System.out of the moment, so statements follow a redirected console
+    private static final StatementSink CONSOLE_SINK = (bytes, offset, length) -> {
+        System.out.write(bytes, offset, length);
+        System.out.flush();
+    };
+    private static final StatementRenderer CONSOLE_RENDERER = new StatementRenderer(StatementLayout.TEXT, CONSOLE_SINK);
 
     public static void main(String[] args) throws ParseException {
+        // Fails fast on invalid interest settings, before any interest is calculated with them
+        Money.InterestSettings.validate();
+        if (args.length > 0 && "import".equalsIgnoreCase(args[0])) {
+            importTransactions(args);
+            return;
+        }
+        if (args.length > 0 && "export".equalsIgnoreCase(args[0])) {
+            exportData(args);
+            return;
+        }
+        if (args.length > 0 && "close".equalsIgnoreCase(args[0])) {
+            closeMonth(args);
+            return;
+        }
+        if (args.length > 0 && "statements".equalsIgnoreCase(args[0])) {
+            exportStatements(args);
+            return;
+        }
+        if (args.length > 0 && "server".equalsIgnoreCase(args[0])) {
+            startServer(args);
+            return;
+        }
+
         Scanner scanner = new Scanner(System.in);
 
         while (true) {
@@ -73,10 +129,10 @@ public class Main {
         String date = parts[0];
         String accountNumber = parts[1];
         String type = parts[2];
-        double amount;
+        long amount;
 
         try {
-            amount = Double.parseDouble(parts[3]);
+            amount = Money.parse(parts[3]);
         } catch (NumberFormatException e) {
             System.out.println("Invalid amount. Please enter a valid number.");
             return;
@@ -92,28 +148,155 @@ public class Main {
             return;
         }
 
-        if (!DATA_STORE.bankAccountExists(accountNumber)) {
-            if (type.equalsIgnoreCase("W")) {
-                System.out.println("The first transaction for an account should not be a withdrawal.");
-                return;
+        // A line entered again within the deduplication window is a replay and is not posted twice
+        IdempotencyIndex idempotencyIndex = DATA_STORE.getIdempotencyIndex();
+        byte transactionType = type.equalsIgnoreCase("D") ? Transaction.DEPOSIT : Transaction.WITHDRAWAL;
+        int epochDay = DateCodec.parse(date);
+        if (!idempotencyIndex.claim(accountNumber, epochDay, transactionType, amount, null)) {
+            System.out.println(PostingResult.DUPLICATE.getMessage());
+            return;
+        }
+
+        // Balance check and withdrawal happen atomically in the data store
+        PostingResult result = null;
+        try {
+            result = transactionType == Transaction.DEPOSIT
+                    ? DATA_STORE.deposit(accountNumber, date, amount, "D")
+                    : DATA_STORE.withdrawIfSufficient(accountNumber, date, amount);
+        } finally {
+            if (result != PostingResult.POSTED) {
+                idempotencyIndex.release(accountNumber, epochDay, transactionType, amount, null);
             }
-            DATA_STORE.addAccount(new BankAccount(accountNumber));
         }
 
-        BankAccount account = DATA_STORE.getBankAccount(accountNumber);
-        if (type.equalsIgnoreCase("W") && !account.balanceCheck(amount)) {
-            System.out.println("Withdrawal amount exceeds account balance.");
+        if (result != PostingResult.POSTED) {
+            System.out.println(result.getMessage());
             return;
         }
+        printAccountStatement(DATA_STORE.getBankAccount(accountNumber));
+    }
+
+    /**
+     * Non-interactive bulk import, run as {@code import <feed file> [<rejected lines report>]}.
+     * Rejected lines are written to the report (defaults to {@code <feed file>.rejected}) instead of the console.
+     * The feed is either text or an interchange file, told apart by its first bytes.
+     */
+    private static void importTransactions(String[] args) {
+        if (args.length < 2 || args.length > 3) {
+            System.out.println("Usage: import <feed file> [<rejected lines report>]");
+            System.exit(1);
+        }
+
+        Path feed = Path.of(args[1]);
+        Path rejectedReport = args.length == 3 ? Path.of(args[2]) : Path.of(args[1] + ".rejected");
+        try {
+            ImportSummary summary = InterchangeReader.isInterchangeFile(feed)
+                    ? INTERCHANGE_SERVICE.importFile(feed, rejectedReport)
+                    : IMPORT_SERVICE.importTransactions(feed, rejectedReport);
+            System.out.println(summary);
+        } catch (IOException e) {
+            System.out.println("Import failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
 
-        if (type.equalsIgnoreCase("D")) {
-            account.deposit(date, amount, type);
-            printAccountStatement(account);
+    /**
+     * Non-interactive export of all interest rules and transactions to an interchange file, run as
+     * {@code export <file>}.
+     */
+    private static void exportData(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Usage: export <file>");
+            System.exit(1);
         }
 
-        if (type.equalsIgnoreCase("W")) {
-            account.withdraw(date, amount);
-            printAccountStatement(account);
+        long startNanos = System.nanoTime();
+        try {
+            long records = INTERCHANGE_SERVICE.exportFile(Path.of(args[1]));
+            System.out.printf("Records written: %d | Elapsed: %d ms%n", records,
+                    (System.nanoTime() - startNanos) / 1_000_000);
+        } catch (IOException e) {
+            System.out.println("Export failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Non-interactive month-end close, run as {@code close <month> [<checkpoint file>]}.
+     * Running it again with the same checkpoint (defaults to {@code close-<yyyy-MM>.checkpoint}) resumes a crashed close.
+     */
+    private static void closeMonth(String[] args) {
+        if (args.length < 2 || args.length > 3 || !args[1].matches("^\\d{1,2}$")
+                || Integer.parseInt(args[1]) < 1 || Integer.parseInt(args[1]) > 12) {
+            System.out.println("Usage: close <month> [<checkpoint file>]");
+            System.exit(1);
+        }
+
+        Month month = Month.of(Integer.parseInt(args[1]));
+        Path checkpoint = args.length == 3 ? Path.of(args[2])
+                : Path.of("close-" + YearMonth.of(Year.now().getValue(), month) + ".checkpoint");
+        try {
+            CloseSummary summary = CLOSE_SERVICE.closeMonth(month, checkpoint);
+            System.out.println(summary);
+        } catch (IOException e) {
+            System.out.println("Month-end close failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Non-interactive export of the statements of all accounts, run as
+     * {@code statements <month> <target> [text|csv|fixed_width] [--single-file]}. The target is a directory receiving
+     * a file per account, or the file receiving all statements with {@code --single-file}.
+     */
+    private static void exportStatements(String[] args) {
+        String usage = "Usage: statements <month> <target> [text|csv|fixed_width] [--single-file]";
+        if (args.length < 3 || args.length > 5 || !args[1].matches("^\\d{1,2}$")
+                || Integer.parseInt(args[1]) < 1 || Integer.parseInt(args[1]) > 12) {
+            System.out.println(usage);
+            System.exit(1);
+        }
+
+        StatementLayout layout = StatementLayout.TEXT;
+        boolean consolidated = false;
+        for (int i = 3; i < args.length; i++) {
+            if ("--single-file".equals(args[i])) {
+                consolidated = true;
+                continue;
+            }
+            try {
+                layout = StatementLayout.valueOf(args[i].toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                System.out.println(usage);
+                System.exit(1);
+            }
+        }
+        try {
+            System.out.println(STATEMENT_EXPORT_SERVICE.exportStatements(Month.of(Integer.parseInt(args[1])), layout,
+                    Path.of(args[2]), consolidated));
+        } catch (IOException e) {
+            System.out.println("Statement export failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Non-interactive HTTP server mode, run as {@code server [<port>]} (8080 by default) until the process is stopped.
+     */
+    private static void startServer(String[] args) {
+        if (args.length > 2 || (args.length == 2 && !args[1].matches("^\\d{1,5}$"))) {
+            System.out.println("Usage: server [<port>]");
+            System.exit(1);
+        }
+
+        int port = args.length == 2 ? Integer.parseInt(args[1]) : 8080;
+        try {
+            BankingHttpServer server = BankingHttpServer.start(new InetSocketAddress(port));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1), "http-server-shutdown"));
+            System.out.println("Listening on port " + server.getAddress().getPort());
+        } catch (IOException e) {
+            System.out.println("Server failed to start: " + e.getMessage());
+            System.exit(1);
         }
     }
 
@@ -170,22 +353,16 @@ public class Main {
         printAccountStatement(account, null);
     }
 
-    private static void printAccountStatement(BankAccount account, Month month) {
-        System.out.println("Account: " + account.getAccountNumber());
-        System.out.println("Date \t\t| Txn Id \t\t| Type \t| Amount \t| Balance \t|");
-        DecimalFormat df = new DecimalFormat("0.00");
-
-        List<Transaction> applicableTransactions = month == null
-                ? account.getTransactions() : account.getTransactions().stream()
-                .filter(TimeUtils.getTransactionFilterPredicate(month))
-                .toList();
-
-        for (Transaction transaction : applicableTransactions) {
-            if ("I".equals(transaction.getType())) {
-                continue;
+    public static void printAccountStatement(BankAccount account, Month month) {
+        try {
+            if (month == null) {
+                CONSOLE_RENDERER.renderStatement(account, null);
+            } else {
+                STATEMENT_SERVICE.writeStatement(account, YearMonth.of(Year.now().getValue(), month), StatementLayout.TEXT,
+                        CONSOLE_SINK);
             }
-            System.out.printf("%s \t| %s \t| %s \t| %s \t| %s \t|\n", transaction.getDateString(), transaction.getTransactionId(),
-                    transaction.getType(), df.format(transaction.getAmount()), df.format(transaction.getBalance()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
@@ -225,21 +402,29 @@ public class Main {
 
 
     public static void applyInterest(BankAccount account, Month month) throws ParseException {
-        Transaction lastTxn = account.getTransactions().get(account.getTransactions().size() - 1);
-        if ("I".equals(lastTxn.getType()) && lastTxn.getDate().getDayOfMonth() == month.maxLength()
-                && lastTxn.getDate().getYear() == Year.now().getValue()
-                && lastTxn.getAccount().equals(account.getAccountNumber())) {
-            System.out.printf("%s \t| %s \t\t\t| %s \t| %.2f \t\t| %.2f \t|%n", TimeUtils.toDateString(lastTxn.getDate()), " ",
-                    "I", lastTxn.getAmount(), lastTxn.getBalance());
-        } else {
-            double interest = STATEMENT_SERVICE.generateMonthlyInterestForAccount(account.getAccountNumber(), month);
-            Year statementYear = Year.now(); // Assume statement is for current year
-            LocalDate endOfMonth = LocalDate.of(statementYear.getValue(), month.getValue(), month.maxLength());
-
-            account.deposit(TimeUtils.toDateString(endOfMonth), interest, "I");
-
-            System.out.printf("%s \t| %s \t\t\t| %s \t| %.2f \t\t| %.2f \t|%n", TimeUtils.toDateString(endOfMonth), " ",
-                    "I", interest, account.getBalance());
+        Transaction lastTxn = account.getLastTransaction();
+        LocalDate endOfMonth = YearMonth.of(Year.now().getValue(), month).atEndOfMonth(); // Assume statement is for current year
+        try {
+            if (lastTxn != null && "I".equals(lastTxn.getType()) && lastTxn.getDate().equals(endOfMonth)
+                    && lastTxn.getAccount().equals(account.getAccountNumber())) {
+                CONSOLE_RENDERER.writeInterest(lastTxn.getEpochDay(), lastTxn.getAmount(), lastTxn.getBalance());
+            } else {
+                long interest = STATEMENT_SERVICE.generateMonthlyInterestForAccount(account.getAccountNumber(), month);
+
+                // No interest is not posted, but still shown as a zero interest line
+                if (interest > 0) {
+                    PostingResult result = DATA_STORE.deposit(account.getAccountNumber(),
+                            TimeUtils.toDateString(endOfMonth), interest, "I");
+                    if (result != PostingResult.POSTED) {
+                        System.out.println(result.getMessage());
+                        return;
+                    }
+                }
+                CONSOLE_RENDERER.writeInterest((int) endOfMonth.toEpochDay(), interest, account.getBalance());
+            }
+            CONSOLE_RENDERER.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
 
     }
@@ -260,7 +445,7 @@ public class Main {
     // Step 3: Calculate and apply interest for each day in the month
     private static double updateDailyBalance(List<Transaction> transactions, double balance, int day, BankAccount account) {
         for (Transaction transaction : transactions) {
-            int transactionDay = Integer.parseInt(transaction.getDateString().substring(6, 8));
+            int transactionDay = transaction.getDate().getDayOfMonth();
             if (transactionDay == day) {
                 if (transaction.getType().equals("D")) {
                     balance += transaction.getAmount();
@@ -315,7 +500,7 @@ public class Main {
                 applicableRules.add(rule);
             } else if (ruleMonth.compareTo(month) < 0) {
                 // This rule is from a previous month, check if it's the closest one before the 1st day
-                if (closestRule == null || rule.getDateString().compareTo(closestRule.getDateString()) > 0) {
+                if (closestRule == null || rule.getEpochDay() > closestRule.getEpochDay()) {
                     closestRule = rule;
                 }
             }
@@ -326,7 +511,7 @@ public class Main {
         }
 
         // Sort applicable rules by date in descending order
-        Collections.sort(applicableRules, (r1, r2) -> r2.getDateString().compareTo(r1.getDateString()));
+        Collections.sort(applicableRules, (r1, r2) -> Integer.compare(r2.getEpochDay(), r1.getEpochDay()));
         return applicableRules;
     }
 
@@ -334,7 +519,7 @@ public class Main {
     private double getDailyBalance(List<Transaction> transactions, int day) {
         double dailyBalance = 0.0;
         for (Transaction transaction : transactions) {
-            int transactionDay = Integer.parseInt(transaction.getDateString().substring(6, 8));
+            int transactionDay = transaction.getDate().getDayOfMonth();
             if (transactionDay <= day) {
                 if (transaction.getType().equals("D")) {
                     dailyBalance += transaction.getAmount();
@@ -352,13 +537,13 @@ public class Main {
 
         for (InterestRule rule : rules) {
             String ruleMonth = rule.getDateString().substring(4, 6);
-            int ruleDay = Integer.parseInt(rule.getDateString().substring(6, 8));
+            int ruleDay = rule.getDate().getDayOfMonth();
 
             if (ruleMonth.equals(month) && ruleDay <= day) {
                 return rule;
             } else if (ruleMonth.compareTo(month) < 0) {
                 // This rule is from a previous month, check if it's the closest one before the 1st day
-                if (closestRule == null || rule.getDateString().compareTo(closestRule.getDateString()) > 0) {
+                if (closestRule == null || rule.getEpochDay() > closestRule.getEpochDay()) {
                     closestRule = rule;
                 }
             }
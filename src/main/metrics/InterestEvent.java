@@ -0,0 +1,70 @@
+package main.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event of an interest calculation, for a month of an account or for a period at a balance.
+ */
+@Name("banking.Interest")
+@Label("Interest Calculation")
+@Category({"Banking", "Interest"})
+@Description("Interest calculated for a month of an account, or for a period at a balance")
+@StackTrace(false)
+public final class InterestEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(InterestEvent.class);
+
+    @Label("Account")
+    @Description("Account number, none for a period at a balance")
+    String account;
+
+    @Label("Month")
+    @Description("Month of the calculation, or month the period starts in")
+    String month;
+
+    @Label("Days")
+    int days;
+
+    @Label("Segments")
+    @Description("Parts of the period accrued separately: the opening balance and every posting of a month, or every "
+            + "rule of a period")
+    int segments;
+
+    @Label("Rules Scanned")
+    @Description("Interest rules visited, or in effect over the period when the rate calendar looked them up at once")
+    int rulesScanned;
+
+    @Label("Result")
+    @Description("Interest in cents for a month, accrual for a period")
+    long result;
+
+    /**
+     * @return - The event, begun, or null while no recording has interest calculations enabled, so that nothing is allocated then
+     */
+    public static InterestEvent start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        InterestEvent event = new InterestEvent();
+        event.begin();
+        return event;
+    }
+
+    public void finish(String account, String month, int days, int segments, int rulesScanned, long result) {
+        if (shouldCommit()) {
+            this.account = account;
+            this.month = month;
+            this.days = days;
+            this.segments = segments;
+            this.rulesScanned = rulesScanned;
+            this.result = result;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package main.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Call counts and latencies of the hot paths: postings, interest calculations, statements and data store lookups.
+ * <p>
+ * Metrics are off by default and turned on with the {@code banking.metrics.enabled} system property. Every operation
+ * is then registered as an MBean named {@code main.metrics:type=Operation,name=<operation>}, e.g. for JConsole or
+ * VisualVM. The flag is read once into a constant, so while it is off the instrumented code runs as if it was not there.
+ * <p>
+ * Every call is counted, but only one in {@code banking.metrics.sampleInterval} calls (16 by default, 1 to time every
+ * call) is timed: reading the clock twice can cost more than a lookup or a posting itself. The calls to time are picked
+ * at random, so the latency histograms are unbiased.
+ * <p>
+ * Independently of the flag, postings, interest calculations and statements emit JDK Flight Recorder events
+ * ({@link PostingEvent}, {@link InterestEvent} and {@link StatementEvent}), which cost next to nothing while no
+ * recording is running.
+ */
+public final class Metrics {
+
+    public static final String ENABLED_PROPERTY = "banking.metrics.enabled";
+    public static final boolean ENABLED = Boolean.getBoolean(ENABLED_PROPERTY);
+    public static final int SAMPLE_INTERVAL = Math.max(1, Integer.getInteger("banking.metrics.sampleInterval", 16));
+
+    public static final OperationMetrics DEPOSIT = new OperationMetrics("Deposit");
+    public static final OperationMetrics WITHDRAWAL = new OperationMetrics("Withdrawal");
+    public static final OperationMetrics MONTHLY_INTEREST = new OperationMetrics("MonthlyInterest");
+    public static final OperationMetrics INTEREST_BETWEEN_DATES = new OperationMetrics("InterestBetweenDates");
+    public static final OperationMetrics STATEMENT = new OperationMetrics("Statement");
+    public static final OperationMetrics ACCOUNT_LOOKUP = new OperationMetrics("AccountLookup");
+    public static final OperationMetrics INTEREST_RULE_LOOKUP = new OperationMetrics("InterestRuleLookup");
+
+    private static final List<OperationMetrics> OPERATIONS = List.of(DEPOSIT, WITHDRAWAL, MONTHLY_INTEREST,
+            INTEREST_BETWEEN_DATES, STATEMENT, ACCOUNT_LOOKUP, INTEREST_RULE_LOOKUP);
+
+    static {
+        if (ENABLED) {
+            registerMBeans();
+        }
+    }
+
+    private Metrics() {
+
+    }
+
+    /**
+     * @return - Start time of a call, to pass to {@link OperationMetrics#stop(long)}. 0 when metrics are disabled or
+     * the call is not sampled, so the clock is not even read.
+     */
+    public static long start() {
+        if (!ENABLED || (SAMPLE_INTERVAL > 1 && ThreadLocalRandom.current().nextInt(SAMPLE_INTERVAL) != 0)) {
+            return 0L;
+        }
+        return System.nanoTime();
+    }
+
+    public static List<OperationMetrics> getOperations() {
+        return OPERATIONS;
+    }
+
+    private static void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (OperationMetrics operation : OPERATIONS) {
+            try {
+                server.registerMBean(operation, new ObjectName("main.metrics:type=Operation,name=" + operation.getName()));
+            } catch (JMException e) {
+                System.err.println("Failed to register the " + operation.getName() + " metrics: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package main.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number of calls and latency histogram of one operation, exposed over JMX as an {@link OperationMetricsMBean}.
+ * <p>
+ * Callers take a start time with {@link Metrics#start()} and pass it to {@link #stop(long)}, which counts the call and
+ * records its latency if it was sampled. Both are no-ops unless metrics are enabled (see {@link Metrics#ENABLED}), and
+ * since the flag is a constant the JIT compiles them away.
+ */
+public final class OperationMetrics implements OperationMetricsMBean {
+
+    private final String name;
+    private final LongAdder calls = new LongAdder();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Counts a call, and records its latency if it was sampled.
+     *
+     * @param startNanos - Time returned by {@link Metrics#start()} when the call started, 0 if it was not sampled
+     */
+    public void stop(long startNanos) {
+        if (Metrics.ENABLED) {
+            calls.increment();
+            if (startNanos != 0L) {
+                latencies.record(System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    @Override
+    public long getCount() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getSampledCount() {
+        return latencies.getCount();
+    }
+
+    @Override
+    public double getMeanNanos() {
+        long count = latencies.getCount();
+        return count == 0 ? 0.0 : (double) latencies.getTotalNanos() / count;
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return latencies.getMaxNanos();
+    }
+
+    @Override
+    public long getMedianNanos() {
+        return latencies.getPercentileNanos(50.0);
+    }
+
+    @Override
+    public long get90thPercentileNanos() {
+        return latencies.getPercentileNanos(90.0);
+    }
+
+    @Override
+    public long get99thPercentileNanos() {
+        return latencies.getPercentileNanos(99.0);
+    }
+
+    @Override
+    public long get999thPercentileNanos() {
+        return latencies.getPercentileNanos(99.9);
+    }
+
+    @Override
+    public void reset() {
+        calls.reset();
+        latencies.reset();
+    }
+}
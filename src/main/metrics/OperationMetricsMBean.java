@@ -0,0 +1,31 @@
+package main.metrics;
+
+/**
+ * JMX view of the calls of one operation, see {@link OperationMetrics}.
+ */
+public interface OperationMetricsMBean {
+
+    long getCount();
+
+    /**
+     * @return - Number of calls that were timed, see {@link Metrics#SAMPLE_INTERVAL}
+     */
+    long getSampledCount();
+
+    double getMeanNanos();
+
+    long getMaxNanos();
+
+    long getMedianNanos();
+
+    long get90thPercentileNanos();
+
+    long get99thPercentileNanos();
+
+    long get999thPercentileNanos();
+
+    /**
+     * Starts counting from scratch, e.g. before a load test.
+     */
+    void reset();
+}
@@ -0,0 +1,64 @@
+package main.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import main.models.PostingResult;
+
+/**
+ * Flight Recorder event of a deposit or withdrawal posted to an account, including rejected ones.
+ */
+@Name("banking.Posting")
+@Label("Posting")
+@Category({"Banking", "Postings"})
+@Description("A deposit or withdrawal posted to an account")
+@StackTrace(false)
+public final class PostingEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(PostingEvent.class);
+
+    @Label("Account")
+    String account;
+
+    @Label("Type")
+    @Description("D for a deposit, I for interest, W for a withdrawal")
+    String type;
+
+    @Label("Amount")
+    @Description("Amount in cents")
+    long amount;
+
+    @Label("Result")
+    @Description("Outcome of the posting, none if it failed with an exception")
+    String result;
+
+    /**
+     * @return - The event, begun, or null while no recording has postings enabled, so that nothing is allocated then
+     */
+    public static PostingEvent start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        PostingEvent event = new PostingEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event and commits it, if it passes the settings of the recording (e.g. its threshold). The fields are
+     * only set then.
+     */
+    public void finish(String account, String type, long amount, PostingResult result) {
+        if (shouldCommit()) {
+            this.account = account;
+            this.type = type;
+            this.amount = amount;
+            this.result = result == null ? null : result.name();
+            commit();
+        }
+    }
+}
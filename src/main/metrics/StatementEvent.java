@@ -0,0 +1,60 @@
+package main.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event of a statement written for a month of an account.
+ */
+@Name("banking.Statement")
+@Label("Statement")
+@Category({"Banking", "Statements"})
+@StackTrace(false)
+public final class StatementEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(StatementEvent.class);
+
+    @Label("Account")
+    String account;
+
+    @Label("Month")
+    String month;
+
+    @Label("Layout")
+    String layout;
+
+    @Label("Transactions")
+    int transactions;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    /**
+     * @return - The event, begun, or null while no recording has statements enabled, so that nothing is allocated then
+     */
+    public static StatementEvent start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        StatementEvent event = new StatementEvent();
+        event.begin();
+        return event;
+    }
+
+    public void finish(String account, String month, String layout, int transactions, long size) {
+        if (shouldCommit()) {
+            this.account = account;
+            this.month = month;
+            this.layout = layout;
+            this.transactions = transactions;
+            this.size = size;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package main.models;
+
+/**
+ * Rows of a {@link TransactionLog} that were moved out of the heap by a {@link TransactionArchive}. Rows are indexed
+ * from 0 within the archived range, and can be read from many threads at once.
+ */
+public interface ArchivedRows {
+
+    int size();
+
+    int getEpochDay(int index);
+
+    byte getType(int index);
+
+    long getAmount(int index);
+
+    long getBalance(int index);
+
+    int getSequence(int index);
+}
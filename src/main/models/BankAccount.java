@@ -1,72 +1,497 @@
 package main.models;
 
+import main.metrics.Metrics;
+import main.metrics.PostingEvent;
+import main.util.DateCodec;
+import main.util.Money;
 import main.util.TimeUtils;
+import main.util.TransactionIdSequencer;
 
 import java.text.ParseException;
 import java.time.LocalDate;
-import java.util.ArrayList;
+import java.time.YearMonth;
+import java.util.AbstractList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * A bank account that can be posted to from many threads at once.
+ * <p>
+ * Every posting runs under the account's own lock, so the date check, the balance check and the update of the balance
+ * and the transaction log happen atomically. The balance and the last updated date are also readable without taking
+ * the lock. All amounts are in cents (see {@link main.util.Money}).
+ * <p>
+ * Transactions are stored in a columnar {@link TransactionLog}, and are handed out as {@link Transaction} views over
+ * its rows. Postings are never backdated, so the rows of a month are contiguous and in posting order. The row range
+ * of every year and month is indexed, so a month can be read without scanning the whole history.
+ * <p>
+ * The interest of the month is accrued as postings come in (see {@link InterestAccrual}), so reading it does not depend
+ * on the number of postings. When the interest rules change, the accrual is rebuilt from the transactions once.
+ * <p>
+ * An account restored from a snapshot starts with its balance and last updated date only, and loads its
+ * {@link TransactionHistory} the first time its transactions are needed.
+ */
 public class BankAccount {
 
-    private String accountNumber;
-    private double balance;
-    private List<Transaction> transactions;
+    private final String accountNumber;
+    private final TransactionLog transactionLog = new TransactionLog();
+    private final Map<YearMonth, int[]> monthRowRanges = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final InterestRateSource interestRates;
+    private final PostingListener postingListener;
+    private final Map<YearMonth, Long> closedMonthAccruals = new HashMap<>();
 
-    private LocalDate lastUpdatedDate;
+    private volatile long balance;
+    private volatile int lastUpdatedDay = DateCodec.INVALID;
+    private volatile TransactionHistory pendingHistory;
+    private YearMonth lastPostedMonth;
+    private int lastPostedMonthEnd = DateCodec.INVALID;
+    private int[] lastPostedMonthRows;
+    private InterestAccrual accrual;
 
     public BankAccount(String accountNumber) {
+        this(accountNumber, InterestRateSource.NONE);
+    }
+
+    /**
+     * @param interestRates - Rates the interest of the account accrues at
+     */
+    public BankAccount(String accountNumber, InterestRateSource interestRates) {
+        this(accountNumber, interestRates, PostingListener.NONE);
+    }
+
+    /**
+     * @param interestRates   - Rates the interest of the account accrues at
+     * @param postingListener - Told about every transaction appended to the account
+     */
+    public BankAccount(String accountNumber, InterestRateSource interestRates, PostingListener postingListener) {
+        this.accountNumber = accountNumber;
+        this.interestRates = interestRates;
+        this.postingListener = postingListener;
+        this.balance = 0L;
+    }
+
+    /**
+     * Restores an account whose transactions are loaded from the history when they are first needed.
+     *
+     * @param balance         - Balance after the last transaction of the history, in cents
+     * @param lastUpdatedDay - Epoch day of the last transaction of the history, {@link DateCodec#INVALID} if there is
+     *                       none
+     */
+    public BankAccount(String accountNumber, long balance, int lastUpdatedDay, TransactionHistory history,
+                       InterestRateSource interestRates) {
+        this(accountNumber, balance, lastUpdatedDay, history, interestRates, PostingListener.NONE);
+    }
+
+    /**
+     * Restores an account whose transactions are loaded from the history when they are first needed. The listener is
+     * only told about the transactions appended after the history.
+     */
+    public BankAccount(String accountNumber, long balance, int lastUpdatedDay, TransactionHistory history,
+                       InterestRateSource interestRates, PostingListener postingListener) {
         this.accountNumber = accountNumber;
-        this.balance = 0.0;
-        this.transactions = new ArrayList<>();
+        this.interestRates = interestRates;
+        this.postingListener = postingListener;
+        this.balance = balance;
+        this.lastUpdatedDay = lastUpdatedDay;
+        this.pendingHistory = history.size() == 0 ? null : history;
     }
 
     public String getAccountNumber() {
         return accountNumber;
     }
 
-    public double getBalance() {
+    /**
+     * @return - Balance in cents
+     */
+    public long getBalance() {
         return balance;
     }
 
-    public void deposit(String givenDate, double amount, String depositType) throws ParseException {
-        LocalDate depositDate = TimeUtils.toLocalDate(givenDate);
-        if (lastUpdatedDate != null && depositDate.isBefore(lastUpdatedDate)) {
-            System.out.printf("Cannot deposit for past dates Last update date: %s, Deposit date: %s%n",
-                    TimeUtils.toDateString(lastUpdatedDate), givenDate);
-            return;
-        } else {
-            lastUpdatedDate = depositDate;
+    public PostingResult deposit(String givenDate, long amount, String depositType) throws ParseException {
+        PostingEvent event = PostingEvent.start();
+        long start = Metrics.start();
+        PostingResult result = null;
+        try {
+            result = postDeposit(givenDate, amount, depositType);
+            return result;
+        } finally {
+            Metrics.DEPOSIT.stop(start);
+            if (event != null) {
+                event.finish(accountNumber, depositType, amount, result);
+            }
         }
-        if (amount > 0) {
+    }
+
+    private PostingResult postDeposit(String givenDate, long amount, String depositType) throws ParseException {
+        int depositDay = TimeUtils.toEpochDay(givenDate);
+        byte type = Transaction.typeOf(depositType);
+        if (amount <= 0) {
+            return PostingResult.INVALID_AMOUNT;
+        }
+        lock.lock();
+        try {
+            if (depositDay < lastUpdatedDay) {
+                return PostingResult.BACKDATED;
+            }
+            // Rejected before anything changes, as the accrual of a larger balance could overflow
+            if (amount > Money.MAX_AMOUNT - balance) {
+                return PostingResult.AMOUNT_TOO_LARGE;
+            }
+            lastUpdatedDay = depositDay;
             balance += amount;
-            transactions.add(new Transaction(givenDate, accountNumber, depositType.toUpperCase(), amount, balance));
+            addTransaction(depositDay, type, amount, TransactionIdSequencer.getInstance().next(depositDay));
+            return PostingResult.POSTED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Withdraws the amount only if the balance covers it. The balance check and the withdrawal happen under the
+     * account lock, so concurrent withdrawals can never overdraw the account.
+     */
+    public PostingResult withdraw(String givenDate, long amount) throws ParseException {
+        PostingEvent event = PostingEvent.start();
+        long start = Metrics.start();
+        PostingResult result = null;
+        try {
+            result = postWithdrawal(givenDate, amount);
+            return result;
+        } finally {
+            Metrics.WITHDRAWAL.stop(start);
+            if (event != null) {
+                event.finish(accountNumber, "W", amount, result);
+            }
         }
     }
 
-    public boolean withdraw(String givenDate, double amount) throws ParseException {
-        LocalDate withdrawDate = TimeUtils.toLocalDate(givenDate);
-        if (lastUpdatedDate != null && withdrawDate.isBefore(lastUpdatedDate)) {
-            System.out.printf("Cannot deposit for past dates Last update date: %s, Withdraw date: %s%n",
-                    TimeUtils.toDateString(lastUpdatedDate), givenDate);
-            return false;
-        } else {
-            lastUpdatedDate = withdrawDate;
+    private PostingResult postWithdrawal(String givenDate, long amount) throws ParseException {
+        int withdrawDay = TimeUtils.toEpochDay(givenDate);
+        if (amount <= 0) {
+            return PostingResult.INVALID_AMOUNT;
         }
-        if (amount > 0 && balance >= amount) {
-            System.out.println("WITHSDDRAW");
+        lock.lock();
+        try {
+            if (withdrawDay < lastUpdatedDay) {
+                return PostingResult.BACKDATED;
+            }
+            if (balance < amount) {
+                return PostingResult.INSUFFICIENT_FUNDS;
+            }
+            lastUpdatedDay = withdrawDay;
             balance -= amount;
-            transactions.add(new Transaction(givenDate, accountNumber, "W", amount, balance));
-            return true;
+            addTransaction(withdrawDay, Transaction.WITHDRAWAL, amount, TransactionIdSequencer.getInstance().next(withdrawDay));
+            return PostingResult.POSTED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends a transaction that was already posted before, e.g. while replaying a journal, keeping its balance and
+     * transaction id as they were.
+     *
+     * @return - Row of the restored transaction
+     */
+    public int restoreTransaction(int epochDay, byte type, long amount, long balance, int sequence) {
+        lock.lock();
+        try {
+            lastUpdatedDay = epochDay;
+            this.balance = balance;
+            TransactionIdSequencer.getInstance().advanceTo(epochDay, sequence);
+            return addTransaction(epochDay, type, amount, sequence);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Locks the account, for callers that need to do more than a single posting atomically. The lock is reentrant, so
+     * the account can still be posted to while holding it.
+     */
+    public void lock() {
+        lock.lock();
+    }
+
+    public void unlock() {
+        lock.unlock();
+    }
+
+    public boolean isLockedByCurrentThread() {
+        return lock.isHeldByCurrentThread();
+    }
+
+    private int addTransaction(int epochDay, byte type, long amount, int sequence) {
+        loadHistory();
+        int row = transactionLog.append(epochDay, type, amount, balance, sequence);
+        indexRow(row, epochDay);
+        accrue(row, lastPostedMonth);
+        postingListener.onPosted(this, epochDay, type, amount);
+        return row;
+    }
+
+    /**
+     * Adds the row to the row range of its month. Rows come in date order, so only a row past the end of the last
+     * posted month starts a new month.
+     */
+    private void indexRow(int row, int epochDay) {
+        if (epochDay >= lastPostedMonthEnd) {
+            YearMonth month = YearMonth.from(LocalDate.ofEpochDay(epochDay));
+            lastPostedMonth = month;
+            lastPostedMonthEnd = (int) month.atEndOfMonth().toEpochDay() + 1;
+            lastPostedMonthRows = new int[]{row, row};
+            monthRowRanges.put(month, lastPostedMonthRows);
+        }
+        lastPostedMonthRows[1] = row + 1;
+    }
+
+    /**
+     * Adds the row to the accrual of its month, closing the accrual of the previous month if it is a new one.
+     */
+    private void accrue(int row, YearMonth month) {
+        if (accrual == null || accrual.getRatesVersion() != interestRates.version()) {
+            closedMonthAccruals.clear();
+            accrual = replayAccrual(month, row + 1);
+            return;
+        }
+        if (!month.equals(accrual.getMonth())) {
+            closedMonthAccruals.put(accrual.getMonth(), accrual.total(interestRates));
+            accrual = new InterestAccrual(month, accrual.getBalance(), interestRates.version());
+        }
+        accrual.post(transactionLog.getEpochDay(row), transactionLog.getType(row), transactionLog.getBalance(row),
+                interestRates);
+    }
+
+    /**
+     * Accrues the month from scratch, from the balance carried into it and its rows below toRow.
+     */
+    private InterestAccrual replayAccrual(YearMonth month, int toRow) {
+        int nextMonthStart = (int) month.plusMonths(1).atDay(1).toEpochDay();
+        int row = transactionLog.firstRowOnOrAfter((int) month.atDay(1).toEpochDay());
+        long openingBalance = row == 0 ? 0L : transactionLog.getBalance(row - 1);
+        InterestAccrual monthAccrual = new InterestAccrual(month, openingBalance, interestRates.version());
+        for (; row < toRow && transactionLog.getEpochDay(row) < nextMonthStart; row++) {
+            monthAccrual.post(transactionLog.getEpochDay(row), transactionLog.getType(row), transactionLog.getBalance(row),
+                    interestRates);
+        }
+        return monthAccrual;
+    }
+
+    /**
+     * @param month - Year and month
+     * @return - Interest accrued on the end of day balances of the month, see {@link main.util.Money#accrue}. The
+     * current month is accrued up to the end of the month with the current balance.
+     */
+    public long getMonthlyAccrual(YearMonth month) {
+        loadHistory();
+        lock.lock();
+        try {
+            int size = transactionLog.size();
+            if (size == 0) {
+                return 0L;
+            }
+            if (accrual == null || accrual.getRatesVersion() != interestRates.version()) {
+                closedMonthAccruals.clear();
+                accrual = replayAccrual(YearMonth.from(LocalDate.ofEpochDay(transactionLog.getEpochDay(size - 1))), size);
+            }
+            int order = month.compareTo(accrual.getMonth());
+            if (order == 0) {
+                return accrual.total(interestRates);
+            }
+            if (order > 0) {
+                // No postings since, so the balance stays the same for the whole month
+                return Money.accrue(accrual.getBalance(), 1, interestRates.rateDays((int) month.atDay(1).toEpochDay(),
+                        (int) month.atEndOfMonth().toEpochDay() + 1));
+            }
+            Long closedAccrual = closedMonthAccruals.get(month);
+            if (closedAccrual == null) {
+                closedAccrual = replayAccrual(month, size).total(interestRates);
+                closedMonthAccruals.put(month, closedAccrual);
+            }
+            return closedAccrual;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The accrual of a month depends on the postings dated up to the end of the month, which set the balance carried
+     * into it and its end of day balances, and on the rates of its days. Postings are never backdated, so those
+     * postings are a prefix of the transaction log, and their number only changes when one of them is added.
+     *
+     * @param month - Year and month
+     * @return - A number that changes whenever {@link #getMonthlyAccrual(YearMonth)} of the month may change, made of
+     * the rates version of the month (high 32 bits) and the number of postings up to the end of the month
+     */
+    public long getAccrualVersion(YearMonth month) {
+        int monthStart = (int) month.atDay(1).toEpochDay();
+        int monthEnd = (int) month.atEndOfMonth().toEpochDay() + 1;
+        long ratesVersion = interestRates.version(monthStart, monthEnd);
+        int rows = getTransactionLog().firstRowOnOrAfter(monthEnd);
+        return ratesVersion << 32 | rows;
+    }
+
+    /**
+     * Copies a pending history into the transaction log and indexes its months, once.
+     */
+    private void loadHistory() {
+        if (pendingHistory == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            TransactionHistory history = pendingHistory;
+            if (history == null) {
+                return;
+            }
+            history.copyTo(transactionLog);
+            for (int row = 0; row < transactionLog.size(); row++) {
+                indexRow(row, transactionLog.getEpochDay(row));
+            }
+            pendingHistory = null;
+        } finally {
+            lock.unlock();
         }
-        return false;
     }
 
-    public boolean balanceCheck(double amount) {
+    public LocalDate getLastUpdatedDate() {
+        int day = lastUpdatedDay;
+        return day == DateCodec.INVALID ? null : LocalDate.ofEpochDay(day);
+    }
+
+    /**
+     * @return - Epoch day of the last transaction, {@link DateCodec#INVALID} if there is none
+     */
+    public int getLastUpdatedDay() {
+        return lastUpdatedDay;
+    }
+
+    public boolean balanceCheck(long amount) {
         return amount > 0 && balance >= amount;
     }
 
+    /**
+     * Moves the transactions dated up to the end of the month out of the heap into the archive. They are still read
+     * through the transaction log as before. A history that is not loaded yet is left where it is, as it is not on the
+     * heap either.
+     *
+     * @param month - Last month to archive, whose interest is posted
+     * @return - Number of transactions archived
+     */
+    public int archiveThrough(YearMonth month, TransactionArchive archive) {
+        if (pendingHistory != null) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            int toRow = transactionLog.firstRowOnOrAfter((int) month.plusMonths(1).atDay(1).toEpochDay());
+            return transactionLog.archive(toRow, archive);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return - The transaction log of the account. Rows below its size can be read without locking.
+     */
+    public TransactionLog getTransactionLog() {
+        loadHistory();
+        return transactionLog;
+    }
+
+    /**
+     * @return - The number of transactions posted so far, without loading a pending history
+     */
+    public int getTransactionCount() {
+        TransactionHistory history = pendingHistory;
+        return history != null ? history.size() : transactionLog.size();
+    }
+
+    /**
+     * @return - The history that is still to be loaded into the transaction log, null once it is loaded
+     */
+    public TransactionHistory getPendingHistory() {
+        return pendingHistory;
+    }
+
+    /**
+     * @return - The transactions posted so far, in posting order
+     */
     public List<Transaction> getTransactions() {
-        return transactions;
+        loadHistory();
+        return new TransactionView(0, transactionLog.size());
+    }
+
+    /**
+     * @return - The latest transaction posted to the account, or null if there is none
+     */
+    public Transaction getLastTransaction() {
+        loadHistory();
+        int size = transactionLog.size();
+        return size == 0 ? null : new Transaction(transactionLog, size - 1, accountNumber);
+    }
+
+    /**
+     * @param month - Year and month of the transactions
+     * @return - The transactions posted in the month, in posting order
+     */
+    public List<Transaction> getTransactions(YearMonth month) {
+        int[] rows = getRowRange(month);
+        return rows == null ? List.of() : new TransactionView(rows[0], rows[1]);
+    }
+
+    /**
+     * @return - The transactions dated from the first to the last date, both included, in posting order
+     */
+    public List<Transaction> getTransactions(LocalDate from, LocalDate to) {
+        TransactionLog log = getTransactionLog();
+        int fromRow = log.firstRowOnOrAfter((int) from.toEpochDay());
+        int toRow = log.firstRowOnOrAfter((int) to.toEpochDay() + 1);
+        return fromRow >= toRow ? List.of() : new TransactionView(fromRow, toRow);
+    }
+
+    /**
+     * @param month - Year and month of the transactions
+     * @return - The rows [from, to) of the transaction log posted in the month, or null if there are none
+     */
+    public int[] getRowRange(YearMonth month) {
+        loadHistory();
+        lock.lock();
+        try {
+            int[] rows = monthRowRanges.get(month);
+            return rows == null ? null : rows.clone();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Read only list of {@link Transaction} views over a fixed range of rows of the log.
+     */
+    private final class TransactionView extends AbstractList<Transaction> implements RandomAccess {
+
+        private final int fromRow;
+        private final int toRow;
+
+        private TransactionView(int fromRow, int toRow) {
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        public Transaction get(int index) {
+            Objects.checkIndex(index, toRow - fromRow);
+            return new Transaction(transactionLog, fromRow + index, accountNumber);
+        }
+
+        @Override
+        public int size() {
+            return toRow - fromRow;
+        }
     }
 }
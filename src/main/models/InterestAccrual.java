@@ -0,0 +1,76 @@
+package main.models;
+
+import main.util.Money;
+
+import java.time.YearMonth;
+
+/**
+ * Running interest accrual of an account for one month, updated in O(1) on every posting.
+ * <p>
+ * Interest accrues on the end of day balance of every day, at the rate in effect on that day. The accrual of the days
+ * before the latest posting date is final and kept as a sum; the latest posting date is still open, as later postings
+ * on the same date change its end of day balance. Interest postings are credited after the end of the day, so they
+ * only earn interest from the next day on.
+ */
+final class InterestAccrual {
+
+    private final YearMonth month;
+    private final int monthEnd;
+    private final long ratesVersion;
+
+    private long accrued;
+    private int openDay;
+    private long openDayBalance;
+    private long balance;
+
+    /**
+     * @param openingBalance - Balance at the start of the month, in cents
+     */
+    InterestAccrual(YearMonth month, long openingBalance, long ratesVersion) {
+        this.month = month;
+        this.monthEnd = (int) month.atEndOfMonth().toEpochDay() + 1;
+        this.ratesVersion = ratesVersion;
+        this.openDay = (int) month.atDay(1).toEpochDay();
+        this.openDayBalance = openingBalance;
+        this.balance = openingBalance;
+    }
+
+    YearMonth getMonth() {
+        return month;
+    }
+
+    long getRatesVersion() {
+        return ratesVersion;
+    }
+
+    long getBalance() {
+        return balance;
+    }
+
+    /**
+     * Adds a posting of the month, which must not be dated before the previous one.
+     *
+     * @param balance - Balance after the posting, in cents
+     */
+    void post(int epochDay, byte type, long balance, InterestRateSource rates) {
+        if (epochDay > openDay) {
+            // The open day and the days up to the posting date are final now
+            accrued += Money.accrue(openDayBalance, 1, rates.rateDays(openDay, openDay + 1))
+                    + Money.accrue(this.balance, 1, rates.rateDays(openDay + 1, epochDay));
+            openDay = epochDay;
+            openDayBalance = this.balance;
+        }
+        if (type != Transaction.INTEREST) {
+            openDayBalance += balance - this.balance;
+        }
+        this.balance = balance;
+    }
+
+    /**
+     * @return - Accrual of the whole month, with the current balance carried to the end of the month
+     */
+    long total(InterestRateSource rates) {
+        return accrued + Money.accrue(openDayBalance, 1, rates.rateDays(openDay, openDay + 1))
+                + Money.accrue(balance, 1, rates.rateDays(openDay + 1, monthEnd));
+    }
+}
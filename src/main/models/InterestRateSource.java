@@ -0,0 +1,41 @@
+package main.models;
+
+/**
+ * Daily interest rates, as set by the interest rules.
+ */
+public interface InterestRateSource {
+
+    /**
+     * No interest on any day.
+     */
+    InterestRateSource NONE = new InterestRateSource() {
+        @Override
+        public long rateDays(int fromEpochDay, int toEpochDay) {
+            return 0L;
+        }
+
+        @Override
+        public long version() {
+            return 0L;
+        }
+    };
+
+    /**
+     * @return - Sum of the rates in ppm in effect on each day of [fromEpochDay, toEpochDay), i.e. what a balance of one
+     * cent accrues over those days
+     */
+    long rateDays(int fromEpochDay, int toEpochDay);
+
+    /**
+     * @return - A number that changes whenever the rates change, so that accruals based on older rates can be detected
+     */
+    long version();
+
+    /**
+     * @return - A number that changes whenever the rate of a day in [fromEpochDay, toEpochDay) changes. By default the
+     * {@link #version()}, which changes with the rate of any day.
+     */
+    default long version(int fromEpochDay, int toEpochDay) {
+        return version();
+    }
+}
@@ -1,38 +1,69 @@
 package main.models;
 
+import main.util.DateCodec;
+import main.util.Money;
 import main.util.TimeUtils;
 
 import java.text.ParseException;
 import java.time.LocalDate;
 
 public class InterestRule {
-    private LocalDate date;
+    private int epochDay;
     private String ruleId;
-    private double rate;
+    private long ratePpm;
 
+    /**
+     * @param rate - Interest rate in percent, kept in parts per million
+     */
     public InterestRule(String date, String ruleId, double rate) throws ParseException {
-        this.date = TimeUtils.toLocalDate(date);
+        this.epochDay = TimeUtils.toEpochDay(date);
         this.ruleId = ruleId;
-        this.rate = rate;
+        this.ratePpm = Math.round(rate * Money.PPM_PER_PERCENT);
+    }
+
+    /**
+     * @param ratePpm - Interest rate in parts per million
+     */
+    public InterestRule(LocalDate date, String ruleId, long ratePpm) {
+        this((int) date.toEpochDay(), ruleId, ratePpm);
+    }
+
+    /**
+     * @param ratePpm - Interest rate in parts per million
+     */
+    public InterestRule(int epochDay, String ruleId, long ratePpm) {
+        this.epochDay = epochDay;
+        this.ruleId = ruleId;
+        this.ratePpm = ratePpm;
     }
 
     public String getDateString() {
-        try {
-            return TimeUtils.toDateString(date);
-        } catch (ParseException e) {
-            throw new RuntimeException(e);
-        }
+        return DateCodec.format(epochDay);
     }
 
     public LocalDate getDate() {
-        return date;
+        return LocalDate.ofEpochDay(epochDay);
+    }
+
+    public int getEpochDay() {
+        return epochDay;
     }
 
     public String getRuleId() {
         return ruleId;
     }
 
+    /**
+     * @return - Interest rate in percent
+     */
     public double getRate() {
-        return rate;
+        return (double) ratePpm / Money.PPM_PER_PERCENT;
+    }
+
+    /**
+     * @return - Interest rate in parts per million, e.g. 19000 for 1.90%
+     */
+    public long getRatePpm() {
+        return ratePpm;
     }
 }
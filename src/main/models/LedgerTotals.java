@@ -0,0 +1,78 @@
+package main.models;
+
+import main.util.Money;
+
+import java.time.LocalDate;
+
+/**
+ * Totals of all postings across the bank over a range of days, in cents.
+ */
+public class LedgerTotals {
+
+    private final LocalDate from;
+    private final LocalDate to;
+    private final long depositCount;
+    private final long deposits;
+    private final long withdrawalCount;
+    private final long withdrawals;
+    private final long interestCount;
+    private final long interest;
+
+    public LedgerTotals(LocalDate from, LocalDate to, long depositCount, long deposits, long withdrawalCount,
+                        long withdrawals, long interestCount, long interest) {
+        this.from = from;
+        this.to = to;
+        this.depositCount = depositCount;
+        this.deposits = deposits;
+        this.withdrawalCount = withdrawalCount;
+        this.withdrawals = withdrawals;
+        this.interestCount = interestCount;
+        this.interest = interest;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public long getDepositCount() {
+        return depositCount;
+    }
+
+    public long getDeposits() {
+        return deposits;
+    }
+
+    public long getWithdrawalCount() {
+        return withdrawalCount;
+    }
+
+    public long getWithdrawals() {
+        return withdrawals;
+    }
+
+    public long getInterestCount() {
+        return interestCount;
+    }
+
+    public long getInterest() {
+        return interest;
+    }
+
+    /**
+     * @return - Money into the bank less money out of it: deposits and interest less withdrawals
+     */
+    public long getNetFlow() {
+        return deposits + interest - withdrawals;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s to %s | Deposits: %d / %s | Withdrawals: %d / %s | Interest: %d / %s | Net flow: %s",
+                from, to, depositCount, Money.format(deposits), withdrawalCount, Money.format(withdrawals),
+                interestCount, Money.format(interest), Money.format(getNetFlow()));
+    }
+}
@@ -0,0 +1,22 @@
+package main.models;
+
+/**
+ * Told about every transaction appended to an account, e.g. to keep bank-wide totals.
+ * <p>
+ * It is called under the lock of the account, on the thread that posts, so it must be quick and must not block.
+ */
+@FunctionalInterface
+public interface PostingListener {
+
+    /**
+     * Listens to nothing.
+     */
+    PostingListener NONE = (account, epochDay, type, amount) -> {
+    };
+
+    /**
+     * @param type   - Transaction type, e.g. {@link Transaction#DEPOSIT}
+     * @param amount - Amount in cents
+     */
+    void onPosted(BankAccount account, int epochDay, byte type, long amount);
+}
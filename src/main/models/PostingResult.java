@@ -0,0 +1,25 @@
+package main.models;
+
+/**
+ * Outcome of posting a deposit or a withdrawal to a bank account.
+ */
+public enum PostingResult {
+
+    POSTED("Transaction posted."),
+    INVALID_AMOUNT("Invalid amount. Amount should be greater than 0."),
+    BACKDATED("Cannot post transactions for dates before the last update date of the account."),
+    INSUFFICIENT_FUNDS("Withdrawal amount exceeds account balance."),
+    AMOUNT_TOO_LARGE("Amount too large. The balance would exceed the maximum balance of an account."),
+    ACCOUNT_NOT_FOUND("The first transaction for an account should not be a withdrawal."),
+    DUPLICATE("Duplicate transaction. It was already posted.");
+
+    private final String message;
+
+    PostingResult(String message) {
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -1,53 +1,77 @@
 package main.models;
 
+import main.exceptions.InvalidInputException;
+import main.util.DateCodec;
 import main.util.TimeUtils;
+import main.util.TransactionIdSequencer;
 
 import java.text.ParseException;
 import java.time.LocalDate;
 
+/**
+ * A flyweight view over one row of a {@link TransactionLog}.
+ * <p>
+ * Accounts keep their transactions in primitive columns and only hand out these views to callers that need a
+ * Transaction, so a view holds no data of its own besides the row it points to and the owning account number.
+ */
 public class Transaction {
 
-    private static int transactionIdCounter = 1;
-    private static String transactionDate;
-    private LocalDate date;
-    private String account;
-    private String type;
-    private double amount;
-    private String transactionId;
+    public static final byte DEPOSIT = 'D';
+    public static final byte WITHDRAWAL = 'W';
+    public static final byte INTEREST = 'I';
 
-    private double balance;
-
-    public Transaction(String date, String account, String type, double amount, double balance) {
+    private final TransactionLog log;
+    private final int row;
+    private final String account;
 
+    /**
+     * Creates a standalone transaction, backed by a log of its own.
+     */
+    public Transaction(String date, String account, String type, long amount, long balance) {
+        int epochDay;
         try {
-            this.date = TimeUtils.toLocalDate(date);
+            epochDay = TimeUtils.toEpochDay(date);
         } catch (ParseException e) {
             throw new RuntimeException(e);
         }
 
+        this.log = new TransactionLog();
+        this.row = log.append(epochDay, typeOf(type), amount, balance, TransactionIdSequencer.getInstance().next(epochDay));
+        this.account = account;
+    }
+
+    Transaction(TransactionLog log, int row, String account) {
+        this.log = log;
+        this.row = row;
         this.account = account;
-        this.type = type.toUpperCase();
-        this.amount = amount;
-        if (date.equals(transactionDate)) {
-            transactionIdCounter++;
-        } else {
-            transactionDate = date;
-            transactionIdCounter = 1;
+    }
+
+    static byte typeOf(String type) {
+        if (type.length() == 1) {
+            switch (Character.toUpperCase(type.charAt(0))) {
+                case DEPOSIT:
+                    return DEPOSIT;
+                case WITHDRAWAL:
+                    return WITHDRAWAL;
+                case INTEREST:
+                    return INTEREST;
+                default:
+                    break;
+            }
         }
-        this.transactionId = transactionDate + "-0" + transactionIdCounter;
-        this.setBalance(balance);
+        throw new InvalidInputException("Invalid transaction type: " + type);
     }
 
     public String getDateString() {
-        try {
-            return TimeUtils.toDateString(this.date);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        return DateCodec.format(log.getEpochDay(row));
     }
 
     public LocalDate getDate() {
-        return this.date;
+        return LocalDate.ofEpochDay(log.getEpochDay(row));
+    }
+
+    public int getEpochDay() {
+        return log.getEpochDay(row);
     }
 
     public String getAccount() {
@@ -55,22 +79,39 @@ public class Transaction {
     }
 
     public String getType() {
-        return type;
+        switch (log.getType(row)) {
+            case DEPOSIT:
+                return "D";
+            case WITHDRAWAL:
+                return "W";
+            default:
+                return "I";
+        }
+    }
+
+    public byte getTypeCode() {
+        return log.getType(row);
     }
 
-    public double getAmount() {
-        return amount;
+    /**
+     * @return - Amount in cents
+     */
+    public long getAmount() {
+        return log.getAmount(row);
     }
 
     public String getTransactionId() {
-        return transactionId;
+        return TransactionIdSequencer.format(log.getEpochDay(row), log.getSequence(row));
     }
 
-    public double getBalance() {
-        return balance;
+    public int getSequence() {
+        return log.getSequence(row);
     }
 
-    public void setBalance(double balance) {
-        this.balance = balance;
+    /**
+     * @return - Balance after the transaction in cents
+     */
+    public long getBalance() {
+        return log.getBalance(row);
     }
 }
@@ -0,0 +1,16 @@
+package main.models;
+
+/**
+ * Cold storage for the transactions of closed months, which are rarely read again once their interest is posted.
+ */
+public interface TransactionArchive {
+
+    /**
+     * Copies rows of the log into the archive.
+     *
+     * @param fromRow - First row to archive
+     * @param toRow   - Row after the last row to archive
+     * @return - The archived rows, readable in place of the rows of the log
+     */
+    ArchivedRows archive(TransactionLog log, int fromRow, int toRow);
+}
@@ -0,0 +1,18 @@
+package main.models;
+
+/**
+ * Transactions of an account that are kept outside of the account until they are first needed, e.g. in a snapshot
+ * file.
+ */
+public interface TransactionHistory {
+
+    /**
+     * @return - Number of transactions in the history
+     */
+    int size();
+
+    /**
+     * Appends every transaction of the history to the log, in posting order.
+     */
+    void copyTo(TransactionLog log);
+}
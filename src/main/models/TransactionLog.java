@@ -0,0 +1,242 @@
+package main.models;
+
+import java.util.Arrays;
+
+/**
+ * Column oriented, append only storage for the transactions of an account.
+ * <p>
+ * Every transaction is one row spread over growable primitive columns (epoch day, type, amount, balance and the
+ * sequence of its transaction id), about 25 bytes per row instead of a {@link Transaction} object with its own date
+ * and strings. Scans over a column touch contiguous memory only.
+ * <p>
+ * A prefix of the rows, e.g. the closed months, can be moved into a {@link TransactionArchive}. Archived rows keep
+ * their row numbers and are read through the same methods, so only the rows after the archived prefix are kept on the
+ * heap.
+ * <p>
+ * There must be a single writer at a time (the account posting under its lock). Rows never change once appended and
+ * are published through the volatile size, so readers that read {@link #size()} first can read any row below it
+ * without locking.
+ */
+public final class TransactionLog {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    // Replaced as a whole when the columns grow or rows are archived, so a reader always sees a consistent set
+    private volatile Columns columns = new Columns(0, INITIAL_CAPACITY, new ArchivedRows[0], new int[0]);
+    private volatile int size;
+
+    /**
+     * @return - Row index of the appended transaction
+     */
+    public int append(int epochDay, byte type, long amount, long balance, int sequence) {
+        int row = size;
+        Columns c = columns;
+        int index = row - c.firstRow;
+        if (index == c.epochDays.length) {
+            c = grow(c, index + (index >> 1), index);
+        }
+        c.epochDays[index] = epochDay;
+        c.types[index] = type;
+        c.amounts[index] = amount;
+        c.balances[index] = balance;
+        c.sequences[index] = sequence;
+        size = row + 1;
+        return row;
+    }
+
+    /**
+     * Appends the first count rows of the given columns, e.g. when a history is loaded.
+     */
+    public void appendAll(int[] epochDays, byte[] types, long[] amounts, long[] balances, int[] sequences, int count) {
+        int row = size;
+        Columns c = columns;
+        int index = row - c.firstRow;
+        if (index + count > c.epochDays.length) {
+            c = grow(c, Math.max(index + count, index + (index >> 1)), index);
+        }
+        System.arraycopy(epochDays, 0, c.epochDays, index, count);
+        System.arraycopy(types, 0, c.types, index, count);
+        System.arraycopy(amounts, 0, c.amounts, index, count);
+        System.arraycopy(balances, 0, c.balances, index, count);
+        System.arraycopy(sequences, 0, c.sequences, index, count);
+        size = row + count;
+    }
+
+    /**
+     * Moves the rows below toRow out of the heap into the archive. Rows that are already archived stay where they are.
+     *
+     * @return - Number of rows moved into the archive
+     */
+    public int archive(int toRow, TransactionArchive archive) {
+        int size = this.size;
+        Columns c = columns;
+        int fromRow = c.firstRow;
+        if (toRow <= fromRow) {
+            return 0;
+        }
+        if (toRow > size) {
+            throw new IllegalArgumentException("Cannot archive beyond the last row: " + toRow);
+        }
+        ArchivedRows archived = archive.archive(this, fromRow, toRow);
+        ArchivedRows[] segments = Arrays.copyOf(c.archived, c.archived.length + 1);
+        int[] segmentFirstRows = Arrays.copyOf(c.archivedFirstRows, c.archivedFirstRows.length + 1);
+        segments[segments.length - 1] = archived;
+        segmentFirstRows[segmentFirstRows.length - 1] = fromRow;
+
+        int kept = size - toRow;
+        Columns remaining = new Columns(toRow, Math.max(INITIAL_CAPACITY, kept + (kept >> 1)), segments,
+                segmentFirstRows);
+        int from = toRow - fromRow;
+        System.arraycopy(c.epochDays, from, remaining.epochDays, 0, kept);
+        System.arraycopy(c.types, from, remaining.types, 0, kept);
+        System.arraycopy(c.amounts, from, remaining.amounts, 0, kept);
+        System.arraycopy(c.balances, from, remaining.balances, 0, kept);
+        System.arraycopy(c.sequences, from, remaining.sequences, 0, kept);
+        columns = remaining;
+        return toRow - fromRow;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return - Number of rows at the start of the log that are archived rather than on the heap
+     */
+    public int getArchivedSize() {
+        return columns.firstRow;
+    }
+
+    public int getEpochDay(int row) {
+        Columns c = columns;
+        int index = row - c.firstRow;
+        if (index >= 0) {
+            return c.epochDays[index];
+        }
+        int segment = c.segmentOf(row);
+        return c.archived[segment].getEpochDay(row - c.archivedFirstRows[segment]);
+    }
+
+    public byte getType(int row) {
+        Columns c = columns;
+        int index = row - c.firstRow;
+        if (index >= 0) {
+            return c.types[index];
+        }
+        int segment = c.segmentOf(row);
+        return c.archived[segment].getType(row - c.archivedFirstRows[segment]);
+    }
+
+    public long getAmount(int row) {
+        Columns c = columns;
+        int index = row - c.firstRow;
+        if (index >= 0) {
+            return c.amounts[index];
+        }
+        int segment = c.segmentOf(row);
+        return c.archived[segment].getAmount(row - c.archivedFirstRows[segment]);
+    }
+
+    public long getBalance(int row) {
+        Columns c = columns;
+        int index = row - c.firstRow;
+        if (index >= 0) {
+            return c.balances[index];
+        }
+        int segment = c.segmentOf(row);
+        return c.archived[segment].getBalance(row - c.archivedFirstRows[segment]);
+    }
+
+    public int getSequence(int row) {
+        Columns c = columns;
+        int index = row - c.firstRow;
+        if (index >= 0) {
+            return c.sequences[index];
+        }
+        int segment = c.segmentOf(row);
+        return c.archived[segment].getSequence(row - c.archivedFirstRows[segment]);
+    }
+
+    /**
+     * Rows are appended in date order, so the first row on or after a date can be found with a binary search. The
+     * archived rows are only searched if the date is before the first row on the heap.
+     *
+     * @return - Index of the first row on or after the epoch day, or the size if there is none
+     */
+    public int firstRowOnOrAfter(int epochDay) {
+        int size = this.size;
+        Columns c = columns;
+        if (c.firstRow < size && c.epochDays[0] < epochDay) {
+            int low = 1;
+            int high = size - c.firstRow;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (c.epochDays[mid] < epochDay) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return c.firstRow + low;
+        }
+        int low = 0;
+        int high = c.firstRow;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getEpochDay(mid) < epochDay) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Copies the columns into larger ones and publishes them, before the rows after index are written.
+     */
+    private Columns grow(Columns c, int capacity, int index) {
+        Columns grown = new Columns(c.firstRow, capacity, c.archived, c.archivedFirstRows);
+        System.arraycopy(c.epochDays, 0, grown.epochDays, 0, index);
+        System.arraycopy(c.types, 0, grown.types, 0, index);
+        System.arraycopy(c.amounts, 0, grown.amounts, 0, index);
+        System.arraycopy(c.balances, 0, grown.balances, 0, index);
+        System.arraycopy(c.sequences, 0, grown.sequences, 0, index);
+        columns = grown;
+        return grown;
+    }
+
+    /**
+     * The rows on the heap, starting at firstRow, together with the archived segments before them.
+     */
+    private static final class Columns {
+
+        private final int firstRow;
+        private final int[] epochDays;
+        private final byte[] types;
+        private final long[] amounts;
+        private final long[] balances;
+        private final int[] sequences;
+        private final ArchivedRows[] archived;
+        private final int[] archivedFirstRows;
+
+        private Columns(int firstRow, int capacity, ArchivedRows[] archived, int[] archivedFirstRows) {
+            this.firstRow = firstRow;
+            this.epochDays = new int[capacity];
+            this.types = new byte[capacity];
+            this.amounts = new long[capacity];
+            this.balances = new long[capacity];
+            this.sequences = new int[capacity];
+            this.archived = archived;
+            this.archivedFirstRows = archivedFirstRows;
+        }
+
+        /**
+         * @return - Index of the archived segment holding the row, which is below firstRow
+         */
+        private int segmentOf(int row) {
+            int segment = Arrays.binarySearch(archivedFirstRows, row);
+            return segment >= 0 ? segment : -segment - 2;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package main.repository;
+
+import main.models.BankAccount;
+import main.models.InterestRule;
+import main.models.TransactionHistory;
+import main.models.TransactionLog;
+import main.util.TransactionIdSequencer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of the whole data store, taken at a position of the {@link PostingJournal}.
+ * <p>
+ * Layout, big endian: a header (magic, version, journal position, offset of the transactions and section counts), the
+ * interest rules, the last transaction id sequence of every date, a directory with the balance, last updated date,
+ * transaction count and data offset of every account, and finally the transactions of every account as five columns (epoch days, types, amounts,
+ * balances and sequences). Strings are written as an unsigned short length followed by UTF-8 bytes.
+ * <p>
+ * On load, everything up to the directory is read eagerly, so the work depends on the number of accounts only. The
+ * transactions of an account are memory-mapped and copied into the account the first time they are needed.
+ */
+final class BankDataSnapshot {
+
+    private static final int MAGIC = 0x424B534E;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4 + 4;
+    private static final int ROW_SIZE = 4 + 1 + 8 + 8 + 4;
+
+    private BankDataSnapshot() {
+
+    }
+
+    /**
+     * Writes the snapshot next to the target and moves it into place, so a crash never leaves a partial snapshot.
+     * Rows of an account are never changed once appended, so the captured rows of every account can be written while
+     * postings carry on.
+     *
+     * @param journalPosition - Journal position the replay continues from after loading the snapshot
+     * @param accounts        - Accounts as captured for the snapshot
+     */
+    static void write(Path path, long journalPosition, List<InterestRule> rules, Map<Integer, Integer> sequences,
+                      List<AccountState> accounts) throws IOException {
+        byte[][] accountIds = new byte[accounts.size()][];
+        long rowsOffset = HEADER_SIZE;
+        for (InterestRule rule : rules) {
+            rowsOffset += 4 + 8 + 2 + rule.getRuleId().getBytes(StandardCharsets.UTF_8).length;
+        }
+        rowsOffset += (long) sequences.size() * (4 + 4);
+        for (int i = 0; i < accounts.size(); i++) {
+            accountIds[i] = accounts.get(i).account.getAccountNumber().getBytes(StandardCharsets.UTF_8);
+            rowsOffset += 2 + accountIds[i].length + 8 + 4 + 4 + 8;
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(journalPosition);
+            out.writeLong(rowsOffset);
+            out.writeInt(rules.size());
+            out.writeInt(sequences.size());
+            out.writeInt(accounts.size());
+
+            for (InterestRule rule : rules) {
+                out.writeInt(rule.getEpochDay());
+                out.writeLong(rule.getRatePpm());
+                writeString(out, rule.getRuleId().getBytes(StandardCharsets.UTF_8));
+            }
+            for (Map.Entry<Integer, Integer> sequence : sequences.entrySet()) {
+                out.writeInt(sequence.getKey());
+                out.writeInt(sequence.getValue());
+            }
+
+            long offset = rowsOffset;
+            for (int i = 0; i < accounts.size(); i++) {
+                AccountState state = accounts.get(i);
+                int rows = state.rows;
+                writeString(out, accountIds[i]);
+                out.writeLong(state.balance);
+                out.writeInt(state.lastUpdatedDay);
+                out.writeInt(rows);
+                out.writeLong(offset);
+                offset += (long) rows * ROW_SIZE;
+            }
+
+            for (AccountState state : accounts) {
+                TransactionLog log = transactionsOf(state.account);
+                int rows = state.rows;
+                for (int row = 0; row < rows; row++) {
+                    out.writeInt(log.getEpochDay(row));
+                }
+                for (int row = 0; row < rows; row++) {
+                    out.writeByte(log.getType(row));
+                }
+                for (int row = 0; row < rows; row++) {
+                    out.writeLong(log.getAmount(row));
+                }
+                for (int row = 0; row < rows; row++) {
+                    out.writeLong(log.getBalance(row));
+                }
+                for (int row = 0; row < rows; row++) {
+                    out.writeInt(log.getSequence(row));
+                }
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return - The transactions of the account, read from its pending history without loading it into the account
+     */
+    private static TransactionLog transactionsOf(BankAccount account) {
+        TransactionHistory history = account.getPendingHistory();
+        if (history == null) {
+            return account.getTransactionLog();
+        }
+        TransactionLog log = new TransactionLog();
+        history.copyTo(log);
+        return log;
+    }
+
+    /**
+     * Restores the interest rules, transaction id sequences and accounts of the snapshot into the store. Transactions
+     * are left in the file until an account needs them.
+     *
+     * @return - Journal position to continue the replay from
+     */
+    static long load(Path path, BankDataStoreI store) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a data store snapshot: " + path);
+            }
+            long journalPosition = header.getLong();
+            long rowsOffset = header.getLong();
+            int ruleCount = header.getInt();
+            int dayCount = header.getInt();
+            int accountCount = header.getInt();
+
+            MappedByteBuffer directory = channel.map(FileChannel.MapMode.READ_ONLY, 0, rowsOffset);
+            directory.position(HEADER_SIZE);
+            for (int i = 0; i < ruleCount; i++) {
+                int epochDay = directory.getInt();
+                long ratePpm = directory.getLong();
+                store.addInterestRule(new InterestRule(epochDay, readString(directory), ratePpm));
+            }
+            TransactionIdSequencer sequencer = TransactionIdSequencer.getInstance();
+            for (int i = 0; i < dayCount; i++) {
+                sequencer.advanceTo(directory.getInt(), directory.getInt());
+            }
+            for (int i = 0; i < accountCount; i++) {
+                String accountNumber = readString(directory);
+                long balance = directory.getLong();
+                int lastUpdatedDay = directory.getInt();
+                int rows = directory.getInt();
+                long offset = directory.getLong();
+                store.addAccount(new BankAccount(accountNumber, balance, lastUpdatedDay,
+                        new MappedHistory(channel, offset, rows), store.getInterestRates(), store.getLedger()));
+            }
+            return journalPosition;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * An account together with its balance, last updated date and number of transactions, captured at the same time
+     * under the account lock.
+     */
+    static final class AccountState {
+
+        private final BankAccount account;
+        private final int rows;
+        private final long balance;
+        private final int lastUpdatedDay;
+
+        AccountState(BankAccount account, int rows, long balance, int lastUpdatedDay) {
+            this.account = account;
+            this.rows = rows;
+            this.balance = balance;
+            this.lastUpdatedDay = lastUpdatedDay;
+        }
+    }
+
+    /**
+     * The transactions of one account in the snapshot, mapped into memory only when the account loads them.
+     */
+    private static final class MappedHistory implements TransactionHistory {
+
+        private final FileChannel channel;
+        private final long offset;
+        private final int size;
+
+        private MappedHistory(FileChannel channel, long offset, int size) {
+            this.channel = channel;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void copyTo(TransactionLog log) {
+            int[] epochDays = new int[size];
+            byte[] types = new byte[size];
+            long[] amounts = new long[size];
+            long[] balances = new long[size];
+            int[] sequences = new int[size];
+            try {
+                MappedByteBuffer rows = channel.map(FileChannel.MapMode.READ_ONLY, offset, (long) size * ROW_SIZE);
+                rows.asIntBuffer().get(epochDays);
+                rows.position(size * 4);
+                rows.get(types);
+                rows.asLongBuffer().get(amounts);
+                rows.position(rows.position() + size * 8);
+                rows.asLongBuffer().get(balances);
+                rows.position(rows.position() + size * 8);
+                rows.asIntBuffer().get(sequences);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to load transactions from the snapshot", e);
+            }
+            log.appendAll(epochDays, types, amounts, balances, sequences, size);
+        }
+    }
+}
@@ -1,19 +1,49 @@
 package main.repository;
 
+import main.metrics.Metrics;
 import main.models.BankAccount;
+import main.models.InterestRateSource;
 import main.models.InterestRule;
+import main.models.PostingResult;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * In memory data store that can be shared between threads.
+ * <p>
+ * Account lookups go through a {@link ConcurrentHashMap} and never block. Postings lock only the account they touch
+ * (see {@link BankAccount}), so postings to different accounts run in parallel.
+ * <p>
+ * Interest rules are indexed by their effective date, so a rule can be upserted and the rule in effect on any date can
+ * be found in O(log n), regardless of the order the rules were defined in. Accounts accrue their interest at the rates
+ * of these rules.
+ * <p>
+ * Every posting is also added to the bank-wide {@link DailyLedger}, which is rebuilt from all accounts once accounts
+ * are added with a history. Ingest claims postings in an {@link IdempotencyIndex} first, so that replays are not
+ * posted.
+ */
 public final class BankDataStore implements BankDataStoreI {
 
     private static final BankDataStore INSTANCE = new BankDataStore();
 
-    private final Map<String, BankAccount> bankAccountMap = new HashMap<>();
-    private final List<InterestRule> interestRules = new ArrayList<>();
+    private final Map<String, BankAccount> bankAccountMap = new ConcurrentHashMap<>();
+    private final NavigableMap<LocalDate, InterestRule> interestRules = new ConcurrentSkipListMap<>();
+    private final InterestRuleRates interestRates = new InterestRuleRates(interestRules);
+    private final DailyLedger ledger = new DailyLedger();
+    private final IdempotencyIndex idempotencyIndex = BankDataStoreProvider.createIdempotencyIndex();
+    // Held to create accounts, and exclusively to list them when a ledger rebuild starts
+    private final ReentrantReadWriteLock accountCreationLock = new ReentrantReadWriteLock();
+    private final ReentrantLock ledgerRebuildLock = new ReentrantLock();
 
     private BankDataStore() {
 
@@ -23,20 +53,88 @@ public final class BankDataStore implements BankDataStoreI {
         return INSTANCE;
     }
 
+    /**
+     * @return - A new, empty store that is independent of the shared instance
+     */
+    public static BankDataStore newInstance() {
+        return new BankDataStore();
+    }
+
     @Override
     public void addInterestRule(InterestRule interestRule) {
-        interestRules.removeIf(rule -> rule.getDateString().equals(interestRule.getDateString()));
-        interestRules.add(interestRule);
+        // A rule defined for a date that already has one replaces it
+        interestRates.putRule(interestRule);
     }
 
     @Override
     public List<InterestRule> getAllInterestRules() {
-        return interestRules;
+        return List.copyOf(interestRules.values());
+    }
+
+    @Override
+    public NavigableMap<LocalDate, InterestRule> getInterestRuleIndex() {
+        return Collections.unmodifiableNavigableMap(interestRules);
+    }
+
+    @Override
+    public InterestRule getEffectiveInterestRule(LocalDate date) {
+        long start = Metrics.start();
+        Entry<LocalDate, InterestRule> effectiveRule = interestRules.floorEntry(date);
+        Metrics.INTEREST_RULE_LOOKUP.stop(start);
+        return effectiveRule == null ? null : effectiveRule.getValue();
     }
 
+    @Override
+    public InterestRateSource getInterestRates() {
+        return interestRates;
+    }
+
+    @Override
+    public DailyLedger getLedger() {
+        return ledger;
+    }
+
+    /**
+     * Rebuilds the ledger, one rebuild at a time. The accounts are listed while none can be created, see
+     * {@link DailyLedger#startRebuild}.
+     */
+    @Override
+    public void rebuildLedger(int threads) {
+        ledgerRebuildLock.lock();
+        try {
+            DailyLedger.Rebuild rebuild;
+            accountCreationLock.writeLock().lock();
+            try {
+                rebuild = ledger.startRebuild(bankAccountMap.values());
+            } finally {
+                accountCreationLock.writeLock().unlock();
+            }
+            rebuild.run(threads);
+        } finally {
+            ledgerRebuildLock.unlock();
+        }
+    }
+
+    @Override
+    public IdempotencyIndex getIdempotencyIndex() {
+        return idempotencyIndex;
+    }
+
+    /**
+     * Adds an account, e.g. restored from a snapshot. The ledger was not told about the transactions it already has,
+     * so it needs a rebuild if there are any.
+     */
     @Override
     public void addAccount(BankAccount bankAccount) {
-        bankAccountMap.put(bankAccount.getAccountNumber(), bankAccount);
+        accountCreationLock.readLock().lock();
+        try {
+            bankAccountMap.put(bankAccount.getAccountNumber(), bankAccount);
+        } finally {
+            accountCreationLock.readLock().unlock();
+        }
+        if (bankAccount.getTransactionCount() > 0) {
+            ledger.invalidate();
+        }
     }
 
     @Override
@@ -46,11 +144,43 @@ public final class BankDataStore implements BankDataStoreI {
 
     @Override
     public boolean bankAccountExists(String bankAccountID) {
-        return bankAccountMap.containsKey(bankAccountID);
+        return getBankAccount(bankAccountID) != null;
     }
 
     @Override
     public BankAccount getBankAccount(String bankAccountID) {
-        return bankAccountMap.get(bankAccountID);
+        long start = Metrics.start();
+        BankAccount bankAccount = bankAccountMap.get(bankAccountID);
+        Metrics.ACCOUNT_LOOKUP.stop(start);
+        return bankAccount;
+    }
+
+    @Override
+    public BankAccount getOrCreateBankAccount(String bankAccountID) {
+        BankAccount bankAccount = getBankAccount(bankAccountID);
+        if (bankAccount != null) {
+            return bankAccount;
+        }
+        accountCreationLock.readLock().lock();
+        try {
+            return bankAccountMap.computeIfAbsent(bankAccountID,
+                    accountNumber -> new BankAccount(accountNumber, interestRates, ledger));
+        } finally {
+            accountCreationLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public PostingResult deposit(String bankAccountID, String date, long amount, String type) throws ParseException {
+        return getOrCreateBankAccount(bankAccountID).deposit(date, amount, type);
+    }
+
+    @Override
+    public PostingResult withdrawIfSufficient(String bankAccountID, String date, long amount) throws ParseException {
+        BankAccount bankAccount = getBankAccount(bankAccountID);
+        if (bankAccount == null) {
+            return PostingResult.ACCOUNT_NOT_FOUND;
+        }
+        return bankAccount.withdraw(date, amount);
     }
 }
@@ -1,16 +1,56 @@
 package main.repository;
 
 import main.models.BankAccount;
+import main.models.InterestRateSource;
 import main.models.InterestRule;
+import main.models.PostingResult;
 
+import java.text.ParseException;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
 
 public interface BankDataStoreI {
 
     void addInterestRule(InterestRule interestRule);
 
+    /**
+     * @return - All interest rules, ordered by date
+     */
     List<InterestRule> getAllInterestRules();
 
+    /**
+     * @return - Read only view of the interest rules keyed and ordered by the date they become effective
+     */
+    NavigableMap<LocalDate, InterestRule> getInterestRuleIndex();
+
+    /**
+     * @return - The rule in effect on the given date, i.e. the latest rule on or before it, or null if there is none
+     */
+    InterestRule getEffectiveInterestRule(LocalDate date);
+
+    /**
+     * @return - Daily rates of the interest rules, which the accounts of the store accrue their interest at
+     */
+    InterestRateSource getInterestRates();
+
+    /**
+     * @return - Bank-wide daily totals of the postings to the accounts of the store
+     */
+    DailyLedger getLedger();
+
+    /**
+     * Rebuilds the daily totals from the transactions of all accounts on the given number of threads, without pausing
+     * postings.
+     */
+    void rebuildLedger(int threads);
+
+    /**
+     * @return - Postings claimed within the deduplication window, which ingest claims a posting in before posting it
+     */
+    IdempotencyIndex getIdempotencyIndex();
+
     void addAccount(BankAccount bankAccount);
 
     List<BankAccount> getAllBankAccounts();
@@ -19,5 +59,58 @@ public interface BankDataStoreI {
 
     BankAccount getBankAccount(String bankAccountID);
 
+    /**
+     * Returns the account for the given ID, atomically creating it if it does not exist yet.
+     */
+    BankAccount getOrCreateBankAccount(String bankAccountID);
+
+    /**
+     * Deposits the amount in cents into the account, creating the account on its first deposit.
+     */
+    PostingResult deposit(String bankAccountID, String date, long amount, String type) throws ParseException;
+
+    /**
+     * Atomically checks the balance and withdraws from the account, so that concurrent withdrawals can never overdraw it.
+     */
+    PostingResult withdrawIfSufficient(String bankAccountID, String date, long amount) throws ParseException;
+
+    /**
+     * Starts a {@link #deposit}. Stores that post on other threads return before the deposit is applied, so a caller
+     * can keep many postings in flight. Postings a caller starts for an account are applied in the order it starts
+     * them. Other stores apply the deposit before returning.
+     *
+     * @return - Result of the deposit, failing with a {@link ParseException} for an invalid date
+     */
+    default CompletableFuture<PostingResult> depositAsync(String bankAccountID, String date, long amount, String type) {
+        try {
+            return CompletableFuture.completedFuture(deposit(bankAccountID, date, amount, type));
+        } catch (ParseException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Starts a {@link #withdrawIfSufficient}, see {@link #depositAsync}.
+     */
+    default CompletableFuture<PostingResult> withdrawIfSufficientAsync(String bankAccountID, String date, long amount) {
+        try {
+            return CompletableFuture.completedFuture(withdrawIfSufficient(bankAccountID, date, amount));
+        } catch (ParseException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Applies a batch of changes and returns once all of them are durable, instead of making every change durable on
+     * its own. Stores that are not persistent just apply the changes.
+     */
+    default <E extends Exception> void batch(Changes<E> changes) throws E {
+        changes.apply();
+    }
+
+    @FunctionalInterface
+    interface Changes<E extends Exception> {
+        void apply() throws E;
+    }
 
 }
@@ -0,0 +1,155 @@
+package main.repository;
+
+import main.models.TransactionArchive;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides the data store the application runs on.
+ * <p>
+ * By default this is the in-memory {@link BankDataStore}. When the {@code banking.journal} system property names a
+ * journal file, the store is a {@link JournaledBankDataStore} on top of it, restored from the journal on first use and
+ * closed when the JVM exits. A snapshot is kept next to the journal ({@code <journal>.snapshot}) and rewritten every
+ * {@code banking.snapshot.intervalSeconds} (5 minutes by default, 0 to disable), so a restart only replays the journal
+ * written since the last snapshot.
+ * <p>
+ * When {@code banking.shards} is set to a number of shards (e.g. the number of cores), postings go through a
+ * {@link ShardedBankDataStore} on top of that, with {@code banking.shards.queueCapacity} postings queued per shard at
+ * most (1024 by default).
+ * <p>
+ * Closed months are moved into a {@link MappedTransactionArchive} in the file named by {@code banking.archive}, next to
+ * the journal by default ({@code <journal>.archive}). Without either, all transactions stay on the heap.
+ * <p>
+ * Postings are remembered for {@code banking.dedup.windowSeconds} (10 minutes by default, 0 to disable) to reject
+ * replays, up to {@code banking.dedup.maxKeys} postings (1048576 by default), see {@link IdempotencyIndex}.
+ */
+public final class BankDataStoreProvider {
+
+    public static final String JOURNAL_PROPERTY = "banking.journal";
+    public static final String SNAPSHOT_INTERVAL_PROPERTY = "banking.snapshot.intervalSeconds";
+    public static final String SHARDS_PROPERTY = "banking.shards";
+    public static final String SHARD_QUEUE_CAPACITY_PROPERTY = "banking.shards.queueCapacity";
+    public static final String ARCHIVE_PROPERTY = "banking.archive";
+    public static final String DEDUP_WINDOW_PROPERTY = "banking.dedup.windowSeconds";
+    public static final String DEDUP_MAX_KEYS_PROPERTY = "banking.dedup.maxKeys";
+
+    private static final long DEFAULT_SNAPSHOT_INTERVAL_SECONDS = 300L;
+    private static final int DEFAULT_SHARD_QUEUE_CAPACITY = 1024;
+    private static final long DEFAULT_DEDUP_WINDOW_SECONDS = 600L;
+    private static final int DEFAULT_DEDUP_MAX_KEYS = 1 << 20;
+
+    private static volatile BankDataStoreI dataStore;
+    private static TransactionArchive transactionArchive;
+    private static boolean transactionArchiveCreated;
+
+    private BankDataStoreProvider() {
+
+    }
+
+    public static BankDataStoreI getDataStore() {
+        BankDataStoreI store = dataStore;
+        if (store == null) {
+            synchronized (BankDataStoreProvider.class) {
+                store = dataStore;
+                if (store == null) {
+                    store = createDataStore();
+                    dataStore = store;
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * @return - The archive closed months are moved into, or null if they stay on the heap
+     */
+    public static synchronized TransactionArchive getTransactionArchive() {
+        if (!transactionArchiveCreated) {
+            transactionArchive = createTransactionArchive();
+            transactionArchiveCreated = true;
+        }
+        return transactionArchive;
+    }
+
+    /**
+     * @return - A new index of the postings of the deduplication window
+     */
+    static IdempotencyIndex createIdempotencyIndex() {
+        return new IdempotencyIndex(TimeUnit.SECONDS.toNanos(Long.getLong(DEDUP_WINDOW_PROPERTY,
+                DEFAULT_DEDUP_WINDOW_SECONDS)), Integer.getInteger(DEDUP_MAX_KEYS_PROPERTY, DEFAULT_DEDUP_MAX_KEYS),
+                System::nanoTime);
+    }
+
+    private static TransactionArchive createTransactionArchive() {
+        String archiveFile = System.getProperty(ARCHIVE_PROPERTY);
+        if (archiveFile == null || archiveFile.isBlank()) {
+            String journalFile = System.getProperty(JOURNAL_PROPERTY);
+            if (journalFile == null || journalFile.isBlank()) {
+                return null;
+            }
+            archiveFile = journalFile + ".archive";
+        }
+        try {
+            return MappedTransactionArchive.create(Path.of(archiveFile));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create the transaction archive " + archiveFile, e);
+        }
+    }
+
+    private static BankDataStoreI createDataStore() {
+        JournaledBankDataStore journaledStore = openJournal();
+        BankDataStoreI store = journaledStore != null ? journaledStore : BankDataStore.getInstance();
+        ShardedBankDataStore shardedStore = null;
+        int shards = Integer.getInteger(SHARDS_PROPERTY, 0);
+        if (shards > 0) {
+            shardedStore = new ShardedBankDataStore(store, shards,
+                    Integer.getInteger(SHARD_QUEUE_CAPACITY_PROPERTY, DEFAULT_SHARD_QUEUE_CAPACITY));
+            store = shardedStore;
+        }
+        if (journaledStore != null || shardedStore != null) {
+            ShardedBankDataStore shardsToDrain = shardedStore;
+            // One hook, as hooks run concurrently and the shards must be drained before the journal is closed
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> close(shardsToDrain, journaledStore),
+                    "data-store-shutdown"));
+        }
+        return store;
+    }
+
+    /**
+     * @return - The journaled store named by the journal property, or null if there is none
+     */
+    private static JournaledBankDataStore openJournal() {
+        String journalFile = System.getProperty(JOURNAL_PROPERTY);
+        if (journalFile == null || journalFile.isBlank()) {
+            return null;
+        }
+        try {
+            Path journal = Path.of(journalFile);
+            JournaledBankDataStore store = JournaledBankDataStore.open(journal,
+                    journal.resolveSibling(journal.getFileName() + ".snapshot"), BankDataStore.getInstance());
+            long snapshotInterval = Long.getLong(SNAPSHOT_INTERVAL_PROPERTY, DEFAULT_SNAPSHOT_INTERVAL_SECONDS);
+            if (snapshotInterval > 0) {
+                store.scheduleSnapshots(snapshotInterval, TimeUnit.SECONDS);
+            }
+            return store;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the journal " + journalFile, e);
+        }
+    }
+
+    private static void close(ShardedBankDataStore shardedStore, JournaledBankDataStore journaledStore) {
+        if (shardedStore != null) {
+            shardedStore.close();
+        }
+        if (journaledStore != null) {
+            try {
+                journaledStore.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close the journal: " + e.getMessage());
+            }
+        }
+    }
+}
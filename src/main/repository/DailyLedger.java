@@ -0,0 +1,293 @@
+package main.repository;
+
+import main.models.BankAccount;
+import main.models.LedgerTotals;
+import main.models.PostingListener;
+import main.models.Transaction;
+import main.models.TransactionHistory;
+import main.models.TransactionLog;
+import main.util.DateCodec;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bank-wide totals of deposits, withdrawals and interest of every day, kept up to date as accounts post.
+ * <p>
+ * Every day has its own {@link LongAdder}s, which spread concurrent postings over cells of their own instead of
+ * contending on a single counter, so keeping the totals costs a posting an uncontended add. Days are grouped in months,
+ * and the month of the last posting is kept at hand, as postings mostly fall on the same few days. Totals over a range
+ * of days are summed when they are read, so a month or a year reads a few hundred counters whatever the number of
+ * postings.
+ * <p>
+ * The totals only count the postings the ledger was told about. Accounts restored with a history (see
+ * {@link #invalidate()}) make it incomplete until it is rebuilt from the transactions of all accounts.
+ */
+public final class DailyLedger implements PostingListener {
+
+    // Replaced as a whole when a rebuild starts and ends, so a posting always sees a consistent pair of totals
+    private volatile State state = new State(new Totals(), null, null);
+    private volatile boolean complete = true;
+
+    @Override
+    public void onPosted(BankAccount account, int epochDay, byte type, long amount) {
+        State s = state;
+        s.current.add(epochDay, type, amount);
+        // The postings of an account waiting for its rebuild are read from its transactions instead
+        if (s.rebuilding != null && !s.waiting.contains(account)) {
+            s.rebuilding.add(epochDay, type, amount);
+        }
+    }
+
+    /**
+     * Marks the totals as missing postings, e.g. of an account restored with its history.
+     */
+    public void invalidate() {
+        complete = false;
+    }
+
+    /**
+     * @return - false if postings the ledger was not told about are missing from the totals, until it is rebuilt
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return - Totals of the postings dated from the first to the last date, both included
+     */
+    public LedgerTotals getTotals(LocalDate from, LocalDate to) {
+        long[] sums = new long[DayTotals.FIELDS];
+        state.current.sum((int) from.toEpochDay(), (int) to.toEpochDay(), sums);
+        return new LedgerTotals(from, to, sums[0], sums[1], sums[2], sums[3], sums[4], sums[5]);
+    }
+
+    /**
+     * Starts counting every posting into new totals as well, except the postings of the given accounts until
+     * {@link Rebuild#cut(BankAccount)} is called for them. The accounts must be listed while no account can be
+     * created, so that every account is either in the list or has all of its postings counted.
+     */
+    Rebuild startRebuild(Collection<BankAccount> accounts) {
+        Set<BankAccount> waiting = ConcurrentHashMap.newKeySet(accounts.size());
+        waiting.addAll(accounts);
+        Totals rebuilding = new Totals();
+        state = new State(state.current, rebuilding, waiting);
+        return new Rebuild(List.copyOf(accounts), rebuilding, waiting);
+    }
+
+    /**
+     * Bank-wide totals rebuilt from the transactions of all accounts, while postings go on.
+     * <p>
+     * Every account is only locked to take the number of its transactions and stop waiting, as a snapshot does (see
+     * {@link JournaledBankDataStore#snapshot()}). Its transactions up to then are read from the transaction log, and
+     * the ones after are counted as they are posted.
+     */
+    final class Rebuild {
+
+        private static final int CHUNK_SIZE = 256;
+
+        private final List<BankAccount> accounts;
+        private final Totals totals;
+        private final Set<BankAccount> waiting;
+
+        private Rebuild(List<BankAccount> accounts, Totals totals, Set<BankAccount> waiting) {
+            this.accounts = accounts;
+            this.totals = totals;
+            this.waiting = waiting;
+        }
+
+        /**
+         * Reads the transactions of all accounts on a pool of threads, each taking a chunk of accounts at a time, and
+         * replaces the totals with the rebuilt ones. If the rebuild fails, the totals are left as they were.
+         */
+        void run(int threads) {
+            AtomicInteger nextAccount = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            boolean rebuilt = false;
+            try {
+                List<Future<Void>> pending = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    Callable<Void> task = () -> {
+                        int from;
+                        while ((from = nextAccount.getAndAdd(CHUNK_SIZE)) < accounts.size()) {
+                            for (int j = from; j < Math.min(from + CHUNK_SIZE, accounts.size()); j++) {
+                                cut(accounts.get(j));
+                            }
+                        }
+                        return null;
+                    };
+                    pending.add(executor.submit(task));
+                }
+                for (Future<Void> future : pending) {
+                    await(future);
+                }
+                rebuilt = true;
+            } finally {
+                executor.shutdownNow();
+                state = rebuilt ? new State(totals, null, null) : new State(state.current, null, null);
+            }
+            complete = true;
+        }
+
+        /**
+         * Counts the transactions of the account posted so far, and lets its later postings be counted as they come.
+         * A history that is still pending is read into a log of its own, so the account does not load it.
+         */
+        private void cut(BankAccount account) {
+            TransactionHistory history;
+            int rows;
+            account.lock();
+            try {
+                // An account loads its pending history before posting, so the history then holds all of its rows
+                history = account.getPendingHistory();
+                rows = history != null ? history.size() : account.getTransactionLog().size();
+                waiting.remove(account);
+            } finally {
+                account.unlock();
+            }
+            TransactionLog log;
+            if (history != null) {
+                log = new TransactionLog();
+                history.copyTo(log);
+            } else {
+                log = account.getTransactionLog();
+            }
+            // Rows below the size never change, so they are read without the lock
+            for (int row = 0; row < rows; row++) {
+                totals.add(log.getEpochDay(row), log.getType(row), log.getAmount(row));
+            }
+        }
+
+        private void await(Future<Void> future) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Ledger rebuild interrupted", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    private static final class State {
+
+        private final Totals current;
+        // Totals being rebuilt, or null if there is no rebuild
+        private final Totals rebuilding;
+        // Accounts whose postings are not counted into the rebuilt totals yet
+        private final Set<BankAccount> waiting;
+
+        private State(Totals current, Totals rebuilding, Set<BankAccount> waiting) {
+            this.current = current;
+            this.rebuilding = rebuilding;
+            this.waiting = waiting;
+        }
+    }
+
+    /**
+     * Totals of every day with postings, grouped in months.
+     */
+    private static final class Totals {
+
+        // Keyed by year * 100 + month
+        private final ConcurrentHashMap<Integer, MonthTotals> months = new ConcurrentHashMap<>();
+        private volatile MonthTotals lastMonth;
+
+        private void add(int epochDay, byte type, long amount) {
+            MonthTotals month = lastMonth;
+            if (month == null || epochDay < month.firstDay || epochDay >= month.firstDay + month.days.length) {
+                month = months.computeIfAbsent(DateCodec.toDigits(epochDay) / 100, MonthTotals::new);
+                lastMonth = month;
+            }
+            month.days[epochDay - month.firstDay].add(type, amount);
+        }
+
+        /**
+         * Adds the totals of the days in [fromDay, toDay] to the sums.
+         */
+        private void sum(int fromDay, int toDay, long[] sums) {
+            int day = fromDay;
+            while (day <= toDay) {
+                int digits = DateCodec.toDigits(day);
+                MonthTotals month = months.get(digits / 100);
+                int monthLength = DateCodec.lengthOfMonth(digits / 10_000, digits / 100 % 100);
+                int monthEnd = day - digits % 100 + monthLength;
+                if (month != null) {
+                    for (int d = day; d <= Math.min(toDay, monthEnd); d++) {
+                        month.days[d - month.firstDay].sum(sums);
+                    }
+                }
+                day = monthEnd + 1;
+            }
+        }
+    }
+
+    private static final class MonthTotals {
+
+        private final int firstDay;
+        private final DayTotals[] days;
+
+        private MonthTotals(int yearMonth) {
+            int year = yearMonth / 100;
+            int month = yearMonth % 100;
+            this.firstDay = DateCodec.toEpochDay(year, month, 1);
+            this.days = new DayTotals[DateCodec.lengthOfMonth(year, month)];
+            for (int i = 0; i < days.length; i++) {
+                days[i] = new DayTotals();
+            }
+        }
+    }
+
+    private static final class DayTotals {
+
+        private static final int FIELDS = 6;
+
+        private final LongAdder depositCount = new LongAdder();
+        private final LongAdder deposits = new LongAdder();
+        private final LongAdder withdrawalCount = new LongAdder();
+        private final LongAdder withdrawals = new LongAdder();
+        private final LongAdder interestCount = new LongAdder();
+        private final LongAdder interest = new LongAdder();
+
+        private void add(byte type, long amount) {
+            switch (type) {
+                case Transaction.WITHDRAWAL:
+                    withdrawalCount.increment();
+                    withdrawals.add(amount);
+                    break;
+                case Transaction.INTEREST:
+                    interestCount.increment();
+                    interest.add(amount);
+                    break;
+                default:
+                    depositCount.increment();
+                    deposits.add(amount);
+                    break;
+            }
+        }
+
+        private void sum(long[] sums) {
+            sums[0] += depositCount.sum();
+            sums[1] += deposits.sum();
+            sums[2] += withdrawalCount.sum();
+            sums[3] += withdrawals.sum();
+            sums[4] += interestCount.sum();
+            sums[5] += interest.sum();
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package main.repository;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers the postings of a recent window of time, so that a feed retrying a posting does not post it twice.
+ * <p>
+ * A posting is known by the idempotency key its client gave it within its account, or else by its content: account,
+ * date, type and amount. Keys are kept in a ring of {@value #GENERATIONS} generations, each covering a slice of the
+ * window. New keys go into the newest generation, and the oldest is dropped as a whole once it is out of the window, so
+ * memory is bounded by the postings of a window and expiring keys costs nothing per key. If more than the maximum
+ * number of keys arrive within a window, generations are dropped early and the window is shortened rather than
+ * growing.
+ * <p>
+ * Every generation has a Bloom filter next to its exact set of keys. A key is claimed with a single add to the set of
+ * the newest generation, and the sets of the older ones are only looked up when their filter has all the bits of the
+ * key, so a new posting, by far the most common, reads a few bits of each older generation instead of probing its
+ * set. A replay is found in the exact set it is in.
+ * <p>
+ * The index is not persisted, a restart forgets the postings of the window before it.
+ */
+public final class IdempotencyIndex {
+
+    private static final int GENERATIONS = 4;
+    private static final int FILTER_BITS_PER_KEY = 8;
+    private static final int FILTER_HASHES = 3;
+    private static final VarHandle FILTER_WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long windowNanos;
+    private final long generationNanos;
+    private final int maxKeysPerGeneration;
+    private final LongSupplier nanoClock;
+
+    // Newest generation first, replaced as a whole when the generations rotate
+    private volatile Generation[] generations;
+
+    /**
+     * @param windowNanos - How long a posting is remembered at least, 0 to remember none
+     * @param maxKeys     - Number of keys kept at most
+     * @param nanoClock   - Source of the current time in nanoseconds, e.g. {@link System#nanoTime()}
+     */
+    public IdempotencyIndex(long windowNanos, int maxKeys, LongSupplier nanoClock) {
+        this.windowNanos = windowNanos;
+        // A key put at the end of the newest generation is still kept over the following GENERATIONS - 1 slices
+        this.generationNanos = Math.max(1L, windowNanos / (GENERATIONS - 1));
+        this.maxKeysPerGeneration = Math.max(1, maxKeys / GENERATIONS);
+        this.nanoClock = nanoClock;
+        this.generations = windowNanos > 0 ? new Generation[]{newGeneration(nanoClock.getAsLong())} : new Generation[0];
+    }
+
+    /**
+     * Claims a posting before it is posted.
+     *
+     * @param idempotencyKey - Key the client gave the posting, or null to know it by its content
+     * @return - false if the posting was claimed within the window, i.e. it is a replay and must not be posted
+     */
+    public boolean claim(String accountNumber, int epochDay, byte type, long amount, String idempotencyKey) {
+        if (windowNanos <= 0) {
+            return true;
+        }
+        PostingKey key = new PostingKey(accountNumber, epochDay, type, amount, idempotencyKey);
+        Generation[] current = currentGenerations();
+        for (int i = 1; i < current.length; i++) {
+            if (current[i].mightContain(key.hash) && current[i].keys.contains(key)) {
+                return false;
+            }
+        }
+        while (true) {
+            Generation newest = current[0];
+            if (!newest.keys.add(key)) {
+                return false;
+            }
+            newest.addToFilter(key.hash);
+            // If the generations rotated meanwhile, a claim that checked the older ones may have missed this key, so it
+            // goes into the new newest generation as well
+            current = generations;
+            if (current[0] == newest) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Forgets a claimed posting that was not posted after all, so that it can be retried.
+     */
+    public void release(String accountNumber, int epochDay, byte type, long amount, String idempotencyKey) {
+        PostingKey key = new PostingKey(accountNumber, epochDay, type, amount, idempotencyKey);
+        for (Generation generation : generations) {
+            generation.keys.remove(key);
+        }
+    }
+
+    /**
+     * @return - Number of keys remembered
+     */
+    public long size() {
+        long size = 0L;
+        for (Generation generation : generations) {
+            size += generation.keys.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return - The generations, after starting a new one if the newest is over or full
+     */
+    private Generation[] currentGenerations() {
+        Generation[] current = generations;
+        long now = nanoClock.getAsLong();
+        if (now - current[0].startNanos < generationNanos && current[0].keys.size() < maxKeysPerGeneration) {
+            return current;
+        }
+        synchronized (this) {
+            current = generations;
+            if (now - current[0].startNanos < generationNanos && current[0].keys.size() < maxKeysPerGeneration) {
+                return current;
+            }
+            // Generations that ended before the window are dropped, even if there are fewer than GENERATIONS. A
+            // generation takes keys until its slice is over or the next one starts, whichever is first
+            int kept = 0;
+            while (kept < Math.min(current.length, GENERATIONS - 1)) {
+                long end = Math.min(current[kept].startNanos + generationNanos,
+                        kept == 0 ? now : current[kept - 1].startNanos);
+                if (now - end >= windowNanos) {
+                    break;
+                }
+                kept++;
+            }
+            Generation[] rotated = new Generation[kept + 1];
+            rotated[0] = newGeneration(now);
+            System.arraycopy(current, 0, rotated, 1, kept);
+            generations = rotated;
+            return rotated;
+        }
+    }
+
+    private Generation newGeneration(long startNanos) {
+        return new Generation(startNanos, maxKeysPerGeneration);
+    }
+
+    private static final class Generation {
+
+        private final long startNanos;
+        private final Set<PostingKey> keys;
+        private final long[] filter;
+        private final int filterMask;
+
+        private Generation(long startNanos, int maxKeys) {
+            this.startNanos = startNanos;
+            this.keys = ConcurrentHashMap.newKeySet();
+            int words = Integer.highestOneBit(Math.max(1, (int) ((long) maxKeys * FILTER_BITS_PER_KEY / 64) - 1)) << 1;
+            this.filter = new long[words];
+            this.filterMask = words * 64 - 1;
+        }
+
+        private void addToFilter(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32) | 1;
+            for (int i = 0; i < FILTER_HASHES; i++) {
+                int bit = (h1 + i * h2) & filterMask;
+                long mask = 1L << bit;
+                if (((long) FILTER_WORDS.getVolatile(filter, bit >>> 6) & mask) == 0) {
+                    FILTER_WORDS.getAndBitwiseOr(filter, bit >>> 6, mask);
+                }
+            }
+        }
+
+        private boolean mightContain(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32) | 1;
+            for (int i = 0; i < FILTER_HASHES; i++) {
+                int bit = (h1 + i * h2) & filterMask;
+                if (((long) FILTER_WORDS.getVolatile(filter, bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A posting as it is remembered, by its idempotency key if it has one, or else by its content.
+     */
+    private static final class PostingKey {
+
+        private final String accountNumber;
+        private final int epochDay;
+        private final byte type;
+        private final long amount;
+        private final String idempotencyKey;
+        private final long hash;
+
+        private PostingKey(String accountNumber, int epochDay, byte type, long amount, String idempotencyKey) {
+            this.accountNumber = accountNumber;
+            this.idempotencyKey = idempotencyKey;
+            if (idempotencyKey != null) {
+                this.epochDay = 0;
+                this.type = 0;
+                this.amount = 0L;
+                this.hash = mix(accountNumber.hashCode() * 31L + idempotencyKey.hashCode());
+            } else {
+                this.epochDay = epochDay;
+                this.type = type;
+                this.amount = amount;
+                this.hash = mix(((accountNumber.hashCode() * 31L + epochDay) * 31L + type) * 31L + amount);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PostingKey)) {
+                return false;
+            }
+            PostingKey that = (PostingKey) o;
+            return hash == that.hash && epochDay == that.epochDay && type == that.type && amount == that.amount
+                    && accountNumber.equals(that.accountNumber)
+                    && (idempotencyKey == null ? that.idempotencyKey == null
+                    : idempotencyKey.equals(that.idempotencyKey));
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash ^ (hash >>> 32));
+        }
+
+        /**
+         * Spreads the bits of the value over the whole hash, as the Bloom filters take their bits from both halves.
+         */
+        private static long mix(long value) {
+            value ^= value >>> 33;
+            value *= 0xff51afd7ed558ccdL;
+            value ^= value >>> 33;
+            value *= 0xc4ceb9fe1a85ec53L;
+            return value ^ (value >>> 33);
+        }
+    }
+}
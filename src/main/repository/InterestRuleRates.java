@@ -0,0 +1,200 @@
+package main.repository;
+
+import main.models.InterestRateSource;
+import main.models.InterestRule;
+import main.util.DateCodec;
+
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Daily interest rates read from an index of interest rules, where a rule is in effect from its date until the next
+ * rule.
+ * <p>
+ * Rates are looked up in a calendar per year, holding the cumulative rate of every day of the year (a prefix sum
+ * indexed by day of the year). The rates of any range of days within a year are then the difference of two entries.
+ * Calendars are built on first use, and a rule change only drops the calendars of the years it affects, which are
+ * rebuilt when they are next used. Rules must be added through {@link #putRule(InterestRule)}, which also changes the
+ * version.
+ * <p>
+ * Besides the overall version, the version of every month is kept: the version of the last rule change that affected a
+ * day of the month. Results that only depend on the rates of a month (e.g. its interest) stay valid across changes of
+ * other months.
+ */
+public final class InterestRuleRates implements InterestRateSource {
+
+    private final NavigableMap<LocalDate, InterestRule> interestRules;
+    private final AtomicLong version = new AtomicLong();
+    private final ConcurrentMap<Integer, YearCalendar> calendars = new ConcurrentHashMap<>();
+    // The last calendar used, valid while the version is the one it was looked up at
+    private volatile RecentCalendar recentCalendar;
+    // Version of the last change of each month (year * 12 + month - 1) that had a next rule to end at
+    private final ConcurrentMap<Integer, Long> monthVersions = new ConcurrentHashMap<>();
+    // Versions of the changes without a next rule, which affected their month and every month after it. A change
+    // replaces the ones from its month on, so the versions increase with the months.
+    private final ConcurrentNavigableMap<Integer, Long> openEndedVersions = new ConcurrentSkipListMap<>();
+
+    InterestRuleRates(NavigableMap<LocalDate, InterestRule> interestRules) {
+        this.interestRules = interestRules;
+    }
+
+    /**
+     * @param interestRules - Rules keyed by their effective date, which must not change while the rates are read
+     * @return - Daily rates of the given rules, e.g. of rules that are not those of a data store
+     */
+    public static InterestRateSource of(NavigableMap<LocalDate, InterestRule> interestRules) {
+        return new InterestRuleRates(interestRules);
+    }
+
+    @Override
+    public long rateDays(int fromEpochDay, int toEpochDay) {
+        if (fromEpochDay >= toEpochDay) {
+            return 0L;
+        }
+        long currentVersion = version.get();
+        RecentCalendar recent = recentCalendar;
+        if (recent != null && recent.version == currentVersion && recent.calendar.contains(fromEpochDay, toEpochDay)) {
+            return recent.calendar.rateDays(fromEpochDay, toEpochDay);
+        }
+        // The range may span several years, every year adds the part of the range within it
+        YearCalendar calendar = null;
+        long rateDays = 0L;
+        int day = fromEpochDay;
+        int year = LocalDate.ofEpochDay(fromEpochDay).getYear();
+        while (day < toEpochDay) {
+            calendar = calendarOf(year++);
+            int end = Math.min(toEpochDay, calendar.yearEnd);
+            rateDays += calendar.rateDays(day, end);
+            day = end;
+        }
+        recentCalendar = new RecentCalendar(calendar, currentVersion);
+        return rateDays;
+    }
+
+    @Override
+    public long version() {
+        return version.get();
+    }
+
+    @Override
+    public long version(int fromEpochDay, int toEpochDay) {
+        if (fromEpochDay >= toEpochDay) {
+            return 0L;
+        }
+        int fromMonth = monthIndex(fromEpochDay);
+        int toMonth = monthIndex(toEpochDay - 1);
+        Map.Entry<Integer, Long> openEnded = openEndedVersions.floorEntry(toMonth);
+        long rangeVersion = openEnded == null ? 0L : openEnded.getValue();
+        for (int month = fromMonth; month <= toMonth; month++) {
+            Long monthVersion = monthVersions.get(month);
+            if (monthVersion != null && monthVersion > rangeVersion) {
+                rangeVersion = monthVersion;
+            }
+        }
+        return rangeVersion;
+    }
+
+    /**
+     * Adds a rule to the index, or replaces the rule on its date, and drops the calendars of the years from the date
+     * of the rule until the next rule.
+     */
+    synchronized void putRule(InterestRule interestRule) {
+        LocalDate date = interestRule.getDate();
+        interestRules.put(date, interestRule);
+        LocalDate nextRule = interestRules.higherKey(date);
+        int fromYear = date.getYear();
+        int toYear = nextRule == null ? Integer.MAX_VALUE : nextRule.getYear();
+        calendars.keySet().removeIf(year -> year >= fromYear && year <= toYear);
+
+        // Versions are only bumped once the stale calendars are gone, so rates read at the new version are up to date
+        long newVersion = version.get() + 1;
+        int fromMonth = monthIndex(interestRule.getEpochDay());
+        if (nextRule == null) {
+            openEndedVersions.tailMap(fromMonth, true).clear();
+            openEndedVersions.put(fromMonth, newVersion);
+        } else {
+            int toMonth = monthIndex((int) nextRule.toEpochDay() - 1);
+            for (int month = fromMonth; month <= toMonth; month++) {
+                monthVersions.put(month, newVersion);
+            }
+        }
+        version.set(newVersion);
+    }
+
+    private static int monthIndex(int epochDay) {
+        int digits = DateCodec.toDigits(epochDay);
+        return digits / 10_000 * 12 + digits / 100 % 100 - 1;
+    }
+
+    private YearCalendar calendarOf(int year) {
+        YearCalendar calendar = calendars.get(year);
+        return calendar != null ? calendar : buildCalendar(year);
+    }
+
+    /**
+     * Builds and caches the calendar of a year. Synchronized with {@link #putRule(InterestRule)}, so a calendar is
+     * never built from rules that are being changed.
+     */
+    private synchronized YearCalendar buildCalendar(int year) {
+        return calendars.computeIfAbsent(year, key -> new YearCalendar(key, interestRules));
+    }
+
+    private static final class RecentCalendar {
+
+        private final YearCalendar calendar;
+        private final long version;
+
+        private RecentCalendar(YearCalendar calendar, long version) {
+            this.calendar = calendar;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Cumulative rates of the days of one year: entry i is the sum of the rates of the first i days.
+     */
+    private static final class YearCalendar {
+
+        private final int yearStart;
+        private final int yearEnd;
+        private final long[] cumulativeRates;
+
+        private YearCalendar(int year, NavigableMap<LocalDate, InterestRule> interestRules) {
+            LocalDate firstDay = LocalDate.of(year, 1, 1);
+            this.yearStart = (int) firstDay.toEpochDay();
+            this.yearEnd = yearStart + Year.of(year).length();
+            this.cumulativeRates = new long[yearEnd - yearStart + 1];
+
+            Map.Entry<LocalDate, InterestRule> effectiveRule = interestRules.floorEntry(firstDay);
+            long ratePpm = effectiveRule == null ? 0L : effectiveRule.getValue().getRatePpm();
+            int day = yearStart;
+            for (InterestRule rule : interestRules.subMap(firstDay, false, LocalDate.ofEpochDay(yearEnd), false).values()) {
+                day = fill(day, rule.getEpochDay(), ratePpm);
+                ratePpm = rule.getRatePpm();
+            }
+            fill(day, yearEnd, ratePpm);
+        }
+
+        private int fill(int fromDay, int toDay, long ratePpm) {
+            for (int day = fromDay; day < toDay; day++) {
+                cumulativeRates[day - yearStart + 1] = cumulativeRates[day - yearStart] + ratePpm;
+            }
+            return toDay;
+        }
+
+        private boolean contains(int fromEpochDay, int toEpochDay) {
+            return fromEpochDay >= yearStart && toEpochDay <= yearEnd;
+        }
+
+        private long rateDays(int fromEpochDay, int toEpochDay) {
+            return cumulativeRates[toEpochDay - yearStart] - cumulativeRates[fromEpochDay - yearStart];
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package main.repository;
+
+import main.exceptions.InvalidInputException;
+import main.models.BankAccount;
+import main.models.InterestRateSource;
+import main.models.InterestRule;
+import main.models.PostingResult;
+import main.models.TransactionLog;
+import main.util.TransactionIdSequencer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Data store that makes every change durable in a {@link PostingJournal} before acknowledging it.
+ * <p>
+ * Reads and postings go to an in-memory store. Every deposit, withdrawal, interest posting, account opening and
+ * interest rule is then appended to the journal, and the call returns once the journal has synced it to disk. Changes
+ * from concurrent callers share a sync (group commit), and {@link #batch(Changes)} makes a whole batch durable with a
+ * single wait. On open, the journal is replayed into the in-memory store, restoring the same balances and transaction
+ * ids.
+ * <p>
+ * With a snapshot file, {@link #snapshot()} writes the whole state to a {@link BankDataSnapshot} together with the
+ * journal position it covers, and open loads the snapshot and only replays the journal after that position. Snapshots
+ * are fuzzy: they are taken while postings carry on, and the replay skips postings the snapshot already contains.
+ */
+public final class JournaledBankDataStore implements BankDataStoreI, Closeable {
+
+    private final BankDataStoreI delegate;
+    private final PostingJournal journal;
+    private final Path snapshotFile;
+    private final ThreadLocal<Boolean> inBatch = ThreadLocal.withInitial(() -> Boolean.FALSE);
+    // Held while adding rules or accounts and while a snapshot lists them, so both are in the journal before a snapshot
+    // Locks rather than monitors, as a virtual thread blocked on a monitor or waiting on the journal while holding one
+    // pins its carrier thread
+    private final ReentrantLock structureLock = new ReentrantLock();
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private ScheduledExecutorService snapshotScheduler;
+
+    private JournaledBankDataStore(BankDataStoreI delegate, PostingJournal journal, Path snapshotFile) {
+        this.delegate = delegate;
+        this.journal = journal;
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * Replays the journal into the given store and journals every later change made through the returned store.
+     *
+     * @param journalFile - Path of the journal, created if it does not exist
+     * @param delegate    - In-memory store to replay into and serve reads from
+     */
+    public static JournaledBankDataStore open(Path journalFile, BankDataStoreI delegate) throws IOException {
+        return open(journalFile, null, delegate);
+    }
+
+    /**
+     * Loads the snapshot, if there is one, and replays the rest of the journal into the given store.
+     *
+     * @param journalFile  - Path of the journal, created if it does not exist
+     * @param snapshotFile - Path of the snapshot, null to not use snapshots
+     * @param delegate     - In-memory store to restore into and serve reads from
+     */
+    public static JournaledBankDataStore open(Path journalFile, Path snapshotFile, BankDataStoreI delegate)
+            throws IOException {
+        long position = 0L;
+        if (snapshotFile != null && Files.exists(snapshotFile)) {
+            position = BankDataSnapshot.load(snapshotFile, delegate);
+        }
+        PostingJournal journal = PostingJournal.open(journalFile, position, new Replayer(delegate));
+        return new JournaledBankDataStore(delegate, journal, snapshotFile);
+    }
+
+    @Override
+    public void addInterestRule(InterestRule interestRule) {
+        checkId("rule id", interestRule.getRuleId());
+        long ticket;
+        structureLock.lock();
+        try {
+            delegate.addInterestRule(interestRule);
+            ticket = journal.appendInterestRule(interestRule.getEpochDay(), interestRule.getRuleId(),
+                    interestRule.getRatePpm());
+        } finally {
+            structureLock.unlock();
+        }
+        commit(ticket);
+    }
+
+    @Override
+    public List<InterestRule> getAllInterestRules() {
+        return delegate.getAllInterestRules();
+    }
+
+    @Override
+    public NavigableMap<LocalDate, InterestRule> getInterestRuleIndex() {
+        return delegate.getInterestRuleIndex();
+    }
+
+    @Override
+    public InterestRule getEffectiveInterestRule(LocalDate date) {
+        return delegate.getEffectiveInterestRule(date);
+    }
+
+    @Override
+    public InterestRateSource getInterestRates() {
+        return delegate.getInterestRates();
+    }
+
+    @Override
+    public DailyLedger getLedger() {
+        return delegate.getLedger();
+    }
+
+    @Override
+    public void rebuildLedger(int threads) {
+        delegate.rebuildLedger(threads);
+    }
+
+    @Override
+    public IdempotencyIndex getIdempotencyIndex() {
+        return delegate.getIdempotencyIndex();
+    }
+
+    @Override
+    public void addAccount(BankAccount bankAccount) {
+        checkId("account number", bankAccount.getAccountNumber());
+        long ticket;
+        structureLock.lock();
+        try {
+            delegate.addAccount(bankAccount);
+            ticket = journal.appendOpenAccount(bankAccount.getAccountNumber());
+        } finally {
+            structureLock.unlock();
+        }
+        commit(ticket);
+    }
+
+    @Override
+    public List<BankAccount> getAllBankAccounts() {
+        return delegate.getAllBankAccounts();
+    }
+
+    @Override
+    public boolean bankAccountExists(String bankAccountID) {
+        return delegate.bankAccountExists(bankAccountID);
+    }
+
+    @Override
+    public BankAccount getBankAccount(String bankAccountID) {
+        return delegate.getBankAccount(bankAccountID);
+    }
+
+    @Override
+    public BankAccount getOrCreateBankAccount(String bankAccountID) {
+        BankAccount bankAccount = delegate.getBankAccount(bankAccountID);
+        if (bankAccount == null) {
+            checkId("account number", bankAccountID);
+            // Two callers may both journal the opening, which replays to the same account
+            long ticket;
+            structureLock.lock();
+            try {
+                bankAccount = delegate.getOrCreateBankAccount(bankAccountID);
+                ticket = journal.appendOpenAccount(bankAccountID);
+            } finally {
+                structureLock.unlock();
+            }
+            commit(ticket);
+        }
+        return bankAccount;
+    }
+
+    @Override
+    public PostingResult deposit(String bankAccountID, String date, long amount, String type) throws ParseException {
+        BankAccount bankAccount = getOrCreateBankAccount(bankAccountID);
+        long ticket;
+        bankAccount.lock();
+        try {
+            PostingResult result = bankAccount.deposit(date, amount, type);
+            if (result != PostingResult.POSTED) {
+                return result;
+            }
+            ticket = appendLastPosting(bankAccount);
+        } finally {
+            bankAccount.unlock();
+        }
+        commit(ticket);
+        return PostingResult.POSTED;
+    }
+
+    @Override
+    public PostingResult withdrawIfSufficient(String bankAccountID, String date, long amount) throws ParseException {
+        BankAccount bankAccount = delegate.getBankAccount(bankAccountID);
+        if (bankAccount == null) {
+            return PostingResult.ACCOUNT_NOT_FOUND;
+        }
+        long ticket;
+        bankAccount.lock();
+        try {
+            PostingResult result = bankAccount.withdraw(date, amount);
+            if (result != PostingResult.POSTED) {
+                return result;
+            }
+            ticket = appendLastPosting(bankAccount);
+        } finally {
+            bankAccount.unlock();
+        }
+        commit(ticket);
+        return PostingResult.POSTED;
+    }
+
+    @Override
+    public <E extends Exception> void batch(Changes<E> changes) throws E {
+        if (inBatch.get()) {
+            changes.apply();
+            return;
+        }
+        inBatch.set(Boolean.TRUE);
+        try {
+            changes.apply();
+        } finally {
+            inBatch.set(Boolean.FALSE);
+        }
+        journal.awaitDurable(journal.lastTicket());
+    }
+
+    /**
+     * @return - End of the durable part of the journal
+     */
+    public long getJournalPosition() {
+        return journal.position();
+    }
+
+    /**
+     * Writes a snapshot of the whole store without pausing postings. Every account is only locked for as long as it
+     * takes to read its balance and number of transactions.
+     * <p>
+     * The journal position is taken first, so every change durable before it is in the snapshot. Everything in the
+     * snapshot is made durable before the snapshot is written, so a restart never restores a change the journal lost.
+     */
+    public void snapshot() throws IOException {
+        if (snapshotFile == null) {
+            throw new IllegalStateException("No snapshot file configured");
+        }
+        snapshotLock.lock();
+        try {
+            long position = journal.position();
+            List<InterestRule> rules;
+            List<BankAccount> accounts;
+            structureLock.lock();
+            try {
+                rules = delegate.getAllInterestRules();
+                accounts = delegate.getAllBankAccounts();
+            } finally {
+                structureLock.unlock();
+            }
+            List<BankDataSnapshot.AccountState> states = new ArrayList<>(accounts.size());
+            for (BankAccount account : accounts) {
+                account.lock();
+                try {
+                    states.add(new BankDataSnapshot.AccountState(account, account.getTransactionCount(),
+                            account.getBalance(), account.getLastUpdatedDay()));
+                } finally {
+                    account.unlock();
+                }
+            }
+            Map<Integer, Integer> sequences = TransactionIdSequencer.getInstance().currentSequences();
+            journal.awaitDurable(journal.lastTicket());
+            BankDataSnapshot.write(snapshotFile, position, rules, sequences, states);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * Takes a snapshot every interval on a background thread, until the store is closed.
+     */
+    public synchronized void scheduleSnapshots(long interval, TimeUnit unit) {
+        if (snapshotScheduler != null) {
+            throw new IllegalStateException("Snapshots are already scheduled");
+        }
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "data-store-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Failed to write a snapshot: " + e.getMessage());
+            }
+        }, interval, interval, unit);
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (snapshotScheduler != null) {
+                snapshotScheduler.shutdownNow();
+            }
+        }
+        snapshotLock.lock();
+        try {
+            journal.close();
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * Rejects an id the journal cannot keep, before anything is changed.
+     */
+    private static void checkId(String name, String id) {
+        if (id.getBytes(StandardCharsets.UTF_8).length > PostingJournal.MAX_ID_BYTES) {
+            throw new InvalidInputException("Invalid " + name + ". It must be at most " + PostingJournal.MAX_ID_BYTES
+                    + " bytes in UTF-8.");
+        }
+    }
+
+    /**
+     * Must be called while holding the account lock, right after the posting.
+     */
+    private long appendLastPosting(BankAccount bankAccount) {
+        TransactionLog log = bankAccount.getTransactionLog();
+        int row = log.size() - 1;
+        return journal.appendPosting(bankAccount.getAccountNumber(), row, log.getEpochDay(row), log.getType(row),
+                log.getAmount(row), log.getBalance(row), log.getSequence(row));
+    }
+
+    private void commit(long ticket) {
+        // Within a batch, durability is awaited once at the end of the batch
+        if (!inBatch.get()) {
+            journal.awaitDurable(ticket);
+        }
+    }
+
+    /**
+     * Applies the journal records to the in-memory store. Postings carry their row in the account's log, so records
+     * that are already in the store are skipped and a replay can safely overlap with restored state.
+     */
+    static final class Replayer implements PostingJournal.Visitor {
+
+        private final BankDataStoreI store;
+
+        Replayer(BankDataStoreI store) {
+            this.store = store;
+        }
+
+        @Override
+        public void onOpenAccount(String account) {
+            store.getOrCreateBankAccount(account);
+        }
+
+        @Override
+        public void onPosting(String account, int row, int epochDay, byte type, long amount, long balance, int sequence) {
+            BankAccount bankAccount = store.getOrCreateBankAccount(account);
+            // Postings that are already in the snapshot are skipped without loading the account's history
+            int size = bankAccount.getTransactionCount();
+            if (row < size) {
+                return;
+            }
+            if (row > size) {
+                throw new IllegalStateException("Journal is missing postings of account " + account + " before row " + row);
+            }
+            bankAccount.restoreTransaction(epochDay, type, amount, balance, sequence);
+        }
+
+        @Override
+        public void onInterestRule(int epochDay, String ruleId, long ratePpm) {
+            store.addInterestRule(new InterestRule(epochDay, ruleId, ratePpm));
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package main.repository;
+
+import main.models.ArchivedRows;
+import main.models.Transaction;
+import main.models.TransactionArchive;
+import main.models.TransactionLog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Archive of closed months in a memory-mapped file, so archived transactions take no heap.
+ * <p>
+ * Every archived range of rows is written as a segment of blocks of {@value #BLOCK_ROWS} rows. A block is delta
+ * encoded as variable length integers against the previous row of the block: the date, the amount, the change of the
+ * balance beyond the amount and the transaction id sequence. A typical row takes 6 to 8 bytes instead of 25. A segment
+ * starts with its row count, block count and the offset of every block, so reading a row only decodes its block. The
+ * last decoded block of a segment is kept, as rows are mostly read in order.
+ * <p>
+ * The file is mapped in regions of {@value #REGION_SIZE} bytes, which segments are packed into, so the number of
+ * mappings does not grow with the number of accounts. The archive only holds rows that are also in the journal or
+ * snapshot, so it is started empty and is not synced.
+ */
+public final class MappedTransactionArchive implements TransactionArchive, Closeable {
+
+    private static final int BLOCK_ROWS = 64;
+    private static final int REGION_SIZE = 64 << 20;
+    // Largest encoding of a row: a type byte and five variable length integers of up to 10 bytes each
+    private static final int MAX_ROW_SIZE = 1 + 5 * 10;
+
+    private final FileChannel channel;
+    private final ReentrantLock lock = new ReentrantLock();
+    private MappedByteBuffer region;
+    private long fileEnd;
+    private long archivedBytes;
+
+    private MappedTransactionArchive(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * @param path - Path of the archive file, replaced if it exists
+     */
+    public static MappedTransactionArchive create(Path path) throws IOException {
+        return new MappedTransactionArchive(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    @Override
+    public ArchivedRows archive(TransactionLog log, int fromRow, int toRow) {
+        byte[] segment = encode(log, fromRow, toRow);
+        lock.lock();
+        try {
+            if (region == null || region.remaining() < segment.length) {
+                // A segment larger than a region gets a mapping of its own
+                long size = Math.max(REGION_SIZE, segment.length);
+                region = channel.map(FileChannel.MapMode.READ_WRITE, fileEnd, size);
+                fileEnd += size;
+            }
+            int offset = region.position();
+            region.put(segment);
+            archivedBytes += segment.length;
+            return new MappedSegment(region.duplicate(), offset);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map the transaction archive", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return - Number of bytes taken by the archived rows
+     */
+    public long getArchivedBytes() {
+        lock.lock();
+        try {
+            return archivedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static byte[] encode(TransactionLog log, int fromRow, int toRow) {
+        int rows = toRow - fromRow;
+        int blocks = (rows + BLOCK_ROWS - 1) / BLOCK_ROWS;
+        int headerSize = 4 + 4 + 4 * blocks;
+        ByteBuffer buffer = ByteBuffer.allocate(headerSize + Math.min(rows, BLOCK_ROWS) * MAX_ROW_SIZE);
+        buffer.putInt(rows).putInt(blocks).position(headerSize);
+        for (int block = 0; block < blocks; block++) {
+            buffer.putInt(8 + 4 * block, buffer.position());
+            int blockEnd = Math.min(fromRow + (block + 1) * BLOCK_ROWS, toRow);
+            if (buffer.remaining() < BLOCK_ROWS * MAX_ROW_SIZE) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2,
+                        buffer.position() + BLOCK_ROWS * MAX_ROW_SIZE));
+                buffer.flip();
+                buffer = larger.put(buffer);
+            }
+            int epochDay = 0;
+            long balance = 0L;
+            int sequence = 0;
+            for (int row = fromRow + block * BLOCK_ROWS; row < blockEnd; row++) {
+                byte type = log.getType(row);
+                long amount = log.getAmount(row);
+                buffer.put(type);
+                putVarLong(buffer, zigZag(log.getEpochDay(row) - epochDay));
+                putVarLong(buffer, zigZag(amount));
+                // Usually 0, as the balance moves by the amount
+                putVarLong(buffer, zigZag(log.getBalance(row) - balance - signedAmount(type, amount)));
+                putVarLong(buffer, zigZag(log.getSequence(row) - sequence));
+                epochDay = log.getEpochDay(row);
+                balance = log.getBalance(row);
+                sequence = log.getSequence(row);
+            }
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static long signedAmount(byte type, long amount) {
+        return type == Transaction.WITHDRAWAL ? -amount : amount;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long getVarLong(ByteBuffer buffer) {
+        long value = 0L;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * One archived range of rows, read straight from the mapped region.
+     */
+    private static final class MappedSegment implements ArchivedRows {
+
+        private final ByteBuffer region;
+        private final int offset;
+        private final int size;
+        private volatile Block lastBlock;
+
+        private MappedSegment(ByteBuffer region, int offset) {
+            this.region = region;
+            this.offset = offset;
+            this.size = region.getInt(offset);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int getEpochDay(int index) {
+            return blockOf(index).epochDays[index % BLOCK_ROWS];
+        }
+
+        @Override
+        public byte getType(int index) {
+            return blockOf(index).types[index % BLOCK_ROWS];
+        }
+
+        @Override
+        public long getAmount(int index) {
+            return blockOf(index).amounts[index % BLOCK_ROWS];
+        }
+
+        @Override
+        public long getBalance(int index) {
+            return blockOf(index).balances[index % BLOCK_ROWS];
+        }
+
+        @Override
+        public int getSequence(int index) {
+            return blockOf(index).sequences[index % BLOCK_ROWS];
+        }
+
+        private Block blockOf(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Row " + index + " of " + size + " archived rows");
+            }
+            int blockIndex = index / BLOCK_ROWS;
+            Block block = lastBlock;
+            if (block == null || block.index != blockIndex) {
+                block = decode(blockIndex);
+                lastBlock = block;
+            }
+            return block;
+        }
+
+        private Block decode(int blockIndex) {
+            int rows = Math.min(BLOCK_ROWS, size - blockIndex * BLOCK_ROWS);
+            Block block = new Block(blockIndex, rows);
+            ByteBuffer in = region.duplicate().position(offset + region.getInt(offset + 8 + 4 * blockIndex));
+            int epochDay = 0;
+            long balance = 0L;
+            int sequence = 0;
+            for (int i = 0; i < rows; i++) {
+                byte type = in.get();
+                epochDay += (int) unZigZag(getVarLong(in));
+                long amount = unZigZag(getVarLong(in));
+                balance += signedAmount(type, amount) + unZigZag(getVarLong(in));
+                sequence += (int) unZigZag(getVarLong(in));
+                block.types[i] = type;
+                block.epochDays[i] = epochDay;
+                block.amounts[i] = amount;
+                block.balances[i] = balance;
+                block.sequences[i] = sequence;
+            }
+            return block;
+        }
+
+    }
+
+    /**
+     * The decoded rows of one block of a segment.
+     */
+    private static final class Block {
+
+        private final int index;
+        private final int[] epochDays;
+        private final byte[] types;
+        private final long[] amounts;
+        private final long[] balances;
+        private final int[] sequences;
+
+        private Block(int index, int rows) {
+            this.index = index;
+            this.epochDays = new int[rows];
+            this.types = new byte[rows];
+            this.amounts = new long[rows];
+            this.balances = new long[rows];
+            this.sequences = new int[rows];
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package main.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Append only binary log of every change made to the data store, with group commit.
+ * <p>
+ * Writers encode their record into a shared in-memory batch and get back a ticket. A single flusher thread writes the
+ * whole batch to the {@link FileChannel} and forces it to disk once, then wakes up every writer whose ticket is
+ * covered, so the cost of a sync is shared by all changes that arrived while the previous one was running.
+ * <p>
+ * File layout: an 8 byte header (magic and version), followed by records of
+ * {@code [int payload length][int CRC32C of payload][payload]}. A torn or corrupt record at the end of the file,
+ * e.g. after a crash during a write, ends the replay and is truncated away. A corrupt record followed by more of the
+ * file fails the open instead, as truncating it would lose the durable records after it. Account numbers and rule ids
+ * are kept with a 2 byte length, so they are at most {@link #MAX_ID_BYTES} bytes in UTF-8.
+ */
+public final class PostingJournal implements Closeable {
+
+    static final byte OPEN_ACCOUNT = 1;
+    static final byte POSTING = 2;
+    static final byte INTEREST_RULE = 3;
+
+    public static final int MAX_ID_BYTES = 0xFFFF;
+
+    private static final int MAGIC = 0x424B4A4C;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int INITIAL_BATCH_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchReady = lock.newCondition();
+    private final Condition batchDurable = lock.newCondition();
+    private final Thread flusher;
+
+    private ByteBuffer pendingBatch = ByteBuffer.allocate(INITIAL_BATCH_SIZE);
+    private ByteBuffer flushingBatch = ByteBuffer.allocate(INITIAL_BATCH_SIZE);
+    private int pendingRecordStart;
+    private long appendedTickets;
+    private long durableTickets;
+    private long durablePosition;
+    private IOException failure;
+    private boolean closed;
+
+    private PostingJournal(FileChannel channel, long position) {
+        this.channel = channel;
+        this.durablePosition = position;
+        this.flusher = new Thread(this::flushLoop, "posting-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Replays the journal at the given path, if any, and opens it for appending after the last intact record.
+     *
+     * @param path         - Path of the journal file, created if it does not exist
+     * @param fromPosition - Position to start the replay from, 0 or a position returned by {@link #position()}
+     * @param visitor      - Receives every intact record from the position onwards
+     */
+    public static PostingJournal open(Path path, long fromPosition, Visitor visitor) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+                channel.truncate(0);
+                channel.write(header, 0);
+                channel.force(true);
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                channel.read(header, 0);
+                if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                    throw new IOException("Not a posting journal: " + path);
+                }
+            }
+            if (fromPosition > channel.size()) {
+                throw new IOException("Posting journal " + path + " ends before position " + fromPosition);
+            }
+            long end = replay(channel, Math.max(fromPosition, HEADER_SIZE), visitor);
+            // Drop a torn record at the end, so that new records are appended after the last intact one
+            channel.truncate(end);
+            channel.position(end);
+            return new PostingJournal(channel, end);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static long replay(FileChannel channel, long position, Visitor visitor) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BATCH_SIZE);
+        CRC32C crc = new CRC32C();
+        long size = channel.size();
+        while (position + RECORD_HEADER_SIZE <= size) {
+            buffer.clear().limit(RECORD_HEADER_SIZE);
+            channel.read(buffer, position);
+            int length = buffer.getInt(0);
+            int checksum = buffer.getInt(4);
+            if (position + RECORD_HEADER_SIZE + length > size || (length <= 0 && isZeros(channel, position, size))) {
+                // Torn at the end of the file
+                break;
+            }
+            if (length <= 0) {
+                throw new IOException("Corrupt posting journal record at position " + position);
+            }
+            if (buffer.capacity() < length) {
+                buffer = ByteBuffer.allocate(Integer.highestOneBit(length) << 1);
+            }
+            buffer.clear().limit(length);
+            while (buffer.hasRemaining() && channel.read(buffer, position + RECORD_HEADER_SIZE + buffer.position()) > 0) {
+                // keep reading until the whole payload is in
+            }
+            buffer.flip();
+            crc.reset();
+            crc.update(buffer.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                if (position + RECORD_HEADER_SIZE + length == size) {
+                    break;
+                }
+                throw new IOException("Corrupt posting journal record at position " + position);
+            }
+            decode(buffer, visitor);
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    /**
+     * @return - Whether the file is all zeros from the position on, as it may be after a crash while it was extended
+     */
+    private static boolean isZeros(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BATCH_SIZE);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) != 0) {
+                    return false;
+                }
+            }
+            position += read;
+        }
+        return true;
+    }
+
+    private static void decode(ByteBuffer payload, Visitor visitor) {
+        byte op = payload.get();
+        switch (op) {
+            case OPEN_ACCOUNT:
+                visitor.onOpenAccount(readString(payload));
+                break;
+            case POSTING:
+                String account = readString(payload);
+                visitor.onPosting(account, payload.getInt(), payload.getInt(), payload.get(), payload.getLong(),
+                        payload.getLong(), payload.getInt());
+                break;
+            case INTEREST_RULE:
+                int epochDay = payload.getInt();
+                long ratePpm = payload.getLong();
+                visitor.onInterestRule(epochDay, readString(payload), ratePpm);
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record type: " + op);
+        }
+    }
+
+    public long appendOpenAccount(String account) {
+        byte[] accountBytes = account.getBytes(StandardCharsets.UTF_8);
+        lock.lock();
+        try {
+            ByteBuffer batch = beginRecord(1 + 2 + accountBytes.length);
+            batch.put(OPEN_ACCOUNT);
+            putString(batch, accountBytes);
+            return endRecord(batch);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends a posting. Must be called while holding the account lock, so that the postings of an account are in
+     * the journal in the same order as their rows.
+     */
+    public long appendPosting(String account, int row, int epochDay, byte type, long amount, long balance, int sequence) {
+        byte[] accountBytes = account.getBytes(StandardCharsets.UTF_8);
+        lock.lock();
+        try {
+            ByteBuffer batch = beginRecord(1 + 2 + accountBytes.length + 4 + 4 + 1 + 8 + 8 + 4);
+            batch.put(POSTING);
+            putString(batch, accountBytes);
+            batch.putInt(row).putInt(epochDay).put(type).putLong(amount).putLong(balance).putInt(sequence);
+            return endRecord(batch);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long appendInterestRule(int epochDay, String ruleId, long ratePpm) {
+        byte[] ruleIdBytes = ruleId.getBytes(StandardCharsets.UTF_8);
+        lock.lock();
+        try {
+            ByteBuffer batch = beginRecord(1 + 4 + 8 + 2 + ruleIdBytes.length);
+            batch.put(INTEREST_RULE).putInt(epochDay).putLong(ratePpm);
+            putString(batch, ruleIdBytes);
+            return endRecord(batch);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return - Ticket of the latest record appended so far
+     */
+    public long lastTicket() {
+        lock.lock();
+        try {
+            return appendedTickets;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until the record with the given ticket, and every record before it, is on disk.
+     */
+    public void awaitDurable(long ticket) {
+        lock.lock();
+        try {
+            boolean interrupted = false;
+            while (durableTickets < ticket && failure == null) {
+                try {
+                    batchDurable.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (durableTickets < ticket) {
+                throw new UncheckedIOException("Posting journal failed", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return - End of the durable part of the journal, which a later replay can start from
+     */
+    public long position() {
+        lock.lock();
+        try {
+            return durablePosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            batchReady.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    private ByteBuffer beginRecord(int payloadLength) {
+        if (closed || failure != null) {
+            throw new IllegalStateException("Posting journal is closed", failure);
+        }
+        int required = RECORD_HEADER_SIZE + payloadLength;
+        if (pendingBatch.remaining() < required) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pendingBatch.capacity() * 2, pendingBatch.position() + required));
+            pendingBatch.flip();
+            pendingBatch = larger.put(pendingBatch);
+        }
+        // The checksum is filled in once the payload is written
+        pendingRecordStart = pendingBatch.position();
+        pendingBatch.putInt(payloadLength).putInt(0);
+        return pendingBatch;
+    }
+
+    private long endRecord(ByteBuffer batch) {
+        int payloadStart = pendingRecordStart + RECORD_HEADER_SIZE;
+        CRC32C crc = new CRC32C();
+        crc.update(batch.duplicate().position(payloadStart).limit(batch.position()));
+        batch.putInt(pendingRecordStart + 4, (int) crc.getValue());
+        appendedTickets++;
+        batchReady.signal();
+        return appendedTickets;
+    }
+
+    private void flushLoop() {
+        lock.lock();
+        try {
+            while (true) {
+                while (pendingBatch.position() == 0 && !closed) {
+                    batchReady.awaitUninterruptibly();
+                }
+                if (pendingBatch.position() == 0) {
+                    return;
+                }
+                ByteBuffer batch = pendingBatch;
+                pendingBatch = flushingBatch.clear();
+                flushingBatch = batch;
+                long batchTickets = appendedTickets;
+
+                lock.unlock();
+                long written;
+                try {
+                    batch.flip();
+                    written = batch.remaining();
+                    while (batch.hasRemaining()) {
+                        channel.write(batch);
+                    }
+                    channel.force(false);
+                } catch (IOException e) {
+                    lock.lock();
+                    failure = e;
+                    batchDurable.signalAll();
+                    return;
+                }
+                lock.lock();
+                durableTickets = batchTickets;
+                durablePosition += written;
+                batchDurable.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        assert bytes.length <= MAX_ID_BYTES : "Too long for the journal: " + bytes.length + " bytes";
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Receives the records of the journal during a replay.
+     */
+    public interface Visitor {
+
+        void onOpenAccount(String account);
+
+        void onPosting(String account, int row, int epochDay, byte type, long amount, long balance, int sequence);
+
+        void onInterestRule(int epochDay, String ruleId, long ratePpm);
+    }
+}
@@ -0,0 +1,341 @@
+package main.repository;
+
+import main.models.BankAccount;
+import main.models.InterestRateSource;
+import main.models.InterestRule;
+import main.models.PostingResult;
+
+import java.io.Closeable;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Data store that gives every account a single writer: accounts are hash partitioned into shards, and all postings to
+ * an account are applied by the worker thread of the shard that owns it.
+ * <p>
+ * Every shard has a bounded queue. Callers hand a posting to the queue of the owning shard and either wait for its
+ * result ({@link #deposit}) or carry on and collect it later ({@link #depositAsync}), so a single caller can keep every
+ * shard busy. A caller blocks while the queue is full, which slows producers down to the pace of the shard instead of
+ * letting a backlog build up. Postings to an account are applied in the order they were queued.
+ * <p>
+ * A worker takes everything queued at once and applies it as one {@link BankDataStoreI#batch batch} of the underlying
+ * store, so a journaled store syncs once per batch, and only completes the results once the batch is durable. Reads,
+ * account openings and interest rules go straight to the underlying store, which holds the accounts.
+ * <p>
+ * Accounts keep their lock: the worker always gets it uncontended, and it still guards readers outside the shard, e.g.
+ * statements. A caller that holds the lock of an account (e.g. the month-end close) already has the account to itself,
+ * so its postings to that account are applied in place rather than queued behind it.
+ */
+public final class ShardedBankDataStore implements BankDataStoreI, Closeable {
+
+    private static final Task<Object> STOP = new Task<>(null);
+
+    private final BankDataStoreI delegate;
+    private final Shard[] shards;
+    private volatile boolean closed;
+
+    /**
+     * @param delegate      - Store holding the accounts, which the shards post to
+     * @param shardCount    - Number of shards, each with a worker thread, e.g. the number of cores
+     * @param queueCapacity - Postings a shard holds before callers have to wait, and the largest batch it applies
+     */
+    public ShardedBankDataStore(BankDataStoreI delegate, int shardCount, int queueCapacity) {
+        if (shardCount < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Shard count and queue capacity must be positive");
+        }
+        this.delegate = delegate;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, queueCapacity);
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    @Override
+    public void addInterestRule(InterestRule interestRule) {
+        delegate.addInterestRule(interestRule);
+    }
+
+    @Override
+    public List<InterestRule> getAllInterestRules() {
+        return delegate.getAllInterestRules();
+    }
+
+    @Override
+    public NavigableMap<LocalDate, InterestRule> getInterestRuleIndex() {
+        return delegate.getInterestRuleIndex();
+    }
+
+    @Override
+    public InterestRule getEffectiveInterestRule(LocalDate date) {
+        return delegate.getEffectiveInterestRule(date);
+    }
+
+    @Override
+    public InterestRateSource getInterestRates() {
+        return delegate.getInterestRates();
+    }
+
+    @Override
+    public DailyLedger getLedger() {
+        return delegate.getLedger();
+    }
+
+    @Override
+    public void rebuildLedger(int threads) {
+        delegate.rebuildLedger(threads);
+    }
+
+    @Override
+    public IdempotencyIndex getIdempotencyIndex() {
+        return delegate.getIdempotencyIndex();
+    }
+
+    @Override
+    public void addAccount(BankAccount bankAccount) {
+        delegate.addAccount(bankAccount);
+    }
+
+    @Override
+    public List<BankAccount> getAllBankAccounts() {
+        return delegate.getAllBankAccounts();
+    }
+
+    @Override
+    public boolean bankAccountExists(String bankAccountID) {
+        return delegate.bankAccountExists(bankAccountID);
+    }
+
+    @Override
+    public BankAccount getBankAccount(String bankAccountID) {
+        return delegate.getBankAccount(bankAccountID);
+    }
+
+    @Override
+    public BankAccount getOrCreateBankAccount(String bankAccountID) {
+        return delegate.getOrCreateBankAccount(bankAccountID);
+    }
+
+    @Override
+    public PostingResult deposit(String bankAccountID, String date, long amount, String type) throws ParseException {
+        return await(depositAsync(bankAccountID, date, amount, type));
+    }
+
+    @Override
+    public PostingResult withdrawIfSufficient(String bankAccountID, String date, long amount) throws ParseException {
+        return await(withdrawIfSufficientAsync(bankAccountID, date, amount));
+    }
+
+    @Override
+    public CompletableFuture<PostingResult> depositAsync(String bankAccountID, String date, long amount, String type) {
+        return submit(bankAccountID, () -> delegate.deposit(bankAccountID, date, amount, type));
+    }
+
+    @Override
+    public CompletableFuture<PostingResult> withdrawIfSufficientAsync(String bankAccountID, String date, long amount) {
+        return submit(bankAccountID, () -> delegate.withdrawIfSufficient(bankAccountID, date, amount));
+    }
+
+    /**
+     * Runs a task on the worker of the shard that owns the account, after everything queued for the shard before it,
+     * e.g. to read an account in between its postings. The task must not wait for other shards.
+     *
+     * @return - Result of the task, completed once the batch it ran in is durable
+     */
+    public <T> CompletableFuture<T> submit(String bankAccountID, Callable<T> task) {
+        Shard shard = shards[Math.floorMod(bankAccountID.hashCode(), shards.length)];
+        if (Thread.currentThread() == shard.worker || isLockedByCurrentThread(bankAccountID)) {
+            return call(task);
+        }
+        return shard.enqueue(new Task<>(task));
+    }
+
+    /**
+     * Applies the changes, which may post through any shard, and returns once every posting queued so far is durable.
+     */
+    @Override
+    public <E extends Exception> void batch(Changes<E> changes) throws E {
+        changes.apply();
+        List<CompletableFuture<Object>> barriers = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            if (Thread.currentThread() != shard.worker) {
+                barriers.add(shard.enqueue(new Task<>(() -> null)));
+            }
+        }
+        for (CompletableFuture<Object> barrier : barriers) {
+            barrier.join();
+        }
+    }
+
+    /**
+     * Applies every posting queued so far and stops the workers. Postings queued afterwards fail.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Shard shard : shards) {
+            shard.stop();
+        }
+    }
+
+    private boolean isLockedByCurrentThread(String bankAccountID) {
+        BankAccount bankAccount = delegate.getBankAccount(bankAccountID);
+        return bankAccount != null && bankAccount.isLockedByCurrentThread();
+    }
+
+    private static <T> CompletableFuture<T> call(Callable<T> task) {
+        try {
+            return CompletableFuture.completedFuture(task.call());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static PostingResult await(CompletableFuture<PostingResult> result) throws ParseException {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ParseException) {
+                throw (ParseException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * A unit of work queued for a shard, with its result kept aside until the batch it ran in is durable.
+     */
+    private static final class Task<T> {
+
+        private final Callable<T> work;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private T value;
+        private Exception failure;
+
+        private Task(Callable<T> work) {
+            this.work = work;
+        }
+
+        private void run() {
+            try {
+                value = work.call();
+            } catch (Exception e) {
+                failure = e;
+            }
+        }
+
+        private void complete() {
+            if (failure != null) {
+                result.completeExceptionally(failure);
+            } else {
+                result.complete(value);
+            }
+        }
+    }
+
+    /**
+     * The accounts hashing to one index, with the queue and the worker thread that applies their postings.
+     */
+    private final class Shard implements Runnable {
+
+        private final BlockingQueue<Task<?>> queue;
+        private final int maxBatch;
+        private final Thread worker;
+
+        private Shard(int index, int queueCapacity) {
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.maxBatch = queueCapacity;
+            this.worker = new Thread(this, "account-shard-" + index);
+            this.worker.setDaemon(true);
+            this.worker.start();
+        }
+
+        private <T> CompletableFuture<T> enqueue(Task<T> task) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Sharded data store is closed"));
+            }
+            try {
+                // Blocks while the shard is behind, which is the backpressure on the callers
+                queue.put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                task.result.completeExceptionally(e);
+            }
+            // Closed meanwhile: once the worker has stopped, nothing else takes the task from the queue. While it is
+            // still stopping, the task is failed by the worker or by stop()
+            if (closed && !worker.isAlive()) {
+                failQueued();
+            }
+            return task.result;
+        }
+
+        @Override
+        public void run() {
+            List<Task<?>> batch = new ArrayList<>();
+            boolean stopping = false;
+            while (!stopping) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    break;
+                }
+                queue.drainTo(batch, maxBatch - 1);
+                stopping = batch.remove(STOP);
+                try {
+                    delegate.batch(() -> {
+                        for (Task<?> task : batch) {
+                            task.run();
+                        }
+                    });
+                    for (Task<?> task : batch) {
+                        task.complete();
+                    }
+                } catch (RuntimeException | Error e) {
+                    // The batch may not be durable, e.g. the journal failed
+                    for (Task<?> task : batch) {
+                        task.result.completeExceptionally(e);
+                    }
+                }
+                batch.clear();
+            }
+            // Anything that was queued while stopping is failed, rather than left waiting forever
+            failQueued();
+        }
+
+        /**
+         * Queues the stop and waits for the worker, then fails whatever was queued after its last look at the queue.
+         */
+        private void stop() {
+            try {
+                queue.put(STOP);
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            failQueued();
+        }
+
+        private void failQueued() {
+            List<Task<?>> queued = new ArrayList<>();
+            queue.drainTo(queued);
+            for (Task<?> task : queued) {
+                task.result.completeExceptionally(new IllegalStateException("Sharded data store is closed"));
+            }
+        }
+    }
+}
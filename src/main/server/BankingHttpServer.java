@@ -0,0 +1,365 @@
+package main.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import main.exceptions.AccountNotFoundException;
+import main.exceptions.InvalidInputException;
+import main.models.BankAccount;
+import main.models.InterestRule;
+import main.models.LedgerTotals;
+import main.repository.BankDataStoreI;
+import main.repository.BankDataStoreProvider;
+import main.repository.PostingJournal;
+import main.service.importer.ImportSummary;
+import main.service.importer.TransactionImportService;
+import main.service.importer.TransactionImportServiceI;
+import main.service.ledger.LedgerService;
+import main.service.ledger.LedgerServiceI;
+import main.service.query.AccountQueryService;
+import main.service.query.AccountQueryServiceI;
+import main.service.query.BalanceSummary;
+import main.service.statement.StatementLayout;
+import main.service.statement.StatementRenderer;
+import main.service.statement.StatementService;
+import main.service.statement.StatementServiceI;
+import main.util.DateCodec;
+import main.util.Money;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP API over the data store and the statement service, on the JDK's built-in HTTP server.
+ * <p>
+ * Every request runs on a virtual thread of its own, so thousands of concurrent clients only cost memory while they
+ * wait on the account locks or the journal. Requests and responses are plain text in the formats of the console:
+ * <ul>
+ *     <li>{@code POST /transactions} - {@code <Date>|<Account>|<Type>|<Amount>[|<Key>]} lines, applied in order as one
+ *     batch. Responds with {@code <accepted>|<rejected>} and a {@code <line>|<reason>|<line text>} line per rejected
+ *     line, replays of postings of the deduplication window being rejected.</li>
+ *     <li>{@code POST /interest-rules} - {@code <Date>|<RuleId>|<Rate in %>} lines, all applied or none. Responds with
+ *     the number of rules defined.</li>
+ *     <li>{@code GET /interest-rules} - {@code <Date>|<RuleId>|<Rate in %>} lines.</li>
+ *     <li>{@code GET /statements/<account>?month=<1-12>&layout=<text|csv|fixed_width>} - The statement of the month of
+ *     the current year, or the whole history without a month. Interest is not posted.</li>
+ *     <li>{@code GET /interest/<account>?month=<1-12>} - The interest of the month of the current year.</li>
+ *     <li>{@code GET /balances/<account>?date=<Date>} - The balance at the end of the date.</li>
+ *     <li>{@code GET /balances/<account>?from=<Date>&to=<Date>} - {@code <min>|<max>|<average>} of the end of day
+ *     balances over the dates.</li>
+ *     <li>{@code GET /ledger?from=<Date>&to=<Date>} - {@code <Date>|<Deposits>|<Withdrawals>|<Interest>|<Net flow>}
+ *     lines of bank-wide totals, one per day.</li>
+ *     <li>{@code GET /ledger?month=<1-12>} - The same totals over the month of the current year.</li>
+ * </ul>
+ * Responses always carry their length, so connections are kept alive between requests.
+ */
+public final class BankingHttpServer {
+
+    private static final int MAX_BODY_BYTES = Integer.getInteger("banking.server.maxBodyBytes", 16 << 20);
+    // Connections waiting to be accepted, the JDK default of 50 drops connections under bursts of clients
+    private static final int BACKLOG = Integer.getInteger("banking.server.backlog", 1024);
+    private static final String TEXT = "text/plain; charset=utf-8";
+
+    BankDataStoreI DATA_STORE = BankDataStoreProvider.getDataStore();
+    StatementServiceI STATEMENT_SERVICE = StatementService.getInstance();
+    TransactionImportServiceI IMPORT_SERVICE = TransactionImportService.getInstance();
+    AccountQueryServiceI QUERY_SERVICE = AccountQueryService.getInstance();
+    LedgerServiceI LEDGER_SERVICE = LedgerService.getInstance();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private BankingHttpServer(HttpServer server) {
+        this.server = server;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/transactions", exchange -> handle(exchange, this::transactions));
+        server.createContext("/interest-rules", exchange -> handle(exchange, this::interestRules));
+        server.createContext("/statements/", exchange -> handle(exchange, this::statement));
+        server.createContext("/interest/", exchange -> handle(exchange, this::interest));
+        server.createContext("/balances/", exchange -> handle(exchange, this::balance));
+        server.createContext("/ledger", exchange -> handle(exchange, this::ledger));
+    }
+
+    /**
+     * @param address - Address to listen on, port 0 for any free port
+     * @return - The running server
+     */
+    public static BankingHttpServer start(InetSocketAddress address) throws IOException {
+        BankingHttpServer bankingServer = new BankingHttpServer(HttpServer.create(address, BACKLOG));
+        bankingServer.server.start();
+        return bankingServer;
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Stops accepting requests, waits up to the delay for the running ones to finish, and stops.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    private Response transactions(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            return Response.methodNotAllowed("POST");
+        }
+        StringWriter rejected = new StringWriter();
+        ImportSummary summary = IMPORT_SERVICE.importTransactions(readBody(exchange), rejected);
+        return Response.ok(summary.getAccepted() + "|" + summary.getRejected() + "\n" + rejected);
+    }
+
+    private Response interestRules(HttpExchange exchange) throws IOException {
+        switch (exchange.getRequestMethod()) {
+            case "GET":
+                StringBuilder rules = new StringBuilder();
+                for (InterestRule rule : DATA_STORE.getAllInterestRules()) {
+                    DateCodec.format(rule.getEpochDay(), rules).append('|').append(rule.getRuleId()).append('|')
+                            .append(String.format(Locale.ROOT, "%.2f", rule.getRate())).append('\n');
+                }
+                return Response.ok(rules.toString());
+            case "POST":
+                List<InterestRule> parsedRules = new ArrayList<>();
+                String[] lines = new String(readBody(exchange), StandardCharsets.UTF_8).split("\r?\n");
+                for (int i = 0; i < lines.length; i++) {
+                    if (!lines[i].isBlank()) {
+                        parsedRules.add(parseRule(lines[i].trim(), i + 1));
+                    }
+                }
+                for (InterestRule rule : parsedRules) {
+                    DATA_STORE.addInterestRule(rule);
+                }
+                return Response.ok(parsedRules.size() + "\n");
+            default:
+                return Response.methodNotAllowed("GET, POST");
+        }
+    }
+
+    private Response statement(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            return Response.methodNotAllowed("GET");
+        }
+        BankAccount bankAccount = account(exchange, "/statements/");
+        Map<String, String> query = query(exchange);
+        StatementLayout layout = layout(query.get("layout"));
+        ByteArrayOutputStream statement = new ByteArrayOutputStream();
+        if (query.containsKey("month")) {
+            STATEMENT_SERVICE.writeStatement(bankAccount, YearMonth.of(Year.now().getValue(), month(query)), layout,
+                    statement::write);
+        } else {
+            new StatementRenderer(layout, statement::write).renderStatement(bankAccount, null);
+        }
+        return new Response(200, layout == StatementLayout.CSV ? "text/csv; charset=utf-8" : TEXT, statement.toByteArray());
+    }
+
+    private Response interest(HttpExchange exchange) {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            return Response.methodNotAllowed("GET");
+        }
+        BankAccount bankAccount = account(exchange, "/interest/");
+        long interest = STATEMENT_SERVICE.generateMonthlyInterestForAccount(bankAccount.getAccountNumber(), month(query(exchange)));
+        return Response.ok(Money.format(interest) + "\n");
+    }
+
+    private Response balance(HttpExchange exchange) {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            return Response.methodNotAllowed("GET");
+        }
+        String accountNumber = account(exchange, "/balances/").getAccountNumber();
+        Map<String, String> query = query(exchange);
+        if (query.containsKey("date")) {
+            return Response.ok(Money.format(QUERY_SERVICE.getBalanceAsOf(accountNumber, date(query, "date"))) + "\n");
+        }
+        BalanceSummary summary = QUERY_SERVICE.getDailyBalanceSummary(accountNumber, date(query, "from"),
+                date(query, "to"));
+        return Response.ok(Money.format(summary.getMinBalance()) + "|" + Money.format(summary.getMaxBalance()) + "|"
+                + Money.format(summary.getAverageBalance()) + "\n");
+    }
+
+    private Response ledger(HttpExchange exchange) {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            return Response.methodNotAllowed("GET");
+        }
+        Map<String, String> query = query(exchange);
+        StringBuilder lines = new StringBuilder();
+        if (query.containsKey("month")) {
+            YearMonth month = YearMonth.of(Year.now().getValue(), month(query));
+            appendTotals(lines.append(month), LEDGER_SERVICE.getMonthlyTotals(month));
+        } else {
+            for (LedgerTotals totals : LEDGER_SERVICE.getDailyTotals(date(query, "from"), date(query, "to"))) {
+                appendTotals(DateCodec.format((int) totals.getFrom().toEpochDay(), lines), totals);
+            }
+        }
+        return Response.ok(lines.toString());
+    }
+
+    private static void appendTotals(StringBuilder lines, LedgerTotals totals) {
+        lines.append('|').append(Money.format(totals.getDeposits())).append('|')
+                .append(Money.format(totals.getWithdrawals())).append('|').append(Money.format(totals.getInterest()))
+                .append('|').append(Money.format(totals.getNetFlow())).append('\n');
+    }
+
+    /**
+     * Runs the handler and sends its response, or the status matching its failure.
+     */
+    private static void handle(HttpExchange exchange, Handler handler) throws IOException {
+        Response response;
+        try {
+            response = handler.handle(exchange);
+        } catch (InvalidInputException e) {
+            response = new Response(400, TEXT, (e.getMessage() + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (AccountNotFoundException e) {
+            response = new Response(404, TEXT, (e.getMessage() + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | RuntimeException e) {
+            response = new Response(500, TEXT, ("Request failed: " + e.getMessage() + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        try {
+            // Whatever is left of the body must be read before the connection can take the next request
+            exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+            exchange.getResponseHeaders().set("Content-Type", response.contentType);
+            if (response.allow != null) {
+                exchange.getResponseHeaders().set("Allow", response.allow);
+            }
+            exchange.sendResponseHeaders(response.status, response.body.length == 0 ? -1 : response.body.length);
+            if (response.body.length > 0) {
+                exchange.getResponseBody().write(response.body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readNBytes(MAX_BODY_BYTES + 1);
+        if (body.length > MAX_BODY_BYTES) {
+            throw new InvalidInputException("Request body exceeds " + MAX_BODY_BYTES + " bytes.");
+        }
+        return body;
+    }
+
+    private BankAccount account(HttpExchange exchange, String prefix) {
+        String accountNumber = URLDecoder.decode(exchange.getRequestURI().getRawPath().substring(prefix.length()),
+                StandardCharsets.UTF_8);
+        BankAccount bankAccount = DATA_STORE.getBankAccount(accountNumber);
+        if (bankAccount == null) {
+            throw new AccountNotFoundException("Account not found: " + accountNumber);
+        }
+        return bankAccount;
+    }
+
+    private static InterestRule parseRule(String line, int lineNumber) {
+        String[] parts = line.split("\\|");
+        if (parts.length != 3) {
+            throw new InvalidInputException("Line " + lineNumber + ": Invalid input format. Please use the format <Date>|<RuleId>|<Rate>.");
+        }
+        double rate;
+        try {
+            rate = Double.parseDouble(parts[2]);
+        } catch (NumberFormatException e) {
+            throw new InvalidInputException("Line " + lineNumber + ": Invalid rate. Please enter a valid number.");
+        }
+        if (rate <= 0 || rate >= 100) {
+            throw new InvalidInputException("Line " + lineNumber + ": Invalid interest rate. Rate should be greater than 0 and less than 100.");
+        }
+        if (parts[1].getBytes(StandardCharsets.UTF_8).length > PostingJournal.MAX_ID_BYTES) {
+            throw new InvalidInputException("Line " + lineNumber + ": Invalid rule id. Rule id must be at most "
+                    + PostingJournal.MAX_ID_BYTES + " bytes.");
+        }
+        try {
+            return new InterestRule(parts[0], parts[1], rate);
+        } catch (ParseException e) {
+            throw new InvalidInputException("Line " + lineNumber + ": Invalid date. Please enter a valid calendar date.");
+        }
+    }
+
+    private static Month month(Map<String, String> query) {
+        String month = query.get("month");
+        if (month == null || !month.matches("^\\d{1,2}$") || Integer.parseInt(month) < 1 || Integer.parseInt(month) > 12) {
+            throw new InvalidInputException("Invalid month. Please use a month number from 1 to 12.");
+        }
+        return Month.of(Integer.parseInt(month));
+    }
+
+    private static LocalDate date(Map<String, String> query, String name) {
+        String date = query.get(name);
+        int epochDay = date == null ? DateCodec.INVALID : DateCodec.parse(date);
+        if (epochDay == DateCodec.INVALID) {
+            throw new InvalidInputException("Invalid " + name + ". Please use a valid date in the format YYYYMMdd.");
+        }
+        return LocalDate.ofEpochDay(epochDay);
+    }
+
+    private static StatementLayout layout(String layout) {
+        if (layout == null) {
+            return StatementLayout.TEXT;
+        }
+        try {
+            return StatementLayout.valueOf(layout.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidInputException("Invalid layout. Use text, csv or fixed_width.");
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> query = new HashMap<>();
+        String rawQuery = exchange.getRequestURI().getRawQuery();
+        if (rawQuery != null) {
+            for (String parameter : rawQuery.split("&")) {
+                int equals = parameter.indexOf('=');
+                if (equals > 0) {
+                    query.put(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+                            URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return query;
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Response handle(HttpExchange exchange) throws IOException;
+    }
+
+    private static final class Response {
+
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+        private String allow;
+
+        private Response(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        static Response ok(String body) {
+            return new Response(200, TEXT, body.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Response methodNotAllowed(String allow) {
+            Response response = new Response(405, TEXT, "Method not allowed.\n".getBytes(StandardCharsets.UTF_8));
+            response.allow = allow;
+            return response;
+        }
+    }
+}
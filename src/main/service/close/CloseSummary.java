@@ -0,0 +1,108 @@
+package main.service.close;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of a month-end close, with the timing of every shard of accounts.
+ */
+public class CloseSummary {
+
+    private final YearMonth month;
+    private final List<ShardReport> shards;
+    private final long elapsedNanos;
+
+    public CloseSummary(YearMonth month, List<ShardReport> shards, long elapsedNanos) {
+        this.month = month;
+        this.shards = List.copyOf(shards);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public YearMonth getMonth() {
+        return month;
+    }
+
+    public List<ShardReport> getShards() {
+        return shards;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getAccounts() {
+        return shards.stream().mapToLong(ShardReport::getAccounts).sum();
+    }
+
+    public long getPosted() {
+        return shards.stream().mapToLong(ShardReport::getPosted).sum();
+    }
+
+    public long getFailed() {
+        return shards.stream().mapToLong(ShardReport::getFailed).sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (ShardReport shard : shards) {
+            builder.append(shard).append(System.lineSeparator());
+        }
+        return builder.append(String.format("Closed %s | Accounts: %d | Interest posted: %d | Failed: %d | Elapsed: %d ms",
+                month, getAccounts(), getPosted(), getFailed(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos))).toString();
+    }
+
+    /**
+     * Outcome of one shard. Shards that were already closed before a resume are reported from the checkpoint.
+     */
+    public static class ShardReport {
+
+        private final int shard;
+        private final long accounts;
+        private final long posted;
+        private final long failed;
+        private final long elapsedNanos;
+        private final boolean fromCheckpoint;
+
+        public ShardReport(int shard, long accounts, long posted, long failed, long elapsedNanos, boolean fromCheckpoint) {
+            this.shard = shard;
+            this.accounts = accounts;
+            this.posted = posted;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+            this.fromCheckpoint = fromCheckpoint;
+        }
+
+        public int getShard() {
+            return shard;
+        }
+
+        public long getAccounts() {
+            return accounts;
+        }
+
+        public long getPosted() {
+            return posted;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public boolean isFromCheckpoint() {
+            return fromCheckpoint;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Shard %d | Accounts: %d | Interest posted: %d | Failed: %d | Elapsed: %d ms%s", shard,
+                    accounts, posted, failed, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                    fromCheckpoint ? " | Closed before resume" : "");
+        }
+    }
+}
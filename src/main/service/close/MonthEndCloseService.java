@@ -0,0 +1,270 @@
+package main.service.close;
+
+import main.models.BankAccount;
+import main.models.PostingResult;
+import main.models.Transaction;
+import main.models.TransactionArchive;
+import main.repository.BankDataStoreI;
+import main.repository.BankDataStoreProvider;
+import main.service.statement.StatementService;
+import main.service.statement.StatementServiceI;
+import main.util.TimeUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public final class MonthEndCloseService implements MonthEndCloseServiceI {
+
+    private static final MonthEndCloseService INSTANCE = new MonthEndCloseService();
+
+    private static final int CLOSE_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int SHARDS = CLOSE_THREADS * 4;
+
+    BankDataStoreI DATA_STORE = BankDataStoreProvider.getDataStore();
+    StatementServiceI STATEMENT_SERVICE = StatementService.getInstance();
+    TransactionArchive ARCHIVE = BankDataStoreProvider.getTransactionArchive();
+
+    private MonthEndCloseService() {
+
+    }
+
+    public static MonthEndCloseService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Posts the interest of the month to every account, in parallel.
+     * <p>
+     * Accounts are split into shards by a hash of their account number, and the shards are closed on a pool of
+     * threads. Every shard is applied as one batch of the data store, and recorded in the checkpoint once its postings
+     * are durable. Running the close again with the same checkpoint skips the shards recorded in it, and an account
+     * that already has its interest posted on the last day of the month is never posted to twice, so a crashed close
+     * can simply be resumed.
+     * <p>
+     * Once its interest is posted, the transactions of an account up to the end of the month are moved into the
+     * archive, if there is one.
+     *
+     * @param month      - Month of the current year to close
+     * @param checkpoint - Path of the checkpoint file, created if it does not exist
+     * @return - Counts and timing of every shard
+     */
+    @Override
+    public CloseSummary closeMonth(Month month, Path checkpoint) throws IOException {
+        long startNanos = System.nanoTime();
+        YearMonth yearMonth = YearMonth.of(Year.now().getValue(), month);
+
+        try (CloseCheckpoint closeCheckpoint = CloseCheckpoint.open(checkpoint, yearMonth, SHARDS)) {
+            int shardCount = closeCheckpoint.shardCount;
+            List<List<BankAccount>> shards = new ArrayList<>(shardCount);
+            for (int i = 0; i < shardCount; i++) {
+                shards.add(new ArrayList<>());
+            }
+            for (BankAccount account : DATA_STORE.getAllBankAccounts()) {
+                shards.get(Math.floorMod(account.getAccountNumber().hashCode(), shardCount)).add(account);
+            }
+
+            Map<Integer, CloseSummary.ShardReport> reports = new TreeMap<>(closeCheckpoint.closedShards);
+            ExecutorService executor = Executors.newFixedThreadPool(CLOSE_THREADS);
+            try {
+                List<Future<CloseSummary.ShardReport>> pending = new ArrayList<>();
+                for (int shard = 0; shard < shardCount; shard++) {
+                    if (!reports.containsKey(shard)) {
+                        int shardNumber = shard;
+                        List<BankAccount> accounts = shards.get(shard);
+                        Callable<CloseSummary.ShardReport> task = () -> closeShard(shardNumber, accounts, yearMonth,
+                                closeCheckpoint);
+                        pending.add(executor.submit(task));
+                    }
+                }
+                for (Future<CloseSummary.ShardReport> future : pending) {
+                    CloseSummary.ShardReport report = await(future);
+                    reports.put(report.getShard(), report);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            return new CloseSummary(yearMonth, new ArrayList<>(reports.values()), System.nanoTime() - startNanos);
+        }
+    }
+
+    private CloseSummary.ShardReport closeShard(int shard, List<BankAccount> accounts, YearMonth month,
+                                                CloseCheckpoint checkpoint) throws IOException {
+        long startNanos = System.nanoTime();
+        long[] counts = new long[2];
+        DATA_STORE.batch(() -> {
+            for (BankAccount account : accounts) {
+                PostingResult result = closeAccount(account, month);
+                if (ARCHIVE != null) {
+                    account.archiveThrough(month, ARCHIVE);
+                }
+                if (result == PostingResult.POSTED) {
+                    counts[0]++;
+                } else if (result != null) {
+                    counts[1]++;
+                }
+            }
+        });
+        CloseSummary.ShardReport report = new CloseSummary.ShardReport(shard, accounts.size(), counts[0], counts[1],
+                System.nanoTime() - startNanos, false);
+        checkpoint.recordClosed(report);
+        return report;
+    }
+
+    /**
+     * Posts the interest of the month to the account, unless it is already posted or there is none.
+     * <p>
+     * The interest is calculated before the account is locked, as calculating it may wait for a statement that is
+     * calculating it already, and needs the account lock to do so. It is only posted if the accrual of the month has not
+     * changed meanwhile, and calculated again otherwise.
+     *
+     * @return - Result of the interest posting, or null if nothing had to be posted
+     */
+    private PostingResult closeAccount(BankAccount account, YearMonth month) {
+        LocalDate monthEnd = month.atEndOfMonth();
+        while (true) {
+            if (isInterestPosted(account, month)) {
+                return null;
+            }
+            long accrualVersion = account.getAccrualVersion(month);
+            long interest = STATEMENT_SERVICE.generateMonthlyInterestForAccount(account.getAccountNumber(),
+                    month.getMonth());
+            // Hold the account, so that a statement printed at the same time cannot post the interest as well
+            account.lock();
+            try {
+                if (isInterestPosted(account, month)) {
+                    return null;
+                }
+                if (account.getAccrualVersion(month) != accrualVersion) {
+                    continue;
+                }
+                if (interest <= 0) {
+                    return null;
+                }
+                return DATA_STORE.deposit(account.getAccountNumber(), TimeUtils.toDateString(monthEnd), interest, "I");
+            } catch (ParseException e) {
+                throw new IllegalStateException("Invalid month end date: " + monthEnd, e);
+            } finally {
+                account.unlock();
+            }
+        }
+    }
+
+    private static boolean isInterestPosted(BankAccount account, YearMonth month) {
+        long monthEnd = month.atEndOfMonth().toEpochDay();
+        for (Transaction transaction : account.getTransactions(month)) {
+            if (transaction.getTypeCode() == Transaction.INTEREST && transaction.getEpochDay() == monthEnd) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Month-end close interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Text file with a {@code <yyyy-MM>|<shard count>} header and a
+     * {@code <shard>|<accounts>|<posted>|<failed>|<elapsed nanos>} line for every shard that is closed. Every line is
+     * synced to disk as soon as it is written.
+     */
+    private static final class CloseCheckpoint implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final int shardCount;
+        private final Map<Integer, CloseSummary.ShardReport> closedShards;
+
+        private CloseCheckpoint(FileChannel channel, int shardCount, Map<Integer, CloseSummary.ShardReport> closedShards) {
+            this.channel = channel;
+            this.shardCount = shardCount;
+            this.closedShards = closedShards;
+        }
+
+        static CloseCheckpoint open(Path path, YearMonth month, int defaultShardCount) throws IOException {
+            Map<Integer, CloseSummary.ShardReport> closedShards = new TreeMap<>();
+            int shardCount = defaultShardCount;
+            boolean resume = Files.exists(path) && Files.size(path) > 0;
+            boolean tornLine = false;
+            if (resume) {
+                String content = Files.readString(path, StandardCharsets.UTF_8);
+                tornLine = !content.endsWith("\n");
+                List<String> lines = content.lines().toList();
+                String[] header = lines.get(0).split("\\|");
+                if (header.length != 2 || !header[0].equals(month.toString())) {
+                    throw new IOException("Checkpoint " + path + " does not belong to the close of " + month);
+                }
+                // Keep the shard count of the interrupted close, so that every account stays in its shard
+                shardCount = Integer.parseInt(header[1]);
+                for (String line : lines.subList(1, lines.size())) {
+                    String[] parts = line.split("\\|");
+                    // A line torn by a crash is ignored, and its shard is closed again
+                    if (parts.length == 5) {
+                        int shard = Integer.parseInt(parts[0]);
+                        closedShards.put(shard, new CloseSummary.ShardReport(shard, Long.parseLong(parts[1]),
+                                Long.parseLong(parts[2]), Long.parseLong(parts[3]), Long.parseLong(parts[4]), true));
+                    }
+                }
+            }
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            CloseCheckpoint checkpoint = new CloseCheckpoint(channel, shardCount, closedShards);
+            if (!resume) {
+                checkpoint.writeLine(month + "|" + shardCount);
+            } else if (tornLine) {
+                // Terminate a torn line, so that the next shard is recorded on a line of its own
+                checkpoint.writeLine("");
+            }
+            return checkpoint;
+        }
+
+        void recordClosed(CloseSummary.ShardReport report) throws IOException {
+            writeLine(report.getShard() + "|" + report.getAccounts() + "|" + report.getPosted() + "|"
+                    + report.getFailed() + "|" + report.getElapsedNanos());
+        }
+
+        private synchronized void writeLine(String line) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
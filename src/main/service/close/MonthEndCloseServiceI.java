@@ -0,0 +1,11 @@
+package main.service.close;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Month;
+
+public interface MonthEndCloseServiceI {
+
+    CloseSummary closeMonth(Month month, Path checkpoint) throws IOException;
+
+}
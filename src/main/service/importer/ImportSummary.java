@@ -0,0 +1,55 @@
+package main.service.importer;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of a bulk transaction import, used to print the throughput summary once the feed is consumed.
+ */
+public class ImportSummary {
+
+    private final long linesRead;
+    private final long accepted;
+    private final long rejected;
+    private final long elapsedNanos;
+    private final Path rejectedReport;
+
+    public ImportSummary(long linesRead, long accepted, long rejected, long elapsedNanos, Path rejectedReport) {
+        this.linesRead = linesRead;
+        this.accepted = accepted;
+        this.rejected = rejected;
+        this.elapsedNanos = elapsedNanos;
+        this.rejectedReport = rejectedReport;
+    }
+
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public Path getRejectedReport() {
+        return rejectedReport;
+    }
+
+    public double getLinesPerSecond() {
+        return elapsedNanos == 0 ? 0d : linesRead * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Lines read: %d | Accepted: %d | Rejected: %d | Elapsed: %d ms | Throughput: %.0f lines/s%s",
+                linesRead, accepted, rejected, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), getLinesPerSecond(),
+                rejected > 0 ? " | Rejected lines: " + rejectedReport : "");
+    }
+}
@@ -0,0 +1,377 @@
+package main.service.importer;
+
+import main.models.PostingResult;
+import main.models.Transaction;
+import main.repository.IdempotencyIndex;
+import main.repository.BankDataStoreProvider;
+import main.repository.BankDataStoreI;
+import main.repository.PostingJournal;
+import main.util.Money;
+import main.util.DateCodec;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public final class TransactionImportService implements TransactionImportServiceI {
+
+    private static final TransactionImportService INSTANCE = new TransactionImportService();
+
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final int PARSER_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int MAX_CHUNKS_IN_FLIGHT = PARSER_THREADS * 2;
+
+    BankDataStoreI DATA_STORE = BankDataStoreProvider.getDataStore();
+
+    private TransactionImportService() {
+
+    }
+
+    public static TransactionImportService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Imports a feed of <Date>|<Account>|<Type>|<Amount>[|<Idempotency key>] lines without any user interaction.
+     * <p>
+     * The file is streamed through a {@link FileChannel} in chunks cut at line boundaries. Each chunk is parsed and
+     * validated on a pool of parser threads, while this thread applies the parsed chunks to the data store strictly in
+     * file order, so that postings for every account are applied in the order they appear in the feed. At most
+     * {@link #MAX_CHUNKS_IN_FLIGHT} chunks are held in memory at any time.
+     * <p>
+     * A line that was already posted within the deduplication window, with the same idempotency key or, without a key,
+     * with the same content, is rejected as a duplicate, see {@link IdempotencyIndex}.
+     *
+     * @param feed           - Path of the feed to import
+     * @param rejectedReport - Path of the report listing every rejected line with its line number and reason
+     * @return - Counts and throughput of the import
+     */
+    @Override
+    public ImportSummary importTransactions(Path feed, Path rejectedReport) throws IOException {
+        long startNanos = System.nanoTime();
+        long linesRead = 0;
+        long accepted = 0;
+        long rejected = 0;
+
+        ExecutorService parsers = Executors.newFixedThreadPool(PARSER_THREADS);
+        Deque<Future<ParsedChunk>> inFlight = new ArrayDeque<>();
+        try (FileChannel channel = FileChannel.open(feed, StandardOpenOption.READ);
+             BufferedWriter report = Files.newBufferedWriter(rejectedReport, StandardCharsets.UTF_8)) {
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+            boolean endOfFile = false;
+            while (!endOfFile || !inFlight.isEmpty()) {
+                if (!endOfFile && inFlight.size() < MAX_CHUNKS_IN_FLIGHT) {
+                    endOfFile = fill(channel, buffer);
+                    buffer.flip();
+                    int chunkEnd = endOfFile ? buffer.limit() : lastLineEnd(buffer);
+                    if (chunkEnd == 0 && !endOfFile) {
+                        // A single line is longer than the buffer, grow it and keep reading
+                        ByteBuffer larger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+                        larger.put(buffer);
+                        buffer = larger;
+                        continue;
+                    }
+                    byte[] chunk = new byte[chunkEnd];
+                    buffer.get(chunk);
+                    buffer.compact();
+                    if (chunk.length > 0) {
+                        inFlight.addLast(parsers.submit(() -> parseChunk(chunk)));
+                    }
+                    continue;
+                }
+
+                // Apply the oldest chunk, which keeps the postings in file order. The whole chunk is one batch, so a
+                // journaled store syncs once per chunk rather than once per posting
+                ParsedChunk parsedChunk = await(inFlight.removeFirst());
+                long firstLine = linesRead + 1;
+                DATA_STORE.batch(() -> applyChunk(parsedChunk, firstLine, report));
+                accepted += parsedChunk.postings.size() - parsedChunk.rejectedCount;
+                rejected += parsedChunk.rejectedCount;
+                linesRead += parsedChunk.lineCount;
+            }
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+            parsers.shutdownNow();
+        }
+
+        return new ImportSummary(linesRead, accepted, rejected, System.nanoTime() - startNanos, rejectedReport);
+    }
+
+    /**
+     * Imports a batch of lines held in memory, parsed on the calling thread and applied as a single batch of the data
+     * store, so a journaled store syncs once for the whole batch.
+     *
+     * @param batch          - <Date>|<Account>|<Type>|<Amount>[|<Idempotency key>] lines
+     * @param rejectedReport - Receives every rejected line with its line number and reason
+     * @return - Counts and throughput of the import, without a report path
+     */
+    @Override
+    public ImportSummary importTransactions(byte[] batch, Writer rejectedReport) throws IOException {
+        long startNanos = System.nanoTime();
+        ParsedChunk parsedChunk = parseChunk(batch);
+        DATA_STORE.batch(() -> applyChunk(parsedChunk, 1, rejectedReport));
+        return new ImportSummary(parsedChunk.lineCount, parsedChunk.postings.size() - parsedChunk.rejectedCount,
+                parsedChunk.rejectedCount, System.nanoTime() - startNanos, null);
+    }
+
+    /**
+     * Applies the postings of a chunk in order and reports the rejected ones. All postings are started before the
+     * first result is awaited, so a store that posts on other threads works on the whole chunk at once.
+     * <p>
+     * Every posting is claimed in the idempotency index before it is started, in feed order, and released again if it
+     * is not posted, so that a corrected retry of a rejected line is not taken for a duplicate.
+     *
+     * @param firstLine - Line number of the first line of the chunk in the feed
+     */
+    private void applyChunk(ParsedChunk parsedChunk, long firstLine, Writer report) throws IOException {
+        IdempotencyIndex idempotencyIndex = DATA_STORE.getIdempotencyIndex();
+        for (ParsedPosting posting : parsedChunk.postings) {
+            if (posting.rejectReason != null) {
+                continue;
+            }
+            if (!idempotencyIndex.claim(posting.accountNumber, posting.epochDay, posting.type(), posting.amount,
+                    posting.idempotencyKey)) {
+                posting.reject(PostingResult.DUPLICATE.getMessage());
+                continue;
+            }
+            posting.result = posting.withdrawal
+                    ? DATA_STORE.withdrawIfSufficientAsync(posting.accountNumber, posting.dateString, posting.amount)
+                    : DATA_STORE.depositAsync(posting.accountNumber, posting.dateString, posting.amount, "D");
+        }
+        for (ParsedPosting posting : parsedChunk.postings) {
+            String reason = posting.rejectReason;
+            if (reason == null) {
+                reason = rejectReason(posting.result);
+                if (reason != null) {
+                    idempotencyIndex.release(posting.accountNumber, posting.epochDay, posting.type(), posting.amount,
+                            posting.idempotencyKey);
+                }
+            }
+            if (reason != null) {
+                parsedChunk.rejectedCount++;
+                report.write(String.valueOf(firstLine + posting.lineIndex));
+                report.write('|');
+                report.write(reason);
+                report.write('|');
+                report.write(posting.rawLine());
+                report.write(System.lineSeparator());
+            }
+        }
+    }
+
+    /**
+     * Reads from the channel until the buffer is full or the end of the file is reached.
+     *
+     * @return - true when the end of the file was reached
+     */
+    private static boolean fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return - Number of bytes up to and including the last line break in the buffer, 0 if there is none
+     */
+    private static int lastLineEnd(ByteBuffer buffer) {
+        for (int i = buffer.limit() - 1; i >= buffer.position(); i--) {
+            if (buffer.get(i) == '\n') {
+                return i + 1 - buffer.position();
+            }
+        }
+        return 0;
+    }
+
+    private static ParsedChunk await(Future<ParsedChunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to parse transaction feed", e.getCause());
+        }
+    }
+
+    /**
+     * Splits a chunk into lines and validates each line without touching the data store, so that chunks can be
+     * parsed concurrently.
+     */
+    static ParsedChunk parseChunk(byte[] chunk) {
+        List<ParsedPosting> postings = new ArrayList<>();
+        int lineIndex = 0;
+        int lineStart = 0;
+        while (lineStart < chunk.length) {
+            int lineEnd = indexOf(chunk, (byte) '\n', lineStart, chunk.length);
+            int next = lineEnd < 0 ? chunk.length : lineEnd + 1;
+            lineEnd = lineEnd < 0 ? chunk.length : lineEnd;
+            if (lineEnd > lineStart && chunk[lineEnd - 1] == '\r') {
+                lineEnd--;
+            }
+            if (lineEnd > lineStart) {
+                postings.add(parseLine(chunk, lineStart, lineEnd, lineIndex));
+            }
+            lineIndex++;
+            lineStart = next;
+        }
+        return new ParsedChunk(postings, lineIndex);
+    }
+
+    private static ParsedPosting parseLine(byte[] chunk, int start, int end, int lineIndex) {
+        ParsedPosting posting = new ParsedPosting(chunk, start, end, lineIndex);
+
+        int dateEnd = indexOf(chunk, (byte) '|', start, end);
+        int accountEnd = dateEnd < 0 ? -1 : indexOf(chunk, (byte) '|', dateEnd + 1, end);
+        int typeEnd = accountEnd < 0 ? -1 : indexOf(chunk, (byte) '|', accountEnd + 1, end);
+        int amountEnd = typeEnd < 0 ? -1 : indexOf(chunk, (byte) '|', typeEnd + 1, end);
+        if (typeEnd < 0 || (amountEnd >= 0 && indexOf(chunk, (byte) '|', amountEnd + 1, end) >= 0)) {
+            return posting.reject("Invalid input format. Please use the format <Date>|<Account>|<Type>|<Amount>.");
+        }
+        if (amountEnd >= 0) {
+            if (amountEnd + 1 == end) {
+                return posting.reject("Invalid idempotency key. Key must not be empty.");
+            }
+            posting.idempotencyKey = new String(chunk, amountEnd + 1, end - amountEnd - 1, StandardCharsets.UTF_8);
+            end = amountEnd;
+        }
+
+        if (dateEnd - start != 8 || !isDigits(chunk, start, dateEnd)) {
+            return posting.reject("Invalid date format. Please use YYYYMMdd.");
+        }
+        posting.epochDay = DateCodec.parse(chunk, start);
+        if (posting.epochDay == DateCodec.INVALID) {
+            return posting.reject("Invalid date. Please enter a valid calendar date.");
+        }
+        posting.dateString = new String(chunk, start, DateCodec.LENGTH, StandardCharsets.US_ASCII);
+
+        if (accountEnd - dateEnd - 1 <= 0) {
+            return posting.reject("Invalid account. Account number must not be empty.");
+        }
+        if (accountEnd - dateEnd - 1 > PostingJournal.MAX_ID_BYTES) {
+            return posting.reject("Invalid account. Account number must be at most " + PostingJournal.MAX_ID_BYTES
+                    + " bytes.");
+        }
+        posting.accountNumber = new String(chunk, dateEnd + 1, accountEnd - dateEnd - 1, StandardCharsets.UTF_8);
+
+        byte type = chunk[accountEnd + 1];
+        if (typeEnd - accountEnd != 2 || (type != 'D' && type != 'd' && type != 'W' && type != 'w')) {
+            return posting.reject("Invalid transaction type. Use 'D' for deposit or 'W' for withdrawal.");
+        }
+        posting.withdrawal = type == 'W' || type == 'w';
+
+        try {
+            posting.amount = Money.parse(chunk, typeEnd + 1, end);
+        } catch (NumberFormatException e) {
+            return posting.reject("Invalid amount. Please enter a valid number.");
+        }
+        if (posting.amount <= 0) {
+            return posting.reject("Invalid amount. Amount should be greater than 0.");
+        }
+        return posting;
+    }
+
+    /**
+     * @param result - Result of posting a validated line, with the same rules as the interactive input
+     * @return - Reason for rejecting the posting, or null if it was applied
+     */
+    private static String rejectReason(CompletableFuture<PostingResult> result) {
+        try {
+            PostingResult postingResult = result.join();
+            return postingResult == PostingResult.POSTED ? null : postingResult.getMessage();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ParseException) {
+                return "Invalid date format. Please use YYYYMMdd.";
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static int indexOf(byte[] bytes, byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isDigits(byte[] bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] < '0' || bytes[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static final class ParsedChunk {
+        private final List<ParsedPosting> postings;
+        private final int lineCount;
+        private int rejectedCount;
+
+        private ParsedChunk(List<ParsedPosting> postings, int lineCount) {
+            this.postings = postings;
+            this.lineCount = lineCount;
+        }
+    }
+
+    static final class ParsedPosting {
+        private final byte[] source;
+        private final int start;
+        private final int end;
+        private final int lineIndex;
+
+        private int epochDay;
+        private String dateString;
+        private String accountNumber;
+        private boolean withdrawal;
+        private long amount;
+        private String idempotencyKey;
+        private String rejectReason;
+        private CompletableFuture<PostingResult> result;
+
+        private ParsedPosting(byte[] source, int start, int end, int lineIndex) {
+            this.source = source;
+            this.start = start;
+            this.end = end;
+            this.lineIndex = lineIndex;
+        }
+
+        private ParsedPosting reject(String reason) {
+            this.rejectReason = reason;
+            return this;
+        }
+
+        private byte type() {
+            return withdrawal ? Transaction.WITHDRAWAL : Transaction.DEPOSIT;
+        }
+
+        private String rawLine() {
+            return new String(source, start, end - start, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package main.service.importer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+
+public interface TransactionImportServiceI {
+
+    ImportSummary importTransactions(Path feed, Path rejectedReport) throws IOException;
+
+    /**
+     * @param batch          - <Date>|<Account>|<Type>|<Amount>[|<Idempotency key>] lines, e.g. the body of a request
+     * @param rejectedReport - Receives a <line number>|<reason>|<line> line for every rejected line
+     */
+    ImportSummary importTransactions(byte[] batch, Writer rejectedReport) throws IOException;
+
+}
@@ -0,0 +1,38 @@
+package main.service.interchange;
+
+/**
+ * Binary interchange format for transactions and interest rules, exchanged with other systems instead of
+ * {@code <Date>|<Account>|<Type>|<Amount>} text.
+ * <p>
+ * Layout, big endian: an 8 byte header (magic and version), followed by records that each start with a one byte kind
+ * <ul>
+ *     <li>{@link #ACCOUNT} - {@code [int key][unsigned short length][UTF-8 account number]}, defines the key the
+ *     transactions of an account refer to, before its first transaction</li>
+ *     <li>{@link #TRANSACTION} - {@code [byte type][int epoch day][int account key][long amount in cents]}, a fixed
+ *     {@value #TRANSACTION_SIZE} bytes</li>
+ *     <li>{@link #INTEREST_RULE} - {@code [int epoch day][long rate in ppm][unsigned short length][UTF-8 rule id]}</li>
+ * </ul>
+ * Strings are written once per file, so the bulk of a file is fixed width transactions that are read without any
+ * parsing. Records are in the order they are to be applied.
+ */
+final class InterchangeFormat {
+
+    static final int MAGIC = 0x424B4958;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 4 + 4;
+
+    static final byte ACCOUNT = 'A';
+    static final byte TRANSACTION = 'T';
+    static final byte INTEREST_RULE = 'R';
+
+    static final int TRANSACTION_SIZE = 1 + 1 + 4 + 4 + 8;
+    static final int ACCOUNT_HEADER_SIZE = 1 + 4 + 2;
+    static final int INTEREST_RULE_HEADER_SIZE = 1 + 4 + 8 + 2;
+    static final int MAX_STRING_LENGTH = 0xFFFF;
+
+    static final int BUFFER_SIZE = 1 << 17;
+
+    private InterchangeFormat() {
+
+    }
+}
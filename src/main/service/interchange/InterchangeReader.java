@@ -0,0 +1,161 @@
+package main.service.interchange;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static main.service.interchange.InterchangeFormat.*;
+
+/**
+ * Streams the records of a file in the {@link InterchangeFormat} from a {@link FileChannel}, through a buffer that is
+ * refilled whenever the next record is not in it, so the file is never held in memory as a whole.
+ */
+public final class InterchangeReader implements Closeable {
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final List<String> accounts = new ArrayList<>();
+    private boolean endOfFile;
+
+    private InterchangeReader(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer.limit(0);
+    }
+
+    /**
+     * @throws IOException - If the file is not in the interchange format, or in a version that is not supported
+     */
+    public static InterchangeReader open(Path path) throws IOException {
+        InterchangeReader reader = new InterchangeReader(path, FileChannel.open(path, StandardOpenOption.READ));
+        try {
+            if (!reader.fill(HEADER_SIZE) || reader.buffer.getInt() != MAGIC) {
+                throw new IOException("Not an interchange file: " + path);
+            }
+            int version = reader.buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported interchange file version " + version + ": " + path);
+            }
+            return reader;
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return - true if the file starts like an interchange file, rather than e.g. a text feed
+     */
+    public static boolean isInterchangeFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // keep reading until the magic is in or the file ends
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Hands every record from the current position to the end of the file to the visitor, in file order.
+     *
+     * @throws IOException - If the file ends in the middle of a record or holds an invalid record
+     */
+    public void read(Visitor visitor) throws IOException {
+        while (fill(1)) {
+            byte kind = buffer.get(buffer.position());
+            switch (kind) {
+                case TRANSACTION:
+                    require(TRANSACTION_SIZE);
+                    buffer.get();
+                    byte type = buffer.get();
+                    int epochDay = buffer.getInt();
+                    int key = buffer.getInt();
+                    long amount = buffer.getLong();
+                    if (key < 0 || key >= accounts.size()) {
+                        throw new IOException("Transaction of an undefined account key " + key + " in " + path);
+                    }
+                    visitor.onTransaction(accounts.get(key), epochDay, type, amount);
+                    break;
+                case ACCOUNT:
+                    require(ACCOUNT_HEADER_SIZE);
+                    buffer.get();
+                    int newKey = buffer.getInt();
+                    if (newKey != accounts.size()) {
+                        throw new IOException("Account key " + newKey + " out of sequence in " + path);
+                    }
+                    accounts.add(readString());
+                    break;
+                case INTEREST_RULE:
+                    require(INTEREST_RULE_HEADER_SIZE);
+                    buffer.get();
+                    int ruleDay = buffer.getInt();
+                    long ratePpm = buffer.getLong();
+                    visitor.onInterestRule(ruleDay, readString(), ratePpm);
+                    break;
+                default:
+                    throw new IOException("Unknown record kind " + kind + " in " + path);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private String readString() throws IOException {
+        int length = buffer.getShort() & 0xFFFF;
+        require(length);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void require(int size) throws IOException {
+        if (!fill(size)) {
+            throw new IOException("Interchange file ends in the middle of a record: " + path);
+        }
+    }
+
+    /**
+     * Reads from the channel until at least the given number of bytes is buffered, or the file ends.
+     *
+     * @return - true if the bytes are buffered, false if the file ended before any of them
+     */
+    private boolean fill(int size) throws IOException {
+        if (buffer.remaining() >= size) {
+            return true;
+        }
+        buffer.compact();
+        while (buffer.position() < size && !endOfFile) {
+            endOfFile = channel.read(buffer) < 0;
+        }
+        buffer.flip();
+        if (buffer.remaining() >= size) {
+            return true;
+        }
+        if (buffer.hasRemaining()) {
+            throw new IOException("Interchange file ends in the middle of a record: " + path);
+        }
+        return false;
+    }
+
+    public interface Visitor {
+
+        /**
+         * @param type   - Transaction type, e.g. {@link main.models.Transaction#DEPOSIT}
+         * @param amount - Amount in cents
+         */
+        void onTransaction(String account, int epochDay, byte type, long amount) throws IOException;
+
+        void onInterestRule(int epochDay, String ruleId, long ratePpm) throws IOException;
+    }
+}
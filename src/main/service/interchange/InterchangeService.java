@@ -0,0 +1,212 @@
+package main.service.interchange;
+
+import main.models.BankAccount;
+import main.models.InterestRule;
+import main.models.PostingResult;
+import main.models.Transaction;
+import main.models.TransactionLog;
+import main.repository.BankDataStoreI;
+import main.repository.BankDataStoreProvider;
+import main.service.importer.ImportSummary;
+import main.util.DateCodec;
+import main.util.Money;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+public final class InterchangeService implements InterchangeServiceI {
+
+    private static final InterchangeService INSTANCE = new InterchangeService();
+
+    private static final int BATCH_SIZE = 8192;
+
+    BankDataStoreI DATA_STORE = BankDataStoreProvider.getDataStore();
+
+    private InterchangeService() {
+
+    }
+
+    public static InterchangeService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Loads an interchange file into the data store, with the same checks as the text import.
+     * <p>
+     * Transactions are posted in file order, a batch of {@link #BATCH_SIZE} at a time, so a journaled store syncs once
+     * per batch. An interest rule is defined once the transactions before it are posted. Deposits and interest are
+     * posted as deposits of their type, withdrawals only if the balance covers them.
+     *
+     * @return - Counts and throughput of the import, counting records instead of lines
+     */
+    @Override
+    public ImportSummary importFile(Path file, Path rejectedReport) throws IOException {
+        long startNanos = System.nanoTime();
+        try (InterchangeReader reader = InterchangeReader.open(file);
+             BufferedWriter report = Files.newBufferedWriter(rejectedReport, StandardCharsets.UTF_8)) {
+            Loader loader = new Loader(report);
+            reader.read(loader);
+            loader.flush();
+            return new ImportSummary(loader.records, loader.records - loader.rejected, loader.rejected,
+                    System.nanoTime() - startNanos, rejectedReport);
+        }
+    }
+
+    /**
+     * Dumps the interest rules and then the transactions of every account, in posting order, so that importing the
+     * file into an empty store restores the same balances.
+     */
+    @Override
+    public long exportFile(Path file) throws IOException {
+        try (InterchangeWriter writer = InterchangeWriter.create(file)) {
+            for (InterestRule rule : DATA_STORE.getAllInterestRules()) {
+                writer.writeInterestRule(rule);
+            }
+            for (BankAccount account : DATA_STORE.getAllBankAccounts()) {
+                TransactionLog log = account.getTransactionLog();
+                int rows = log.size();
+                for (int row = 0; row < rows; row++) {
+                    writer.writeTransaction(account.getAccountNumber(), log.getEpochDay(row), log.getType(row),
+                            log.getAmount(row));
+                }
+            }
+            return writer.getTransactionCount() + writer.getInterestRuleCount();
+        }
+    }
+
+    /**
+     * @return - Reason for rejecting the posting, or null if it was applied
+     */
+    private static String rejectReason(CompletableFuture<PostingResult> result) {
+        try {
+            PostingResult postingResult = result.join();
+            return postingResult == PostingResult.POSTED ? null : postingResult.getMessage();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ParseException) {
+                return "Invalid date format. Please use YYYYMMdd.";
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Collects the transactions of the file into batches and posts every batch to the data store.
+     */
+    private final class Loader implements InterchangeReader.Visitor {
+
+        private final Writer report;
+        private final String[] accounts = new String[BATCH_SIZE];
+        private final int[] epochDays = new int[BATCH_SIZE];
+        private final byte[] types = new byte[BATCH_SIZE];
+        private final long[] amounts = new long[BATCH_SIZE];
+        private final String[] dates = new String[BATCH_SIZE];
+        private final String[] rejectReasons = new String[BATCH_SIZE];
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private final CompletableFuture<PostingResult>[] results = new CompletableFuture[BATCH_SIZE];
+        private int pending;
+        private long records;
+        private long rejected;
+        // Dates repeat from one transaction to the next, so the text of the last one is kept
+        private int lastEpochDay = DateCodec.INVALID;
+        private String lastDate;
+
+        private Loader(Writer report) {
+            this.report = report;
+        }
+
+        @Override
+        public void onTransaction(String account, int epochDay, byte type, long amount) throws IOException {
+            accounts[pending] = account;
+            epochDays[pending] = epochDay;
+            types[pending] = type;
+            amounts[pending] = amount;
+            if (++pending == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        @Override
+        public void onInterestRule(int epochDay, String ruleId, long ratePpm) throws IOException {
+            flush();
+            records++;
+            DATA_STORE.addInterestRule(new InterestRule(epochDay, ruleId, ratePpm));
+        }
+
+        private void flush() throws IOException {
+            if (pending == 0) {
+                return;
+            }
+            DATA_STORE.batch(this::applyPending);
+            records += pending;
+            pending = 0;
+        }
+
+        /**
+         * Starts all postings of the batch before awaiting the first result, see
+         * {@link BankDataStoreI#depositAsync}, then reports the rejected ones in order.
+         */
+        private void applyPending() throws IOException {
+            for (int i = 0; i < pending; i++) {
+                rejectReasons[i] = validate(i);
+                if (rejectReasons[i] == null) {
+                    results[i] = types[i] == Transaction.WITHDRAWAL
+                            ? DATA_STORE.withdrawIfSufficientAsync(accounts[i], dates[i], amounts[i])
+                            : DATA_STORE.depositAsync(accounts[i], dates[i], amounts[i],
+                            types[i] == Transaction.INTEREST ? "I" : "D");
+                }
+            }
+            for (int i = 0; i < pending; i++) {
+                String reason = rejectReasons[i] != null ? rejectReasons[i] : rejectReason(results[i]);
+                if (reason != null) {
+                    rejected++;
+                    writeRejected(i, reason);
+                }
+                results[i] = null;
+                accounts[i] = null;
+            }
+        }
+
+        private String validate(int i) {
+            dates[i] = null;
+            if (types[i] != Transaction.DEPOSIT && types[i] != Transaction.WITHDRAWAL
+                    && types[i] != Transaction.INTEREST) {
+                return "Invalid transaction type. Use 'D' for deposit or 'W' for withdrawal.";
+            }
+            if (epochDays[i] != lastEpochDay) {
+                try {
+                    lastDate = DateCodec.format(epochDays[i]);
+                } catch (IllegalArgumentException e) {
+                    return "Invalid date. Please enter a valid calendar date.";
+                }
+                lastEpochDay = epochDays[i];
+            }
+            dates[i] = lastDate;
+            return null;
+        }
+
+        private void writeRejected(int i, String reason) throws IOException {
+            report.write(String.valueOf(records + i + 1));
+            report.write('|');
+            report.write(reason);
+            report.write('|');
+            report.write(dates[i] != null ? dates[i] : String.valueOf(epochDays[i]));
+            report.write('|');
+            report.write(accounts[i]);
+            report.write('|');
+            report.write((char) types[i]);
+            report.write('|');
+            report.write(Money.format(amounts[i]));
+            report.write(System.lineSeparator());
+        }
+    }
+}
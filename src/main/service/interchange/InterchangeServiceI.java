@@ -0,0 +1,22 @@
+package main.service.interchange;
+
+import main.service.importer.ImportSummary;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public interface InterchangeServiceI {
+
+    /**
+     * @param file           - File in the {@link InterchangeFormat}
+     * @param rejectedReport - Receives a <record number>|<reason>|<Date>|<Account>|<Type>|<Amount> line for every
+     *                       rejected transaction
+     */
+    ImportSummary importFile(Path file, Path rejectedReport) throws IOException;
+
+    /**
+     * @return - Number of transactions and interest rules written
+     */
+    long exportFile(Path file) throws IOException;
+
+}
@@ -0,0 +1,108 @@
+package main.service.interchange;
+
+import main.models.InterestRule;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import static main.service.interchange.InterchangeFormat.*;
+
+/**
+ * Streams records in the {@link InterchangeFormat} to a file, through a buffer that is written to the
+ * {@link FileChannel} whenever it fills up. An account number is written once, the first time the account is used.
+ */
+public final class InterchangeWriter implements Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final Map<String, Integer> accountKeys = new HashMap<>();
+    private long transactionCount;
+    private long interestRuleCount;
+
+    private InterchangeWriter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * @param path - Path of the file, replaced if it exists
+     */
+    public static InterchangeWriter create(Path path) throws IOException {
+        InterchangeWriter writer = new InterchangeWriter(FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+        writer.buffer.putInt(MAGIC).putInt(VERSION);
+        return writer;
+    }
+
+    public void writeInterestRule(InterestRule rule) throws IOException {
+        byte[] ruleId = encode(rule.getRuleId());
+        reserve(INTEREST_RULE_HEADER_SIZE + ruleId.length);
+        buffer.put(INTEREST_RULE).putInt(rule.getEpochDay()).putLong(rule.getRatePpm())
+                .putShort((short) ruleId.length).put(ruleId);
+        interestRuleCount++;
+    }
+
+    /**
+     * @param type   - Transaction type, e.g. {@link main.models.Transaction#DEPOSIT}
+     * @param amount - Amount in cents
+     */
+    public void writeTransaction(String account, int epochDay, byte type, long amount) throws IOException {
+        Integer key = accountKeys.get(account);
+        if (key == null) {
+            key = accountKeys.size();
+            byte[] accountNumber = encode(account);
+            reserve(ACCOUNT_HEADER_SIZE + accountNumber.length);
+            buffer.put(ACCOUNT).putInt(key).putShort((short) accountNumber.length).put(accountNumber);
+            accountKeys.put(account, key);
+        }
+        reserve(TRANSACTION_SIZE);
+        buffer.put(TRANSACTION).put(type).putInt(epochDay).putInt(key).putLong(amount);
+        transactionCount++;
+    }
+
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    public long getInterestRuleCount() {
+        return interestRuleCount;
+    }
+
+    /**
+     * Writes out everything buffered and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try (channel) {
+            flush();
+        }
+    }
+
+    private void reserve(int size) throws IOException {
+        if (buffer.remaining() < size) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static byte[] encode(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_LENGTH) {
+            throw new IllegalArgumentException("Too long for the interchange format: " + value);
+        }
+        return bytes;
+    }
+}
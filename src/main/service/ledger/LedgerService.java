@@ -0,0 +1,76 @@
+package main.service.ledger;
+
+import main.exceptions.InvalidInputException;
+import main.models.LedgerTotals;
+import main.repository.BankDataStoreI;
+import main.repository.BankDataStoreProvider;
+import main.repository.DailyLedger;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bank-wide totals of deposits, withdrawals, interest and net flow, read from the {@link DailyLedger} of the data
+ * store. The ledger is kept up to date by the postings themselves, so reading it never scans the transactions and never
+ * waits on an account.
+ * <p>
+ * A ledger missing the history of restored accounts is rebuilt on the first read.
+ */
+public final class LedgerService implements LedgerServiceI {
+
+    private static final LedgerService INSTANCE = new LedgerService();
+
+    private static final int REBUILD_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int MAX_DAYS = 3660;
+
+    BankDataStoreI DATA_STORE = BankDataStoreProvider.getDataStore();
+
+    private LedgerService() {
+
+    }
+
+    public static LedgerService getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public LedgerTotals getDailyTotals(LocalDate date) {
+        return getLedger().getTotals(date, date);
+    }
+
+    @Override
+    public List<LedgerTotals> getDailyTotals(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new InvalidInputException("Invalid date range. The start date must not be after the end date.");
+        }
+        if (from.plusDays(MAX_DAYS).isBefore(to)) {
+            throw new InvalidInputException("Invalid date range. Daily totals cover at most " + MAX_DAYS + " days.");
+        }
+        DailyLedger ledger = getLedger();
+        List<LedgerTotals> totals = new ArrayList<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            totals.add(ledger.getTotals(date, date));
+        }
+        return totals;
+    }
+
+    @Override
+    public LedgerTotals getMonthlyTotals(YearMonth month) {
+        return getLedger().getTotals(month.atDay(1), month.atEndOfMonth());
+    }
+
+    @Override
+    public void rebuild() {
+        DATA_STORE.rebuildLedger(REBUILD_THREADS);
+    }
+
+    private DailyLedger getLedger() {
+        DailyLedger ledger = DATA_STORE.getLedger();
+        if (!ledger.isComplete()) {
+            rebuild();
+        }
+        return ledger;
+    }
+}
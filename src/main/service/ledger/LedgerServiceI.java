@@ -0,0 +1,31 @@
+package main.service.ledger;
+
+import main.models.LedgerTotals;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+public interface LedgerServiceI {
+
+    /**
+     * @return - Bank-wide totals of the postings dated on the day
+     */
+    LedgerTotals getDailyTotals(LocalDate date);
+
+    /**
+     * @return - Bank-wide totals of every day from the first to the last date, both included, in date order
+     */
+    List<LedgerTotals> getDailyTotals(LocalDate from, LocalDate to);
+
+    /**
+     * @return - Bank-wide totals of the postings dated in the month
+     */
+    LedgerTotals getMonthlyTotals(YearMonth month);
+
+    /**
+     * Rebuilds the totals from the transactions of all accounts, e.g. after they were restored from a snapshot.
+     */
+    void rebuild();
+
+}
@@ -0,0 +1,91 @@
+package main.service.query;
+
+import main.exceptions.AccountNotFoundException;
+import main.exceptions.InvalidInputException;
+import main.models.BankAccount;
+import main.models.Transaction;
+import main.models.TransactionLog;
+import main.repository.BankDataStoreI;
+import main.repository.BankDataStoreProvider;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Queries over the history of an account by date.
+ * <p>
+ * Postings are never backdated, so the transaction log of an account is ordered by date and every query is a binary
+ * search over it rather than a scan. The end of day balance is the balance of the last row of the day, so daily
+ * balances are read by jumping from one posting day to the next: the work depends on the number of days with postings
+ * in the range, never on the number of postings.
+ */
+public final class AccountQueryService implements AccountQueryServiceI {
+
+    private static final AccountQueryService INSTANCE = new AccountQueryService();
+
+    BankDataStoreI DATA_STORE = BankDataStoreProvider.getDataStore();
+
+    private AccountQueryService() {
+
+    }
+
+    public static AccountQueryService getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public long getBalanceAsOf(String accountID, LocalDate date) {
+        TransactionLog log = getBankAccount(accountID).getTransactionLog();
+        int rowAfter = log.firstRowOnOrAfter((int) date.toEpochDay() + 1);
+        return rowAfter == 0 ? 0L : log.getBalance(rowAfter - 1);
+    }
+
+    @Override
+    public List<Transaction> getTransactions(String accountID, LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        return getBankAccount(accountID).getTransactions(from, to);
+    }
+
+    @Override
+    public BalanceSummary getDailyBalanceSummary(String accountID, LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        TransactionLog log = getBankAccount(accountID).getTransactionLog();
+        int firstDay = (int) from.toEpochDay();
+        int lastDay = (int) to.toEpochDay();
+
+        int row = log.firstRowOnOrAfter(firstDay + 1);
+        long balance = row == 0 ? 0L : log.getBalance(row - 1);
+        long minBalance = balance;
+        long maxBalance = balance;
+        long balanceDays = 0L;
+        int day = firstDay;
+        int size = log.size();
+        while (row < size && log.getEpochDay(row) <= lastDay) {
+            int postingDay = log.getEpochDay(row);
+            balanceDays = Math.addExact(balanceDays, Math.multiplyExact(balance, postingDay - day));
+            day = postingDay;
+            // Only the last posting of the day sets its end of day balance
+            row = Math.min(log.firstRowOnOrAfter(postingDay + 1), size);
+            balance = log.getBalance(row - 1);
+            minBalance = Math.min(minBalance, balance);
+            maxBalance = Math.max(maxBalance, balance);
+        }
+        balanceDays = Math.addExact(balanceDays, Math.multiplyExact(balance, lastDay + 1 - day));
+        long days = lastDay + 1L - firstDay;
+        return new BalanceSummary(from, to, minBalance, maxBalance, Math.round((double) balanceDays / days));
+    }
+
+    private BankAccount getBankAccount(String accountID) {
+        BankAccount bankAccount = DATA_STORE.getBankAccount(accountID);
+        if (bankAccount == null) {
+            throw new AccountNotFoundException("Bank Account not found for account ID: " + accountID);
+        }
+        return bankAccount;
+    }
+
+    private static void checkRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new InvalidInputException("Invalid date range. The start date must not be after the end date.");
+        }
+    }
+}
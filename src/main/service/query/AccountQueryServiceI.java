@@ -0,0 +1,25 @@
+package main.service.query;
+
+import main.models.Transaction;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface AccountQueryServiceI {
+
+    /**
+     * @return - Balance of the account at the end of the date in cents, 0 before its first transaction
+     */
+    long getBalanceAsOf(String accountID, LocalDate date);
+
+    /**
+     * @return - The transactions of the account dated from the first to the last date, both included, in posting order
+     */
+    List<Transaction> getTransactions(String accountID, LocalDate from, LocalDate to);
+
+    /**
+     * @return - Lowest, highest and average end of day balance of the account over the dates, both included
+     */
+    BalanceSummary getDailyBalanceSummary(String accountID, LocalDate from, LocalDate to);
+
+}
@@ -0,0 +1,54 @@
+package main.service.query;
+
+import main.util.Money;
+
+import java.time.LocalDate;
+
+/**
+ * End of day balances of an account over a range of dates, in cents.
+ */
+public class BalanceSummary {
+
+    private final LocalDate from;
+    private final LocalDate to;
+    private final long minBalance;
+    private final long maxBalance;
+    private final long averageBalance;
+
+    public BalanceSummary(LocalDate from, LocalDate to, long minBalance, long maxBalance, long averageBalance) {
+        this.from = from;
+        this.to = to;
+        this.minBalance = minBalance;
+        this.maxBalance = maxBalance;
+        this.averageBalance = averageBalance;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public long getMinBalance() {
+        return minBalance;
+    }
+
+    public long getMaxBalance() {
+        return maxBalance;
+    }
+
+    /**
+     * @return - Average of the end of day balances, rounded to the cent
+     */
+    public long getAverageBalance() {
+        return averageBalance;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s to %s | Min: %s | Max: %s | Average: %s", from, to, Money.format(minBalance),
+                Money.format(maxBalance), Money.format(averageBalance));
+    }
+}
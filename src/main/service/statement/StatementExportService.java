@@ -0,0 +1,281 @@
+package main.service.statement;
+
+import main.models.BankAccount;
+import main.models.Transaction;
+import main.models.TransactionLog;
+import main.repository.BankDataStoreI;
+import main.repository.BankDataStoreProvider;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Month;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+public final class StatementExportService implements StatementExportServiceI {
+
+    private static final StatementExportService INSTANCE = new StatementExportService();
+
+    private static final int EXPORT_THREADS = Runtime.getRuntime().availableProcessors();
+    // Accounts a worker takes at a time, so that workers finishing early take over the rest
+    private static final int CHUNK_SIZE = 64;
+    private static final int BUFFER_SIZE = 64 << 10;
+    private static final int BUFFERS_PER_WORKER = 4;
+
+    BankDataStoreI DATA_STORE = BankDataStoreProvider.getDataStore();
+    StatementServiceI STATEMENT_SERVICE = StatementService.getInstance();
+
+    // Direct buffers of finished exports, taken by the workers of the next one
+    private final ConcurrentLinkedQueue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+
+    private StatementExportService() {
+
+    }
+
+    public static StatementExportService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Exports the statements of all accounts on a pool of threads.
+     * <p>
+     * Every worker renders statements into {@value #BUFFERS_PER_WORKER} direct buffers taken from a pool, and writes a
+     * statement to its file channel with a single gathering write once it is rendered, or whenever the buffers are
+     * full. Memory stays bounded by the number of workers, whatever the number of accounts or the length of their
+     * statements. In a consolidated file every statement is written whole, in the order the workers finish them.
+     * <p>
+     * The interest line is the interest posted on the last day of the month, or else the interest the month would
+     * earn, which is not posted. Statements are rendered straight from the accounts rather than through the statement
+     * cache, so an export does not evict the statements being served.
+     */
+    @Override
+    public StatementExportSummary exportStatements(Month month, StatementLayout layout, Path target,
+                                                   boolean consolidated) throws IOException {
+        long startNanos = System.nanoTime();
+        YearMonth yearMonth = YearMonth.of(Year.now().getValue(), month);
+        List<BankAccount> accounts = DATA_STORE.getAllBankAccounts();
+        AtomicInteger nextAccount = new AtomicInteger();
+
+        FileChannel consolidatedChannel = null;
+        if (consolidated) {
+            consolidatedChannel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } else {
+            Files.createDirectories(target);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(EXPORT_THREADS);
+        try {
+            ReentrantLock consolidatedLock = new ReentrantLock();
+            long bytes = 0L;
+            if (consolidatedChannel != null && layout == StatementLayout.CSV) {
+                // A single table for all accounts, under one column header
+                StatementRenderer header = new StatementRenderer(layout, StatementSink.of(consolidatedChannel));
+                header.writeHeader("");
+                header.flush();
+                bytes = consolidatedChannel.position();
+            }
+            List<Future<long[]>> pending = new ArrayList<>();
+            for (int i = 0; i < EXPORT_THREADS; i++) {
+                FileChannel channel = consolidatedChannel;
+                Callable<long[]> task = () -> exportAccounts(accounts, nextAccount, yearMonth, layout, target, channel,
+                        consolidatedLock);
+                pending.add(executor.submit(task));
+            }
+            long files = consolidated ? 1L : 0L;
+            for (Future<long[]> future : pending) {
+                long[] counts = await(future);
+                files += counts[0];
+                bytes += counts[1];
+            }
+            return new StatementExportSummary(yearMonth, accounts.size(), files, bytes,
+                    System.nanoTime() - startNanos, target);
+        } finally {
+            executor.shutdownNow();
+            if (consolidatedChannel != null) {
+                consolidatedChannel.close();
+            }
+        }
+    }
+
+    /**
+     * Takes chunks of accounts until there are none left, and writes their statements.
+     *
+     * @param consolidatedChannel - Channel of the consolidated file, or null for a file per account
+     * @return - Number of files and bytes written
+     */
+    private long[] exportAccounts(List<BankAccount> accounts, AtomicInteger nextAccount, YearMonth month,
+                                  StatementLayout layout, Path directory, FileChannel consolidatedChannel,
+                                  ReentrantLock consolidatedLock) throws IOException {
+        StatementBuffers buffers = new StatementBuffers(takeBuffers(),
+                consolidatedChannel == null ? null : consolidatedLock);
+        StatementRenderer renderer = new StatementRenderer(layout, buffers);
+        renderer.startTable(consolidatedChannel == null);
+        long files = 0L;
+        try {
+            int from;
+            while ((from = nextAccount.getAndAdd(CHUNK_SIZE)) < accounts.size()) {
+                for (int i = from; i < Math.min(from + CHUNK_SIZE, accounts.size()); i++) {
+                    BankAccount account = accounts.get(i);
+                    if (consolidatedChannel != null) {
+                        buffers.channel = consolidatedChannel;
+                        writeStatement(renderer, account, month);
+                        buffers.endStatement();
+                    } else {
+                        try (FileChannel channel = FileChannel.open(directory.resolve(fileName(account, month, layout)),
+                                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                StandardOpenOption.TRUNCATE_EXISTING)) {
+                            buffers.channel = channel;
+                            renderer.startTable(true);
+                            writeStatement(renderer, account, month);
+                            buffers.endStatement();
+                        }
+                        files++;
+                    }
+                }
+            }
+            return new long[]{files, buffers.bytesWritten};
+        } finally {
+            buffers.release();
+            bufferPool.addAll(List.of(buffers.buffers));
+        }
+    }
+
+    private void writeStatement(StatementRenderer renderer, BankAccount account, YearMonth month) throws IOException {
+        TransactionLog log = account.getTransactionLog();
+        int monthEnd = (int) month.atEndOfMonth().toEpochDay();
+        renderer.renderStatement(account, month);
+        int lastRow = log.firstRowOnOrAfter(monthEnd + 1) - 1;
+        if (lastRow >= 0 && log.getType(lastRow) == Transaction.INTEREST && log.getEpochDay(lastRow) == monthEnd) {
+            renderer.writeInterest(monthEnd, log.getAmount(lastRow), log.getBalance(lastRow));
+        } else {
+            long balance = lastRow >= 0 ? log.getBalance(lastRow) : 0L;
+            long interest = STATEMENT_SERVICE.generateMonthlyInterestForAccount(account.getAccountNumber(),
+                    month.getMonth());
+            renderer.writeInterest(monthEnd, interest, balance + interest);
+        }
+        renderer.flush();
+    }
+
+    private ByteBuffer[] takeBuffers() {
+        ByteBuffer[] buffers = new ByteBuffer[BUFFERS_PER_WORKER];
+        for (int i = 0; i < buffers.length; i++) {
+            ByteBuffer buffer = bufferPool.poll();
+            buffers[i] = buffer != null ? buffer.clear() : ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        return buffers;
+    }
+
+    /**
+     * @return - Name of the statement file of the account. Characters that are not safe in a file name are replaced,
+     * and the hash of the account number is added so that such names stay apart.
+     */
+    private static String fileName(BankAccount account, YearMonth month, StatementLayout layout) {
+        String accountNumber = account.getAccountNumber();
+        String name = accountNumber.replaceAll("[^A-Za-z0-9_-]", "_");
+        if (name.isEmpty() || !name.equals(accountNumber)) {
+            name += "-" + Integer.toHexString(accountNumber.hashCode());
+        }
+        return name + "-" + month + (layout == StatementLayout.CSV ? ".csv" : ".txt");
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Statement export interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Collects the rendered rows of a statement in direct buffers, and writes them to the channel with a gathering
+     * write at the end of the statement or when all buffers are full.
+     */
+    private static final class StatementBuffers implements StatementSink {
+
+        private final ByteBuffer[] buffers;
+        // Held from the first write of a statement to its end, when the channel is shared with other workers
+        private final ReentrantLock channelLock;
+        private FileChannel channel;
+        private int current;
+        private long bytesWritten;
+
+        private StatementBuffers(ByteBuffer[] buffers, ReentrantLock channelLock) {
+            this.buffers = buffers;
+            this.channelLock = channelLock;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                ByteBuffer buffer = buffers[current];
+                if (!buffer.hasRemaining()) {
+                    if (current + 1 == buffers.length) {
+                        drain();
+                    } else {
+                        current++;
+                    }
+                    continue;
+                }
+                int count = Math.min(length, buffer.remaining());
+                buffer.put(bytes, offset, count);
+                offset += count;
+                length -= count;
+            }
+        }
+
+        private void endStatement() throws IOException {
+            drain();
+            release();
+        }
+
+        private void drain() throws IOException {
+            if (current == 0 && buffers[0].position() == 0) {
+                return;
+            }
+            if (channelLock != null && !channelLock.isHeldByCurrentThread()) {
+                channelLock.lock();
+            }
+            long remaining = 0L;
+            for (int i = 0; i <= current; i++) {
+                remaining += buffers[i].flip().remaining();
+            }
+            bytesWritten += remaining;
+            while (remaining > 0) {
+                remaining -= channel.write(buffers, 0, current + 1);
+            }
+            for (int i = 0; i <= current; i++) {
+                buffers[i].clear();
+            }
+            current = 0;
+        }
+
+        private void release() {
+            if (channelLock != null && channelLock.isHeldByCurrentThread()) {
+                channelLock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package main.service.statement;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Month;
+
+public interface StatementExportServiceI {
+
+    /**
+     * Writes the statement of the month, with its interest line, for every account.
+     *
+     * @param month        - Month of the current year
+     * @param target       - Directory receiving a file per account, or the single file if consolidated
+     * @param consolidated - true to write all statements into the one target file
+     * @return - Counts and timing of the export
+     */
+    StatementExportSummary exportStatements(Month month, StatementLayout layout, Path target, boolean consolidated)
+            throws IOException;
+
+}
@@ -0,0 +1,57 @@
+package main.service.statement;
+
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of a bulk statement export.
+ */
+public class StatementExportSummary {
+
+    private final YearMonth month;
+    private final long accounts;
+    private final long files;
+    private final long bytes;
+    private final long elapsedNanos;
+    private final Path target;
+
+    public StatementExportSummary(YearMonth month, long accounts, long files, long bytes, long elapsedNanos, Path target) {
+        this.month = month;
+        this.accounts = accounts;
+        this.files = files;
+        this.bytes = bytes;
+        this.elapsedNanos = elapsedNanos;
+        this.target = target;
+    }
+
+    public YearMonth getMonth() {
+        return month;
+    }
+
+    public long getAccounts() {
+        return accounts;
+    }
+
+    public long getFiles() {
+        return files;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public Path getTarget() {
+        return target;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Exported %s | Accounts: %d | Files: %d | Bytes: %d | Elapsed: %d ms | Target: %s", month,
+                accounts, files, bytes, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), target);
+    }
+}
@@ -0,0 +1,22 @@
+package main.service.statement;
+
+/**
+ * Layouts a {@link StatementRenderer} can write statements in.
+ */
+public enum StatementLayout {
+
+    /**
+     * Tab separated columns, as printed on the console.
+     */
+    TEXT,
+
+    /**
+     * A header line and one comma separated line per transaction, with the account number in the first column.
+     */
+    CSV,
+
+    /**
+     * Space padded columns of a fixed width, with amounts aligned to the right.
+     */
+    FIXED_WIDTH
+}
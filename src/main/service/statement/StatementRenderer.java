@@ -0,0 +1,322 @@
+package main.service.statement;
+
+import main.models.BankAccount;
+import main.models.Transaction;
+import main.models.TransactionLog;
+import main.util.DateCodec;
+import main.util.Money;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.YearMonth;
+import java.util.Arrays;
+
+/**
+ * Renders account statements into a reusable buffer, which is handed to a {@link StatementSink} when it is full and at
+ * the end of every statement.
+ * <p>
+ * Rows are written straight from the columns of the {@link TransactionLog}: dates, transaction ids and amounts are
+ * formatted by hand into the buffer, so rendering allocates nothing per transaction and the sink sees a few large
+ * writes instead of one per row. A row is never split across two writes.
+ * <p>
+ * A renderer is not thread safe, every thread needs its own.
+ */
+public final class StatementRenderer {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    // Longest row without the account number: date, transaction id, type, two amounts, separators and padding
+    private static final int MAX_ROW_LENGTH = 8 + 24 + 1 + 2 * Money.MAX_FORMATTED_LENGTH + 64;
+
+    private static final int DATE_WIDTH = DateCodec.LENGTH + 1;
+    private static final int ID_WIDTH = 14;
+    private static final int TYPE_WIDTH = 5;
+    private static final int AMOUNT_WIDTH = 16;
+
+    private static final byte[] ACCOUNT_PREFIX = ascii("Account: ");
+    private static final byte[] TEXT_HEADER = ascii("Date \t\t| Txn Id \t\t| Type \t| Amount \t| Balance \t|\n");
+    private static final byte[] TEXT_SEPARATOR = ascii(" \t| ");
+    private static final byte[] TEXT_ROW_END = ascii(" \t|\n");
+    private static final byte[] TEXT_INTEREST_ID = ascii("  \t\t\t| I \t| ");
+    private static final byte[] TEXT_INTEREST_SEPARATOR = ascii(" \t\t| ");
+    private static final byte[] CSV_HEADER = ascii("Account,Date,Txn Id,Type,Amount,Balance\n");
+    private static final byte[] FIXED_WIDTH_HEADER = ascii(String.format("%-" + DATE_WIDTH + "s%-" + ID_WIDTH + "s%-"
+            + TYPE_WIDTH + "s%" + AMOUNT_WIDTH + "s%" + AMOUNT_WIDTH + "s\n", "Date", "Txn Id", "Type", "Amount", "Balance"));
+
+    private final StatementLayout layout;
+    private final StatementSink sink;
+
+    private byte[] buffer;
+    private int position;
+    // Account number of the current statement, as it is written in rows
+    private byte[] account = new byte[0];
+    private boolean csvHeaderWritten;
+
+    public StatementRenderer(StatementLayout layout, StatementSink sink) {
+        this(layout, sink, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize - Size of the buffer in bytes, grown if a single row does not fit
+     */
+    public StatementRenderer(StatementLayout layout, StatementSink sink, int bufferSize) {
+        this.layout = layout;
+        this.sink = sink;
+        this.buffer = new byte[Math.max(bufferSize, 64)];
+    }
+
+    public StatementLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Renders the statement of the account and flushes it to the sink. Interest postings are left out, they are
+     * rendered on their own with {@link #writeInterest(int, long, long)}.
+     *
+     * @param month - Month of the statement, or null for the whole history
+     */
+    public void renderStatement(BankAccount account, YearMonth month) throws IOException {
+        TransactionLog log = account.getTransactionLog();
+        int fromRow = 0;
+        int toRow = log.size();
+        if (month != null) {
+            int[] rows = account.getRowRange(month);
+            fromRow = rows == null ? 0 : rows[0];
+            toRow = rows == null ? 0 : rows[1];
+        }
+        writeHeader(account.getAccountNumber());
+        for (int row = fromRow; row < toRow; row++) {
+            if (log.getType(row) != Transaction.INTEREST) {
+                writeTransaction(log, row);
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Starts the statement of an account. In the CSV layout the column header is only written for the first
+     * statement, so that the statements of many accounts make up a single table.
+     */
+    public void writeHeader(String accountNumber) throws IOException {
+        account = layout == StatementLayout.CSV ? csvField(accountNumber) : accountNumber.getBytes(StandardCharsets.UTF_8);
+        reserve(ACCOUNT_PREFIX.length + account.length + FIXED_WIDTH_HEADER.length + TEXT_HEADER.length + 1);
+        switch (layout) {
+            case CSV:
+                if (!csvHeaderWritten) {
+                    put(CSV_HEADER);
+                    csvHeaderWritten = true;
+                }
+                break;
+            case FIXED_WIDTH:
+                put(ACCOUNT_PREFIX);
+                put(account);
+                put((byte) '\n');
+                put(FIXED_WIDTH_HEADER);
+                break;
+            default:
+                put(ACCOUNT_PREFIX);
+                put(account);
+                put((byte) '\n');
+                put(TEXT_HEADER);
+                break;
+        }
+    }
+
+    /**
+     * Starts a new table in the CSV layout, e.g. in another file.
+     *
+     * @param withHeader - Whether the next statement writes the column header, false if it is already written
+     */
+    public void startTable(boolean withHeader) {
+        csvHeaderWritten = !withHeader;
+    }
+
+    /**
+     * Writes a row of the transaction log.
+     */
+    public void writeTransaction(TransactionLog log, int row) throws IOException {
+        reserve(MAX_ROW_LENGTH + account.length);
+        int epochDay = log.getEpochDay(row);
+        switch (layout) {
+            case CSV:
+                put(account);
+                put((byte) ',');
+                putDate(epochDay);
+                put((byte) ',');
+                putTransactionId(epochDay, log.getSequence(row));
+                put((byte) ',');
+                put(log.getType(row));
+                put((byte) ',');
+                putAmount(log.getAmount(row));
+                put((byte) ',');
+                putAmount(log.getBalance(row));
+                put((byte) '\n');
+                break;
+            case FIXED_WIDTH:
+                int start = position;
+                putDate(epochDay);
+                padTo(start + DATE_WIDTH);
+                putTransactionId(epochDay, log.getSequence(row));
+                padTo(start + DATE_WIDTH + ID_WIDTH);
+                put(log.getType(row));
+                padTo(start + DATE_WIDTH + ID_WIDTH + TYPE_WIDTH);
+                putAmountRightAligned(log.getAmount(row));
+                putAmountRightAligned(log.getBalance(row));
+                put((byte) '\n');
+                break;
+            default:
+                putDate(epochDay);
+                put(TEXT_SEPARATOR);
+                putTransactionId(epochDay, log.getSequence(row));
+                put(TEXT_SEPARATOR);
+                put(log.getType(row));
+                put(TEXT_SEPARATOR);
+                putAmount(log.getAmount(row));
+                put(TEXT_SEPARATOR);
+                putAmount(log.getBalance(row));
+                put(TEXT_ROW_END);
+                break;
+        }
+    }
+
+    /**
+     * Writes the interest line of a statement, which has no transaction id.
+     *
+     * @param amount  - Interest in cents
+     * @param balance - Balance after the interest in cents
+     */
+    public void writeInterest(int epochDay, long amount, long balance) throws IOException {
+        reserve(MAX_ROW_LENGTH + account.length);
+        switch (layout) {
+            case CSV:
+                put(account);
+                put((byte) ',');
+                putDate(epochDay);
+                put((byte) ',');
+                put((byte) ',');
+                put(Transaction.INTEREST);
+                put((byte) ',');
+                putAmount(amount);
+                put((byte) ',');
+                putAmount(balance);
+                put((byte) '\n');
+                break;
+            case FIXED_WIDTH:
+                int start = position;
+                putDate(epochDay);
+                padTo(start + DATE_WIDTH + ID_WIDTH);
+                put(Transaction.INTEREST);
+                padTo(start + DATE_WIDTH + ID_WIDTH + TYPE_WIDTH);
+                putAmountRightAligned(amount);
+                putAmountRightAligned(balance);
+                put((byte) '\n');
+                break;
+            default:
+                putDate(epochDay);
+                put(TEXT_SEPARATOR);
+                put(TEXT_INTEREST_ID);
+                putAmount(amount);
+                put(TEXT_INTEREST_SEPARATOR);
+                putAmount(balance);
+                put(TEXT_ROW_END);
+                break;
+        }
+    }
+
+    /**
+     * Hands everything rendered so far to the sink.
+     */
+    public void flush() throws IOException {
+        if (position > 0) {
+            sink.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    /**
+     * Makes room for a row of up to the given length, flushing the rows before it.
+     */
+    private void reserve(int length) throws IOException {
+        if (position + length > buffer.length) {
+            flush();
+            if (length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, length);
+            }
+        }
+    }
+
+    private void put(byte value) {
+        buffer[position++] = value;
+    }
+
+    private void put(byte[] bytes) {
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void putDate(int epochDay) {
+        position = DateCodec.format(epochDay, buffer, position);
+    }
+
+    /**
+     * Writes a transaction id as {@code yyyyMMdd-NN}, the same text as
+     * {@link main.util.TransactionIdSequencer#format(int, int)}.
+     */
+    private void putTransactionId(int epochDay, int sequence) {
+        putDate(epochDay);
+        put((byte) '-');
+        if (sequence < 10) {
+            put((byte) '0');
+        }
+        int end = position + digitCount(sequence);
+        for (int i = end - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + sequence % 10);
+            sequence /= 10;
+        }
+        position = end;
+    }
+
+    private void putAmount(long cents) {
+        position = Money.format(cents, buffer, position);
+    }
+
+    private void putAmountRightAligned(long cents) {
+        int start = position;
+        putAmount(cents);
+        int length = position - start;
+        if (length < AMOUNT_WIDTH) {
+            int padding = AMOUNT_WIDTH - length;
+            System.arraycopy(buffer, start, buffer, start + padding, length);
+            Arrays.fill(buffer, start, start + padding, (byte) ' ');
+            position += padding;
+        }
+    }
+
+    private void padTo(int end) {
+        while (position < end) {
+            buffer[position++] = ' ';
+        }
+    }
+
+    private static int digitCount(int value) {
+        int count = 1;
+        while (value >= 10) {
+            value /= 10;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return - The text as a CSV field, quoted if it contains a separator, quote or line break
+     */
+    private static byte[] csvField(String text) {
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text.getBytes(StandardCharsets.UTF_8);
+        }
+        return ('"' + text.replace("\"", "\"\"") + '"').getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -1,24 +1,44 @@
 package main.service.statement;
 
 import main.exceptions.AccountNotFoundException;
+import main.metrics.InterestEvent;
+import main.metrics.Metrics;
+import main.metrics.StatementEvent;
 import main.models.BankAccount;
+import main.models.InterestRateSource;
 import main.models.InterestRule;
-import main.models.Transaction;
-import main.repository.BankDataStore;
+import main.repository.BankDataStoreProvider;
 import main.repository.BankDataStoreI;
-import main.util.TimeUtils;
+import main.repository.InterestRuleRates;
+import main.util.Money;
+import main.util.ResultCache;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.time.Month;
 import java.time.Year;
+import java.time.YearMonth;
 import java.time.temporal.ChronoUnit;
-import java.util.Comparator;
 import java.util.List;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
 
 public final class StatementService implements StatementServiceI {
 
     private static final StatementService INSTANCE = new StatementService();
-    BankDataStoreI DATA_STORE = BankDataStore.getInstance();
+
+    private static final long INTEREST_CACHE_ENTRIES = Long.getLong("banking.cache.interestEntries", 100_000L);
+    private static final long STATEMENT_CACHE_BYTES = Long.getLong("banking.cache.statementBytes", 64L << 20);
+
+    BankDataStoreI DATA_STORE = BankDataStoreProvider.getDataStore();
+
+    // Results of an account and month, stamped with what they were computed from (see ResultCache)
+    private final ResultCache<MonthKey, Long> interestCache = new ResultCache<>(INTEREST_CACHE_ENTRIES, interest -> 1L);
+    private final ResultCache<MonthKey, byte[]> statementCache = new ResultCache<>(STATEMENT_CACHE_BYTES,
+            statement -> statement.length);
 
     private StatementService() {
 
@@ -30,94 +50,187 @@ public final class StatementService implements StatementServiceI {
 
     /**
      * Method for calculating monthly interest for all transactions in the month, for a given account number.
+     * <p>
+     * Interest is paid on the end of day balance of every day of the month, at the rate of the interest rule in effect
+     * on that day. The account keeps this accrual up to date on every posting, so this does not depend on the number
+     * of transactions in the month.
+     * <p>
+     * Results are cached until a transaction is posted into the month or before it, or an interest rule changes the
+     * rate of a day of the month.
      *
      * @param accountID - Account number
      * @param month     - Month
-     * @return - interest applicable for the month for account
+     * @return - interest applicable for the month for account, in cents
      */
     @Override
-    public Double generateMonthlyInterestForAccount(String accountID, Month month) {
+    public long generateMonthlyInterestForAccount(String accountID, Month month) {
+
+        InterestEvent event = InterestEvent.start();
+        long start = Metrics.start();
+        try {
+            // Fetch the Bank Account for the account ID
+            BankAccount bankAccount = DATA_STORE.getBankAccount(accountID);
+            if (bankAccount == null) {
+                throw new AccountNotFoundException("Bank Account not found for account ID: " + accountID);
+            }
 
-        // Fetch the Bank Account for the account ID
-        BankAccount bankAccount = DATA_STORE.getBankAccount(accountID);
-        if (bankAccount == null) {
-            throw new AccountNotFoundException("Bank Account not found for account ID: " + accountID);
+            Year statementYear = Year.now(); // Assume statement is for current year
+            YearMonth yearMonth = YearMonth.of(statementYear.getValue(), month);
+
+            long interest = interestCache.get(new MonthKey(bankAccount, yearMonth, null),
+                    bankAccount.getAccrualVersion(yearMonth),
+                    () -> Money.accruedInterest(bankAccount.getMonthlyAccrual(yearMonth), statementYear.length()));
+            if (event != null && event.shouldCommit()) {
+                int[] rows = bankAccount.getRowRange(yearMonth);
+                int segments = (rows == null ? 0 : rows[1] - rows[0]) + 1;
+                int rules = rulesInEffect(DATA_STORE.getInterestRuleIndex(), yearMonth.atDay(1), yearMonth.atEndOfMonth());
+                event.finish(accountID, yearMonth.toString(), yearMonth.lengthOfMonth(), segments, rules, interest);
+            }
+            return interest;
+        } finally {
+            Metrics.MONTHLY_INTEREST.stop(start);
         }
+    }
 
-        Year statementYear = Year.now(); // Assume statement is for current year
-
-        // Fetch all interest rate rules
-        List<InterestRule> applicableInterestRules = DATA_STORE.getAllInterestRules();
-
-        // Filter the transactions applicable for the given month
-        // Sort the transactions in the order they are received
-        List<Transaction> monthlyTransactions = bankAccount.getTransactions()
-                .stream()
-                .filter(txn -> !"I".equals(txn.getType()))
-                .filter(TimeUtils.getTransactionFilterPredicate(month)).sorted(Comparator.comparing(Transaction::getTransactionId)).toList();
-
-        // Iterate through the transactions and calculate interest
-        double interest = 0D;
-        for (int i = 0; i < monthlyTransactions.size(); i++) {
-            Transaction transaction = monthlyTransactions.get(i);
-            LocalDate txnDate = transaction.getDate();
-
-            if (i == 0) {
-                // Calculate interest for beginning of month for the balance carried forward
-                LocalDate monthStartDate = LocalDate.of(statementYear.getValue(), month.getValue(), 1);
-                double openingBalance = 0d;
-                if (transaction.getType().equalsIgnoreCase("D")) {
-                    openingBalance = transaction.getBalance() - transaction.getAmount();
-                } else {
-                    openingBalance = transaction.getBalance() + transaction.getAmount();
-                }
-                interest += calculateInterestBetweenDates(monthStartDate, txnDate, openingBalance, applicableInterestRules);
-            } else if (i == monthlyTransactions.size() - 1) {
-                // Calculate interest from the last transaction date for the month, till the end of the month
-                LocalDate monthEndDate = LocalDate.of(Year.now().getValue(), month.getValue(), txnDate.getMonth().maxLength());
-                interest += calculateInterestBetweenDates(txnDate, monthEndDate, transaction.getBalance(), applicableInterestRules);
-            } else {
-                // Calculate interest for the transactions happened in the middle of the month
-                Transaction prevTransaction = monthlyTransactions.get(i - 1);
-                LocalDate startDate = prevTransaction.getDate();
-                interest += calculateInterestBetweenDates(startDate, txnDate, prevTransaction.getBalance(), applicableInterestRules);
+    /**
+     * Writes the statement of the account for the month, rendered once and then cached until a transaction is posted
+     * into the month. Postings are never backdated, so the rows of a month only change by rows added at its end.
+     */
+    @Override
+    public void writeStatement(BankAccount bankAccount, YearMonth month, StatementLayout layout, StatementSink sink)
+            throws IOException {
+        StatementEvent event = StatementEvent.start();
+        long start = Metrics.start();
+        try {
+            int[] rows = bankAccount.getRowRange(month);
+            byte[] statement = statementCache.get(new MonthKey(bankAccount, month, layout),
+                    rows == null ? -1L : rows[1], () -> renderStatement(bankAccount, month, layout));
+            sink.write(statement, 0, statement.length);
+            if (event != null && event.shouldCommit()) {
+                event.finish(bankAccount.getAccountNumber(), month.toString(), layout.name(),
+                        rows == null ? 0 : rows[1] - rows[0], statement.length);
             }
+        } finally {
+            Metrics.STATEMENT.stop(start);
+        }
+    }
+
+    private static byte[] renderStatement(BankAccount bankAccount, YearMonth month, StatementLayout layout) {
+        ByteArrayOutputStream statement = new ByteArrayOutputStream();
+        try {
+            new StatementRenderer(layout, statement::write).renderStatement(bankAccount, month);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+        return statement.toByteArray();
+    }
 
-        return interest / statementYear.length();
+    /**
+     * Calculates the accrual of a balance held over every day of [startDate, endDate], at the rate of the interest rule in
+     * effect on each day. The daily rates are read from the cumulative rate calendar of the data store, so the cost does
+     * not depend on the number of days or rules.
+     *
+     * @param startDate - First day of the period
+     * @param endDate   - Last day of the period
+     * @param balance   - Balance held over the period, in cents
+     * @return - Accrual (balance x days x rate) for the given period, see {@link Money#accrue(long, long, long)}
+     */
+    public long calculateInterestBetweenDates(LocalDate startDate, LocalDate endDate, long balance) {
+        return calculateInterestBetweenDates(startDate, endDate, balance, DATA_STORE.getInterestRates(),
+                DATA_STORE.getInterestRuleIndex());
     }
 
     /**
-     * This method will calculate the interest for a given period of time, for a given set of interest rules, based on the
-     * account balance of the beginning of the period.
+     * Calculates the accrual of a balance held over every day of [startDate, endDate], at the rate of the rule of the
+     * given ones in effect on each day, the same way as {@link #calculateInterestBetweenDates(LocalDate, LocalDate, long)}.
+     * The rules do not need to be in date order.
      *
-     * @param startDate       - Start date of the period
-     * @param endDate         -  End date of the period
-     * @param balance         - Balance at the start of the period
+     * @param startDate       - First day of the period
+     * @param endDate         - Last day of the period
+     * @param balance         - Balance held over the period, in cents
      * @param applicableRules - Interest rules applicable for the period
-     * @return - Interest applicable for the given period
+     * @return - Accrual (balance x days x rate) for the given period, see {@link Money#accrue(long, long, long)}
+     */
+    public long calculateInterestBetweenDates(LocalDate startDate, LocalDate endDate, long balance, List<InterestRule> applicableRules) {
+        NavigableMap<LocalDate, InterestRule> interestRuleIndex = new TreeMap<>();
+        for (InterestRule interestRule : applicableRules) {
+            interestRuleIndex.put(interestRule.getDate(), interestRule);
+        }
+        return calculateInterestBetweenDates(startDate, endDate, balance, interestRuleIndex);
+    }
+
+    /**
+     * Calculates the accrual of a balance held over every day of [startDate, endDate], at the rate of the rule of the
+     * index in effect on each day, the same way as {@link #calculateInterestBetweenDates(LocalDate, LocalDate, long)}.
+     *
+     * @param startDate         - First day of the period
+     * @param endDate           - Last day of the period
+     * @param balance           - Balance held over the period, in cents
+     * @param interestRuleIndex - Interest rules keyed by their effective date
+     * @return - Accrual (balance x days x rate) for the given period, see {@link Money#accrue(long, long, long)}
+     */
+    public long calculateInterestBetweenDates(LocalDate startDate, LocalDate endDate, long balance,
+                                                NavigableMap<LocalDate, InterestRule> interestRuleIndex) {
+        return calculateInterestBetweenDates(startDate, endDate, balance, InterestRuleRates.of(interestRuleIndex),
+                interestRuleIndex);
+    }
+
+    private long calculateInterestBetweenDates(LocalDate startDate, LocalDate endDate, long balance,
+                                               InterestRateSource rates,
+                                               NavigableMap<LocalDate, InterestRule> interestRuleIndex) {
+        InterestEvent event = InterestEvent.start();
+        long start = Metrics.start();
+        long accrual;
+        try {
+            long rateDays = rates.rateDays((int) startDate.toEpochDay(), (int) endDate.toEpochDay() + 1);
+            accrual = Money.accrue(balance, 1, rateDays);
+        } finally {
+            Metrics.INTEREST_BETWEEN_DATES.stop(start);
+        }
+        if (event != null && event.shouldCommit()) {
+            // The calendar answers for every rule of the period at once
+            event.finish(null, YearMonth.from(startDate).toString(), (int) startDate.until(endDate, ChronoUnit.DAYS) + 1,
+                    1, rulesInEffect(interestRuleIndex, startDate, endDate), accrual);
+        }
+        return accrual;
+    }
+
+    /**
+     * @return - Number of interest rules in effect on a day of [from, to], only used to describe a calculation
      */
-    public double calculateInterestBetweenDates(LocalDate startDate, LocalDate endDate, Double balance, List<InterestRule> applicableRules) {
-        // Create a tracking variable for the last checked date
-        LocalDate lastCheckedDate = endDate;
-        double interest = 0d;
-        // iterate through the rules from end to the start
-        // so that we can find the effective rules for the end date to start date
-        for (int i = applicableRules.size() - 1; i >= 0; i--) {
-            InterestRule interestRule = applicableRules.get(i);
-
-            if (interestRule.getDate().isBefore(lastCheckedDate) && interestRule.getDate().isAfter(startDate)) {
-                // For all the interest rate rules before the end of the period, and after the start of the period
-                // Calculate the cumulative interest based on the interest rate rules
-                interest += (interestRule.getDate().until(lastCheckedDate, ChronoUnit.DAYS)) * (interestRule.getRate() / 100d) * balance;
-                lastCheckedDate = interestRule.getDate().minusDays(1);
-            } else if (interestRule.getDate().isBefore(startDate)) {
-                // For the last interest rate rule before start of the period (interest paid on carried forward balance)
-                // Calculate the cumulative interest based on the interest rate rule
-                interest += (startDate.until(lastCheckedDate, ChronoUnit.DAYS) + 1) * (interestRule.getRate() / 100d) * balance;
-                break;
+    private static int rulesInEffect(NavigableMap<LocalDate, InterestRule> interestRuleIndex, LocalDate from,
+                                     LocalDate to) {
+        return interestRuleIndex.subMap(from, false, to, true).size() + (interestRuleIndex.floorKey(from) == null ? 0 : 1);
+    }
+
+    /**
+     * An account and month, with the layout of a statement. Accounts are compared by identity, so the results of an
+     * account are never mistaken for those of another account object with the same number.
+     */
+    private static final class MonthKey {
+
+        private final BankAccount bankAccount;
+        private final YearMonth month;
+        private final StatementLayout layout;
+
+        private MonthKey(BankAccount bankAccount, YearMonth month, StatementLayout layout) {
+            this.bankAccount = bankAccount;
+            this.month = month;
+            this.layout = layout;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof MonthKey)) {
+                return false;
             }
+            MonthKey key = (MonthKey) other;
+            return bankAccount == key.bankAccount && month.equals(key.month) && layout == key.layout;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(bankAccount), month, layout);
         }
-        return interest;
     }
 }
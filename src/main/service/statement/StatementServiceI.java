@@ -1,9 +1,22 @@
 package main.service.statement;
 
+import main.models.BankAccount;
+
+import java.io.IOException;
 import java.time.Month;
+import java.time.YearMonth;
 
 public interface StatementServiceI {
 
-    Double generateMonthlyInterestForAccount(String accountID, Month month);
+    /**
+     * @return - Interest for the month in cents
+     */
+    long generateMonthlyInterestForAccount(String accountID, Month month);
+
+    /**
+     * Writes the statement of the account for the month to the sink, see {@link StatementRenderer#renderStatement}.
+     */
+    void writeStatement(BankAccount bankAccount, YearMonth month, StatementLayout layout, StatementSink sink)
+            throws IOException;
 
 }
@@ -0,0 +1,35 @@
+package main.service.statement;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Destination of rendered statements. A {@link StatementRenderer} hands over its buffer in whole rows of UTF-8 text.
+ */
+@FunctionalInterface
+public interface StatementSink {
+
+    void write(byte[] bytes, int offset, int length) throws IOException;
+
+    /**
+     * @return - A sink writing to the channel, e.g. a file or a socket
+     */
+    static StatementSink of(WritableByteChannel channel) {
+        return (bytes, offset, length) -> {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        };
+    }
+
+    /**
+     * @return - A sink writing to the writer. Rows are never split across writes, so every write decodes on its own.
+     */
+    static StatementSink of(Writer writer) {
+        return (bytes, offset, length) -> writer.write(new String(bytes, offset, length, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,161 @@
+package main.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts between {@code yyyyMMdd} dates and epoch days (days since 1970-01-01) without going through
+ * {@link java.time.LocalDate} or a formatter.
+ * <p>
+ * Dates are kept as an {@code int} epoch day everywhere, so parsing, comparing and formatting them allocates nothing
+ * but the text that is finally displayed. Parsing is strict: only real calendar dates of the years 0001 to 9999 are
+ * accepted, anything else parses to {@link #INVALID}. The conversions are the proleptic Gregorian calendar, the same
+ * as {@link java.time.LocalDate#toEpochDay()}.
+ */
+public final class DateCodec {
+
+    /**
+     * Returned when the text is not a valid date, and used as "no date" in int date fields.
+     */
+    public static final int INVALID = Integer.MIN_VALUE;
+
+    public static final int LENGTH = 8;
+
+    // Days from 0000-03-01 to 1970-01-01, the calendar below counts years from March so the leap day comes last
+    private static final int EPOCH_SHIFT = 719_468;
+    private static final int DAYS_PER_400_YEARS = 146_097;
+
+    private static final int MIN_EPOCH_DAY = toEpochDay(1, 1, 1);
+    private static final int MAX_EPOCH_DAY = toEpochDay(9999, 12, 31);
+
+    private DateCodec() {
+
+    }
+
+    /**
+     * @return - The epoch day of the {@code yyyyMMdd} text, or {@link #INVALID}
+     */
+    public static int parse(CharSequence text) {
+        if (text.length() != LENGTH) {
+            return INVALID;
+        }
+        int value = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID;
+            }
+            value = value * 10 + digit;
+        }
+        return fromDigits(value);
+    }
+
+    /**
+     * Same as {@link #parse(CharSequence)}, reading the eight ASCII bytes from the offset.
+     */
+    public static int parse(byte[] bytes, int offset) {
+        if (offset < 0 || offset + LENGTH > bytes.length) {
+            return INVALID;
+        }
+        int value = 0;
+        for (int i = offset; i < offset + LENGTH; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID;
+            }
+            value = value * 10 + digit;
+        }
+        return fromDigits(value);
+    }
+
+    /**
+     * Writes the date as eight ASCII digits at the offset.
+     *
+     * @return - Offset after the date
+     */
+    public static int format(int epochDay, byte[] buffer, int offset) {
+        int value = toDigits(epochDay);
+        for (int i = offset + LENGTH - 1; i >= offset; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + LENGTH;
+    }
+
+    /**
+     * Appends the date as eight digits to the builder.
+     *
+     * @return - The builder
+     */
+    public static StringBuilder format(int epochDay, StringBuilder builder) {
+        int value = toDigits(epochDay);
+        for (int divisor = 10_000_000; divisor > 0; divisor /= 10) {
+            builder.append((char) ('0' + value / divisor % 10));
+        }
+        return builder;
+    }
+
+    /**
+     * @return - The date as {@code yyyyMMdd} text
+     */
+    public static String format(int epochDay) {
+        byte[] bytes = new byte[LENGTH];
+        format(epochDay, bytes, 0);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    public static int toEpochDay(int year, int month, int day) {
+        int marchYear = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(marchYear, 400);
+        int yearOfEra = marchYear - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * DAYS_PER_400_YEARS + dayOfEra - EPOCH_SHIFT;
+    }
+
+    /**
+     * @return - The date as the number yyyyMMdd, e.g. 20230626
+     */
+    public static int toDigits(int epochDay) {
+        if (epochDay < MIN_EPOCH_DAY || epochDay > MAX_EPOCH_DAY) {
+            throw new IllegalArgumentException("Epoch day out of the range of yyyyMMdd dates: " + epochDay);
+        }
+        int shifted = epochDay + EPOCH_SHIFT;
+        int era = Math.floorDiv(shifted, DAYS_PER_400_YEARS);
+        int dayOfEra = shifted - era * DAYS_PER_400_YEARS;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int marchMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * marchMonth + 2) / 5 + 1;
+        int month = marchMonth < 10 ? marchMonth + 3 : marchMonth - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 10_000 + month * 100 + day;
+    }
+
+    public static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    public static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int fromDigits(int value) {
+        int year = value / 10_000;
+        int month = value / 100 % 100;
+        int day = value % 100;
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            return INVALID;
+        }
+        return toEpochDay(year, month, day);
+    }
+}
@@ -0,0 +1,321 @@
+package main.util;
+
+import java.math.RoundingMode;
+
+/**
+ * Fixed point money arithmetic.
+ * <p>
+ * Amounts and balances are held as a {@code long} number of cents, and interest rates as a {@code long} number of parts
+ * per million (1% = 10,000 ppm), so postings and interest calculations are exact and never box.
+ * <p>
+ * Interest is accrued as balance x days x rate, kept with {@link #ACCRUAL_SCALE} decimal places of a cent, and only
+ * rounded to cents with {@link #INTEREST_ROUNDING} when the accrual is turned into an interest amount. Both can be
+ * configured with the {@code banking.interest.accrualScale} (0 to 6, defaults to 6 which is exact) and
+ * {@code banking.interest.rounding} (a {@link RoundingMode} name, defaults to HALF_UP) system properties.
+ */
+public final class Money {
+
+    public static final int CENTS_PER_UNIT = 100;
+    public static final long PPM_PER_PERCENT = 10_000L;
+    public static final RoundingMode AMOUNT_ROUNDING = RoundingMode.HALF_UP;
+    // Sign, 17 digits of units, point and two digits of cents
+    public static final int MAX_FORMATTED_LENGTH = 21;
+    // Rates are below 100%, so a month accrues less than 31 days x 1,000,000 ppm of a balance, and the accrual of any
+    // amount or balance up to this maximum fits in a long
+    public static final long MAX_AMOUNT = Long.MAX_VALUE / (31L * 100 * PPM_PER_PERCENT);
+
+    private static final int RATE_SCALE = 6;
+
+    public static final int ACCRUAL_SCALE = InterestSettings.accrualScale();
+    public static final long ACCRUAL_UNIT = pow10(ACCRUAL_SCALE);
+    public static final RoundingMode INTEREST_ROUNDING = InterestSettings.interestRounding();
+
+    private static final long ACCRUAL_DIVISOR = pow10(RATE_SCALE - ACCRUAL_SCALE);
+
+    private Money() {
+
+    }
+
+    /**
+     * Parses a decimal amount such as {@code 100}, {@code 100.5} or {@code -20.00} into cents. Digits beyond the cents
+     * are rounded with {@link #AMOUNT_ROUNDING}.
+     *
+     * @throws NumberFormatException - if the text is not a plain decimal number or is beyond {@link #MAX_AMOUNT}
+     */
+    public static long parse(CharSequence text) {
+        int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            i++;
+        }
+        long units = 0;
+        int digits = 0;
+        for (; i < length && text.charAt(i) != '.'; i++, digits++) {
+            units = appendDigit(units, text.charAt(i), text);
+        }
+        long cents = 0;
+        int fractionDigits = 0;
+        boolean roundUp = false;
+        if (i < length) {
+            for (i++; i < length; i++, digits++, fractionDigits++) {
+                int digit = digit(text.charAt(i), text);
+                if (fractionDigits < 2) {
+                    cents = cents * 10 + digit;
+                } else if (fractionDigits == 2) {
+                    roundUp = digit >= 5;
+                }
+            }
+        }
+        return toCents(units, cents, fractionDigits, roundUp, negative, digits, text);
+    }
+
+    /**
+     * Same as {@link #parse(CharSequence)}, reading the ASCII bytes {@code [from, to)} without allocating.
+     */
+    public static long parse(byte[] bytes, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (to > from && (bytes[from] == '-' || bytes[from] == '+')) {
+            negative = bytes[from] == '-';
+            i++;
+        }
+        long units = 0;
+        int digits = 0;
+        for (; i < to && bytes[i] != '.'; i++, digits++) {
+            units = appendDigit(units, (char) bytes[i], null);
+        }
+        long cents = 0;
+        int fractionDigits = 0;
+        boolean roundUp = false;
+        if (i < to) {
+            for (i++; i < to; i++, digits++, fractionDigits++) {
+                int digit = digit((char) bytes[i], null);
+                if (fractionDigits < 2) {
+                    cents = cents * 10 + digit;
+                } else if (fractionDigits == 2) {
+                    roundUp = digit >= 5;
+                }
+            }
+        }
+        return toCents(units, cents, fractionDigits, roundUp, negative, digits, null);
+    }
+
+    /**
+     * Formats cents as a decimal amount with two decimal places, e.g. {@code 13039} as {@code 130.39}.
+     */
+    public static String format(long cents) {
+        return appendTo(new StringBuilder(24), cents).toString();
+    }
+
+    /**
+     * Appends cents as a decimal amount with two decimal places, without any intermediate objects.
+     */
+    public static StringBuilder appendTo(StringBuilder builder, long cents) {
+        if (cents < 0) {
+            builder.append('-');
+        }
+        long fraction = fraction(cents);
+        return builder.append(units(cents)).append('.').append((char) ('0' + fraction / 10))
+                .append((char) ('0' + fraction % 10));
+    }
+
+    /**
+     * Writes cents as a decimal amount with two decimal places as ASCII bytes, the same text as {@link #format(long)}.
+     * The buffer needs room for {@link #MAX_FORMATTED_LENGTH} bytes.
+     *
+     * @return - Offset after the amount
+     */
+    public static int format(long cents, byte[] buffer, int offset) {
+        if (cents < 0) {
+            buffer[offset++] = '-';
+        }
+        long units = units(cents);
+        long fraction = fraction(cents);
+        int end = offset + digitCount(units);
+        for (int i = end - 1; i >= offset; i--) {
+            buffer[i] = (byte) ('0' + units % 10);
+            units /= 10;
+        }
+        buffer[end] = '.';
+        buffer[end + 1] = (byte) ('0' + fraction / 10);
+        buffer[end + 2] = (byte) ('0' + fraction % 10);
+        return end + 3;
+    }
+
+    /**
+     * @return - The whole units of the magnitude of cents. The magnitude is taken as unsigned, so that it does not
+     * overflow for {@link Long#MIN_VALUE}
+     */
+    private static long units(long cents) {
+        return Long.divideUnsigned(cents < 0 ? -cents : cents, CENTS_PER_UNIT);
+    }
+
+    private static long fraction(long cents) {
+        return Long.remainderUnsigned(cents < 0 ? -cents : cents, CENTS_PER_UNIT);
+    }
+
+    private static int digitCount(long value) {
+        int count = 1;
+        while (value >= 10) {
+            value /= 10;
+            count++;
+        }
+        return count;
+    }
+
+    public static double toDouble(long cents) {
+        return (double) cents / CENTS_PER_UNIT;
+    }
+
+    /**
+     * @return - The accrual of a balance over a number of days at a rate, i.e. balance x days x rate in cents, with
+     * {@link #ACCRUAL_SCALE} decimal places
+     */
+    public static long accrue(long balance, long days, long ratePpm) {
+        long accrual = Math.multiplyExact(Math.multiplyExact(balance, days), ratePpm);
+        return ACCRUAL_DIVISOR == 1 ? accrual : divide(accrual, ACCRUAL_DIVISOR, INTEREST_ROUNDING);
+    }
+
+    /**
+     * @return - The interest in cents for an accrual, paid out over a year of the given length
+     */
+    public static long accruedInterest(long accrual, int daysInYear) {
+        return divide(accrual, Math.multiplyExact(ACCRUAL_UNIT, daysInYear), INTEREST_ROUNDING);
+    }
+
+    /**
+     * Integer division with the given rounding, without going through {@link java.math.BigDecimal}.
+     */
+    public static long divide(long dividend, long divisor, RoundingMode roundingMode) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        int signum = (dividend < 0) == (divisor < 0) ? 1 : -1;
+        long absRemainder = Math.abs(remainder);
+        // Compares the remainder with half of the divisor, without overflowing
+        int half = Long.compare(absRemainder, Math.abs(divisor) - absRemainder);
+        boolean increment = switch (roundingMode) {
+            case UP -> true;
+            case DOWN -> false;
+            case CEILING -> signum > 0;
+            case FLOOR -> signum < 0;
+            case HALF_UP -> half >= 0;
+            case HALF_DOWN -> half > 0;
+            case HALF_EVEN -> half > 0 || (half == 0 && (quotient & 1) != 0);
+            case UNNECESSARY -> throw new ArithmeticException("Rounding necessary");
+        };
+        return increment ? quotient + signum : quotient;
+    }
+
+    private static long appendDigit(long value, char c, CharSequence text) {
+        int digit = digit(c, text);
+        if (value > (Long.MAX_VALUE - digit) / 10 / CENTS_PER_UNIT) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+        return value * 10 + digit;
+    }
+
+    private static int digit(char c, CharSequence text) {
+        if (c < '0' || c > '9') {
+            throw new NumberFormatException("Invalid amount: " + text);
+        }
+        return c - '0';
+    }
+
+    private static long toCents(long units, long cents, int fractionDigits, boolean roundUp, boolean negative,
+                                int digits, CharSequence text) {
+        if (digits == 0) {
+            throw new NumberFormatException("Invalid amount: " + text);
+        }
+        if (fractionDigits == 1) {
+            cents *= 10;
+        }
+        long value = units * CENTS_PER_UNIT + cents + (roundUp ? 1 : 0);
+        if (value > MAX_AMOUNT) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+        return negative ? -value : value;
+    }
+
+    private static long pow10(int exponent) {
+        if (exponent < 0 || exponent > RATE_SCALE) {
+            throw new IllegalArgumentException("Interest accrual scale must be between 0 and " + RATE_SCALE);
+        }
+        long value = 1;
+        for (int i = 0; i < exponent; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+
+    /**
+     * Reads the interest system properties. It is separate from {@link Money}, so that they can be checked at startup
+     * and an invalid value is reported as such, rather than as an error initializing {@link Money}.
+     */
+    public static final class InterestSettings {
+
+        public static final String ACCRUAL_SCALE_PROPERTY = "banking.interest.accrualScale";
+        public static final String ROUNDING_PROPERTY = "banking.interest.rounding";
+
+        private InterestSettings() {
+
+        }
+
+        /**
+         * @throws IllegalArgumentException - if either property has an invalid value
+         */
+        public static void validate() {
+            accrualScale();
+            interestRounding();
+        }
+
+        private static int accrualScale() {
+            return parseAccrualScale(System.getProperty(ACCRUAL_SCALE_PROPERTY, String.valueOf(RATE_SCALE)));
+        }
+
+        private static RoundingMode interestRounding() {
+            return parseInterestRounding(System.getProperty(ROUNDING_PROPERTY, RoundingMode.HALF_UP.name()));
+        }
+
+        /**
+         * @param value - Value of the {@code banking.interest.accrualScale} property
+         * @return - The number of decimal places of a cent interest is accrued with
+         * @throws IllegalArgumentException - if the value is not a number between 0 and 6
+         */
+        public static int parseAccrualScale(String value) {
+            try {
+                int scale = Integer.parseInt(value.trim());
+                if (scale >= 0 && scale <= RATE_SCALE) {
+                    return scale;
+                }
+            } catch (NumberFormatException e) {
+                // Reported below, along with the out of range values
+            }
+            throw new IllegalArgumentException("Invalid " + ACCRUAL_SCALE_PROPERTY + ": " + value
+                    + ". It must be a number of decimal places between 0 and " + RATE_SCALE + ".");
+        }
+
+        /**
+         * @param value - Value of the {@code banking.interest.rounding} property
+         * @return - The rounding of accrued interest to cents
+         * @throws IllegalArgumentException - if the value is not the name of a rounding mode that can round
+         */
+        public static RoundingMode parseInterestRounding(String value) {
+            RoundingMode roundingMode = null;
+            try {
+                roundingMode = RoundingMode.valueOf(value.trim());
+            } catch (IllegalArgumentException e) {
+                // Reported below, along with UNNECESSARY
+            }
+            if (roundingMode == null || roundingMode == RoundingMode.UNNECESSARY) {
+                throw new IllegalArgumentException("Invalid " + ROUNDING_PROPERTY + ": " + value
+                        + ". It must be one of UP, DOWN, CEILING, FLOOR, HALF_UP, HALF_DOWN or HALF_EVEN.");
+            }
+            return roundingMode;
+        }
+    }
+}
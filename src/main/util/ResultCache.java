@@ -0,0 +1,161 @@
+package main.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounded cache of computed results, each valid for one version of its inputs.
+ * <p>
+ * Every result is stored with a stamp, a number the caller derives from the inputs of the result and that changes
+ * whenever they change (e.g. the number of postings of a month). A lookup only hits if the stamp still matches, so a
+ * result is invalidated exactly when its own inputs change, without the writers having to know about the cache.
+ * <p>
+ * The cache is bounded by the total weight of its results, and evicts the least recently used ones first. Concurrent
+ * lookups of the same missing key are coalesced: one caller computes the result and the others wait for it.
+ */
+public final class ResultCache<K, V> {
+
+    private final long maxWeight;
+    private final ToLongFunction<? super V> weigher;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentMap<K, Flight<V>> flights = new ConcurrentHashMap<>();
+
+    private long weight;
+
+    /**
+     * @param maxWeight - Maximum total weight of the cached results
+     * @param weigher   - Weight of a result, e.g. 1 to bound the number of results or its size in bytes
+     */
+    public ResultCache(long maxWeight, ToLongFunction<? super V> weigher) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * @param stamp  - Version of the inputs the result must have been computed from
+     * @param loader - Computes the result if there is none for the stamp. Must read its inputs after the stamp was
+     *               taken, so a result is never older than its stamp.
+     * @return - The cached result for the key and stamp, or the result of the loader
+     */
+    public V get(K key, long stamp, Supplier<? extends V> loader) {
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.stamp == stamp) {
+                return entry.value;
+            }
+        }
+
+        Flight<V> flight = new Flight<>(stamp);
+        while (true) {
+            Flight<V> running = flights.putIfAbsent(key, flight);
+            if (running == null) {
+                break;
+            }
+            if (running.stamp == stamp) {
+                return running.await();
+            }
+            // The running computation is for other inputs, let it finish before computing this one
+            running.awaitQuietly();
+        }
+        try {
+            V value = loader.get();
+            put(key, stamp, value);
+            flight.result.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * Drops every cached result.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long weight() {
+        return weight;
+    }
+
+    private synchronized void put(K key, long stamp, V value) {
+        long valueWeight = weigher.applyAsLong(value);
+        Entry<V> previous = valueWeight > maxWeight ? entries.remove(key)
+                : entries.put(key, new Entry<>(value, stamp, valueWeight));
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+        if (valueWeight > maxWeight) {
+            return;
+        }
+        weight += valueWeight;
+        Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+        while (weight > maxWeight && eldest.hasNext()) {
+            weight -= eldest.next().getValue().weight;
+            eldest.remove();
+        }
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long stamp;
+        private final long weight;
+
+        private Entry(V value, long stamp, long weight) {
+            this.value = value;
+            this.stamp = stamp;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * A computation in progress, that callers asking for the same key and stamp wait for.
+     */
+    private static final class Flight<V> {
+
+        private final long stamp;
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+
+        private Flight(long stamp) {
+            this.stamp = stamp;
+        }
+
+        private V await() {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        private void awaitQuietly() {
+            try {
+                result.join();
+            } catch (CompletionException e) {
+                // Only waiting for the computation to finish, its caller handles the failure
+            }
+        }
+    }
+}
@@ -6,29 +6,37 @@ import java.text.ParseException;
 import java.time.LocalDate;
 import java.time.Month;
 import java.time.Year;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
 import java.util.function.Predicate;
 
+/**
+ * Date helpers over {@link DateCodec}, for callers that work with {@link LocalDate}.
+ */
 public class TimeUtils {
 
-    private static final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("yyyyMMdd");
+    /**
+     * @return - The epoch day of the {@code yyyyMMdd} date
+     * @throws ParseException - if the text is not a valid calendar date
+     */
+    public static int toEpochDay(CharSequence dateString) throws ParseException {
+        int epochDay = DateCodec.parse(dateString);
+        if (epochDay == DateCodec.INVALID) {
+            throw new ParseException("Invalid date: " + dateString, 0);
+        }
+        return epochDay;
+    }
 
     public static LocalDate toLocalDate(String dateString) throws ParseException {
-        return LocalDate.parse(dateString, dateTimeFormatter);
+        return LocalDate.ofEpochDay(toEpochDay(dateString));
     }
 
-    public static String toDateString(LocalDate date) throws ParseException {
-        return date.atStartOfDay().atZone(ZoneOffset.UTC).format(dateTimeFormatter);
+    public static String toDateString(LocalDate date) {
+        return DateCodec.format((int) date.toEpochDay());
     }
 
     public static Predicate<? super Transaction> getTransactionFilterPredicate(Month month) {
-        return txn -> {
-            LocalDate startDate = LocalDate.of(Year.now().getValue(), month.getValue(), 1);
-            LocalDate endDate = LocalDate.of(Year.now().getValue(), month.getValue(), startDate.lengthOfMonth());
-            return (txn.getDate().equals(endDate) || txn.getDate().isBefore(endDate))
-                    && (txn.getDate().equals(startDate) || txn.getDate().isAfter(startDate));
-        };
+        LocalDate startDate = LocalDate.of(Year.now().getValue(), month.getValue(), 1);
+        LocalDate endDate = startDate.withDayOfMonth(startDate.lengthOfMonth());
+        return txn -> !txn.getDate().isAfter(endDate) && !txn.getDate().isBefore(startDate);
     }
 
 }
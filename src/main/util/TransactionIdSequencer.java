@@ -0,0 +1,97 @@
+package main.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Hands out transaction id sequences, one running sequence per date shared by all accounts.
+ * <p>
+ * Every date has its own {@link AtomicInteger}, so postings on different dates never reset each other's sequence and
+ * concurrent postings only contend on a single atomic increment. Counters for recently used dates are cached in a
+ * small direct-mapped table, so the common path does not box the date or touch the map at all. Ids are kept as an
+ * epoch day and a sequence, and only formatted as {@code yyyyMMdd-NN} when they are displayed.
+ */
+public final class TransactionIdSequencer {
+
+    private static final TransactionIdSequencer INSTANCE = new TransactionIdSequencer();
+
+    private static final int CACHE_SIZE = 64;
+
+    private final ConcurrentMap<Integer, DayCounter> counters = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<DayCounter> recentCounters = new AtomicReferenceArray<>(CACHE_SIZE);
+
+    private TransactionIdSequencer() {
+
+    }
+
+    public static TransactionIdSequencer getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return - The next sequence for the date, starting at 1
+     */
+    public int next(int epochDay) {
+        return counterFor(epochDay).sequence.incrementAndGet();
+    }
+
+    /**
+     * Makes sure the sequence for the date continues after the given one, e.g. when transactions are restored.
+     */
+    public void advanceTo(int epochDay, int sequence) {
+        counterFor(epochDay).sequence.accumulateAndGet(sequence, Math::max);
+    }
+
+    /**
+     * @return - The last sequence handed out for the date, 0 if there is none
+     */
+    public int current(int epochDay) {
+        DayCounter counter = counters.get(epochDay);
+        return counter == null ? 0 : counter.sequence.get();
+    }
+
+    /**
+     * @return - The last sequence handed out for every date that has one, by epoch day
+     */
+    public Map<Integer, Integer> currentSequences() {
+        Map<Integer, Integer> sequences = new HashMap<>();
+        counters.forEach((epochDay, counter) -> sequences.put(epochDay, counter.sequence.get()));
+        return sequences;
+    }
+
+    /**
+     * @return - The transaction id for a date and sequence, e.g. {@code 20230626-01}
+     */
+    public static String format(int epochDay, int sequence) {
+        StringBuilder builder = new StringBuilder(12);
+        DateCodec.format(epochDay, builder).append('-');
+        if (sequence < 10) {
+            builder.append('0');
+        }
+        return builder.append(sequence).toString();
+    }
+
+    private DayCounter counterFor(int epochDay) {
+        int slot = epochDay & (CACHE_SIZE - 1);
+        DayCounter counter = recentCounters.get(slot);
+        if (counter == null || counter.epochDay != epochDay) {
+            // Only the counter held by the map is ever cached, so every thread increments the same counter for a date
+            counter = counters.computeIfAbsent(epochDay, DayCounter::new);
+            recentCounters.set(slot, counter);
+        }
+        return counter;
+    }
+
+    private static final class DayCounter {
+        private final int epochDay;
+        private final AtomicInteger sequence = new AtomicInteger();
+
+        private DayCounter(int epochDay) {
+            this.epochDay = epochDay;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package test.metrics;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import main.metrics.LatencyHistogram;
+import main.models.BankAccount;
+import main.models.InterestRule;
+import main.repository.BankDataStore;
+import main.service.statement.StatementService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void getPercentileNanos_RecordedLatencies_WithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 10_000; nanos++) {
+            histogram.record(nanos);
+        }
+
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(10_000, histogram.getMaxNanos());
+        assertEquals(50_005_000L, histogram.getTotalNanos());
+        assertEquals(5_000, histogram.getPercentileNanos(50.0), 5_000 / 8.0);
+        assertEquals(9_900, histogram.getPercentileNanos(99.0), 9_900 / 8.0);
+        assertEquals(10_000, histogram.getPercentileNanos(100.0));
+    }
+
+    @Test
+    void getPercentileNanos_SmallAndHugeLatencies_KeepsThemApart() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(3);
+        histogram.record(Long.MAX_VALUE / 2);
+
+        assertEquals(0, histogram.getPercentileNanos(10.0));
+        assertEquals(3, histogram.getPercentileNanos(50.0));
+        assertEquals(Long.MAX_VALUE / 2, histogram.getPercentileNanos(99.9));
+    }
+
+    @Test
+    void reset_AfterRecording_StartsFromScratch() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100);
+
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0, histogram.getPercentileNanos(99.0));
+    }
+
+    @Test
+    void events_WhileRecording_CarryAccountAndMonth() throws IOException, ParseException, NoSuchFieldException,
+            IllegalAccessException {
+        BankDataStore dataStore = BankDataStore.newInstance();
+        int year = Year.now().getValue();
+        dataStore.addInterestRule(new InterestRule(year + "0101", "RULE01", 1.0));
+        dataStore.addInterestRule(new InterestRule(year + "0615", "RULE02", 2.0));
+        StatementService statementService = StatementService.getInstance();
+        Field dataStoreField = StatementService.class.getDeclaredField("DATA_STORE");
+        dataStoreField.setAccessible(true);
+        dataStoreField.set(statementService, dataStore);
+
+        Path recordingFile = tempDir.resolve("banking.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("banking.Posting");
+            recording.enable("banking.Interest");
+            recording.start();
+            BankAccount bankAccount = dataStore.getOrCreateBankAccount("AC001");
+            bankAccount.deposit(year + "0601", 10000L, "D");
+            bankAccount.withdraw(year + "0610", 20000L);
+            bankAccount.withdraw(year + "0612", 2500L);
+            statementService.generateMonthlyInterestForAccount("AC001", Month.JUNE);
+            statementService.calculateInterestBetweenDates(LocalDate.of(year, 6, 1), LocalDate.of(year, 6, 30), 10000L,
+                    dataStore.getInterestRuleIndex());
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+        List<RecordedEvent> postings = events.stream()
+                .filter(event -> event.getEventType().getName().equals("banking.Posting")).toList();
+        assertEquals(3, postings.size());
+        assertEquals("AC001", postings.get(0).getString("account"));
+        assertEquals(10000L, postings.get(0).getLong("amount"));
+        assertEquals("POSTED", postings.get(0).getString("result"));
+        assertEquals("INSUFFICIENT_FUNDS", postings.get(1).getString("result"));
+
+        List<RecordedEvent> interest = events.stream()
+                .filter(event -> event.getEventType().getName().equals("banking.Interest")).toList();
+        assertEquals(2, interest.size());
+        RecordedEvent monthly = interest.get(0);
+        assertEquals("AC001", monthly.getString("account"));
+        assertEquals(year + "-06", monthly.getString("month"));
+        assertEquals(3, monthly.getInt("segments"));
+        assertEquals(2, monthly.getInt("rulesScanned"));
+        RecordedEvent period = interest.get(1);
+        assertNull(period.getString("account"));
+        assertEquals(1, period.getInt("segments"));
+        assertEquals(2, period.getInt("rulesScanned"));
+    }
+}
@@ -0,0 +1,162 @@
+package test.models;
+
+import main.models.BankAccount;
+import main.models.InterestRule;
+import main.models.PostingResult;
+import main.models.Transaction;
+import main.repository.BankDataStore;
+import main.util.Money;
+import org.junit.jupiter.api.Test;
+
+import java.text.ParseException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BankAccountTest {
+
+    @Test
+    void withdraw_InsufficientBalance_NotPosted() throws ParseException {
+        BankAccount bankAccount = new BankAccount("AC001");
+        bankAccount.deposit("20230601", 10000L, "D");
+
+        assertEquals(PostingResult.INSUFFICIENT_FUNDS, bankAccount.withdraw("20230602", 15000L));
+        assertEquals(10000L, bankAccount.getBalance());
+        assertEquals(1, bankAccount.getTransactions().size());
+    }
+
+    @Test
+    void deposit_BeforeLastUpdatedDate_NotPosted() throws ParseException {
+        BankAccount bankAccount = new BankAccount("AC001");
+        bankAccount.deposit("20230601", 10000L, "D");
+
+        assertEquals(PostingResult.BACKDATED, bankAccount.deposit("20230531", 5000L, "D"));
+        assertEquals(10000L, bankAccount.getBalance());
+    }
+
+    @Test
+    void deposit_BeyondMaximumBalance_NotPosted() throws ParseException {
+        BankDataStore dataStore = BankDataStore.newInstance();
+        dataStore.addInterestRule(new InterestRule("20230601", "RULE01", 99.99));
+        assertEquals(PostingResult.POSTED, dataStore.deposit("AC001", "20230601", Money.MAX_AMOUNT - 1L, "D"));
+        BankAccount bankAccount = dataStore.getBankAccount("AC001");
+
+        assertEquals(PostingResult.AMOUNT_TOO_LARGE, bankAccount.deposit("20230602", 2L, "D"));
+        assertEquals(Money.MAX_AMOUNT - 1L, bankAccount.getBalance());
+        assertEquals(1, bankAccount.getTransactionCount());
+        assertEquals(PostingResult.POSTED, bankAccount.deposit("20230602", 1L, "D"));
+        // The whole month at the maximum balance and nearly 100% still accrues without overflowing
+        assertTrue(bankAccount.getMonthlyAccrual(YearMonth.of(2023, 7)) > 0L);
+    }
+
+    @Test
+    void getTransactions_ForMonth_OnlyRowsOfTheMonth() throws ParseException {
+        BankAccount bankAccount = new BankAccount("AC001");
+        bankAccount.deposit("20230526", 10000L, "D");
+        bankAccount.deposit("20230601", 15000L, "D");
+        bankAccount.withdraw("20230626", 2000L);
+        bankAccount.deposit("20230703", 500L, "D");
+
+        List<Transaction> june = bankAccount.getTransactions(YearMonth.of(2023, 6));
+
+        assertEquals(2, june.size());
+        assertEquals("20230601", june.get(0).getDateString());
+        assertEquals("D", june.get(0).getType());
+        assertEquals(25000L, june.get(0).getBalance());
+        assertEquals("W", june.get(1).getType());
+        assertEquals(2000L, june.get(1).getAmount());
+        assertEquals("AC001", june.get(1).getAccount());
+        assertTrue(bankAccount.getTransactions(YearMonth.of(2023, 8)).isEmpty());
+        assertEquals(4, bankAccount.getTransactions().size());
+    }
+
+    @Test
+    void withdraw_ConcurrentWithdrawals_NeverOverdrawn() throws Exception {
+        BankAccount bankAccount = new BankAccount("AC001");
+        bankAccount.deposit("20230601", 1000L, "D");
+
+        // 8 threads try to withdraw 2000 in total from a balance of 1000
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            tasks.add(() -> {
+                int posted = 0;
+                for (int j = 0; j < 250; j++) {
+                    if (bankAccount.withdraw("20230602", 1L) == PostingResult.POSTED) {
+                        posted++;
+                    }
+                }
+                return posted;
+            });
+        }
+
+        int posted = 0;
+        for (Future<Integer> result : executor.invokeAll(tasks)) {
+            posted += result.get();
+        }
+        executor.shutdown();
+
+        assertEquals(1000, posted);
+        assertEquals(0L, bankAccount.getBalance());
+        assertEquals(1001, bankAccount.getTransactions().size());
+    }
+
+    @Test
+    void getMonthlyAccrual_EndOfDayBalances_AccruedAtDailyRates() throws ParseException {
+        BankDataStore dataStore = createStoreWithRules();
+        dataStore.deposit("AC001", "20230505", 10000L, "D");
+        dataStore.deposit("AC001", "20230601", 15000L, "D");
+        dataStore.withdrawIfSufficient("AC001", "20230626", 2000L);
+        dataStore.withdrawIfSufficient("AC001", "20230626", 10000L);
+        BankAccount bankAccount = dataStore.getBankAccount("AC001");
+
+        // 250.00 for 14 days at 1.90%, 250.00 for 11 days at 2.20% and 130.00 for 5 days at 2.20%
+        long accrual = bankAccount.getMonthlyAccrual(YearMonth.of(2023, 6));
+
+        assertEquals(25000L * 14 * 19000 + 25000L * 11 * 22000 + 13000L * 5 * 22000, accrual * (1_000_000L / Money.ACCRUAL_UNIT));
+        assertEquals(39L, Money.accruedInterest(accrual, 365));
+    }
+
+    @Test
+    void getMonthlyAccrual_RuleAddedLater_Reaccrued() throws ParseException {
+        BankDataStore dataStore = BankDataStore.newInstance();
+        dataStore.deposit("AC001", "20230601", 10000L, "D");
+        BankAccount bankAccount = dataStore.getBankAccount("AC001");
+        assertEquals(0L, bankAccount.getMonthlyAccrual(YearMonth.of(2023, 6)));
+
+        dataStore.addInterestRule(new InterestRule("20230611", "RULE01", 1.0));
+
+        assertEquals(10000L * 20 * 10000 / (1_000_000L / Money.ACCRUAL_UNIT), bankAccount.getMonthlyAccrual(YearMonth.of(2023, 6)));
+    }
+
+    @Test
+    void getMonthlyAccrual_InterestPosting_EarnsFromNextMonth() throws ParseException {
+        BankDataStore dataStore = createStoreWithRules();
+        dataStore.deposit("AC001", "20230601", 10000L, "D");
+        BankAccount bankAccount = dataStore.getBankAccount("AC001");
+        long juneAccrual = bankAccount.getMonthlyAccrual(YearMonth.of(2023, 6));
+
+        dataStore.deposit("AC001", "20230630", 20L, "I");
+        dataStore.deposit("AC001", "20230710", 1000L, "D");
+
+        assertEquals(juneAccrual, bankAccount.getMonthlyAccrual(YearMonth.of(2023, 6)));
+        assertEquals((10020L * 9 + 11020L * 22) * 22000 / (1_000_000L / Money.ACCRUAL_UNIT),
+                bankAccount.getMonthlyAccrual(YearMonth.of(2023, 7)));
+        // No postings in August, so the balance is carried through the whole month
+        assertEquals(11020L * 31 * 22000 / (1_000_000L / Money.ACCRUAL_UNIT), bankAccount.getMonthlyAccrual(YearMonth.of(2023, 8)));
+    }
+
+    private static BankDataStore createStoreWithRules() throws ParseException {
+        BankDataStore dataStore = BankDataStore.newInstance();
+        dataStore.addInterestRule(new InterestRule("20230101", "RULE01", 1.95));
+        dataStore.addInterestRule(new InterestRule("20230520", "RULE02", 1.90));
+        dataStore.addInterestRule(new InterestRule("20230615", "RULE03", 2.20));
+        return dataStore;
+    }
+}
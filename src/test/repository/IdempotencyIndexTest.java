@@ -0,0 +1,116 @@
+package test.repository;
+
+import main.models.Transaction;
+import main.repository.IdempotencyIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdempotencyIndexTest {
+
+    private static final long WINDOW = 600L;
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void claim_SameContentOrKey_RejectsReplay() {
+        IdempotencyIndex index = new IdempotencyIndex(WINDOW, 1000, clock::get);
+
+        assertTrue(index.claim("AC001", 19509, Transaction.DEPOSIT, 100L, null));
+        assertFalse(index.claim("AC001", 19509, Transaction.DEPOSIT, 100L, null));
+        assertTrue(index.claim("AC001", 19509, Transaction.WITHDRAWAL, 100L, null));
+        assertTrue(index.claim("AC002", 19509, Transaction.DEPOSIT, 100L, null));
+        // A key tells apart postings of the same content, and a replay of it is rejected whatever its content
+        assertTrue(index.claim("AC001", 19509, Transaction.DEPOSIT, 100L, "payment-1"));
+        assertTrue(index.claim("AC001", 19509, Transaction.DEPOSIT, 100L, "payment-2"));
+        assertFalse(index.claim("AC001", 19510, Transaction.DEPOSIT, 200L, "payment-1"));
+        assertTrue(index.claim("AC002", 19509, Transaction.DEPOSIT, 100L, "payment-1"));
+    }
+
+    @Test
+    void claim_AfterWindow_AcceptsPostingAgain() {
+        IdempotencyIndex index = new IdempotencyIndex(WINDOW, 1000, clock::get);
+        assertTrue(index.claim("AC001", 19509, Transaction.DEPOSIT, 100L, null));
+
+        // Kept over older generations for the whole window
+        for (long time = 100L; time < WINDOW; time += 100L) {
+            clock.set(time);
+            assertTrue(index.claim("AC" + time, 19509, Transaction.DEPOSIT, 100L, null));
+            assertFalse(index.claim("AC001", 19509, Transaction.DEPOSIT, 100L, null));
+        }
+        clock.set(WINDOW + 300L);
+        assertTrue(index.claim("AC001", 19509, Transaction.DEPOSIT, 100L, null));
+        // After a long pause every generation is out of the window
+        clock.set(10 * WINDOW);
+        assertTrue(index.claim("AC001", 19509, Transaction.DEPOSIT, 100L, null));
+        assertEquals(1L, index.size());
+    }
+
+    @Test
+    void release_ClaimedPosting_AcceptsRetry() {
+        IdempotencyIndex index = new IdempotencyIndex(WINDOW, 1000, clock::get);
+        assertTrue(index.claim("AC001", 19509, Transaction.WITHDRAWAL, 100L, "payment-1"));
+
+        index.release("AC001", 19509, Transaction.WITHDRAWAL, 100L, "payment-1");
+
+        assertTrue(index.claim("AC001", 19509, Transaction.WITHDRAWAL, 100L, "payment-1"));
+    }
+
+    @Test
+    void claim_MoreKeysThanMaximum_StaysBounded() {
+        IdempotencyIndex index = new IdempotencyIndex(WINDOW, 1000, clock::get);
+
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(index.claim("AC001", 19509, Transaction.DEPOSIT, i + 1L, null));
+        }
+
+        assertTrue(index.size() <= 1000L);
+        assertFalse(index.claim("AC001", 19509, Transaction.DEPOSIT, 100_000L, null));
+    }
+
+    @Test
+    void claim_DisabledWindow_AcceptsEveryPosting() {
+        IdempotencyIndex index = new IdempotencyIndex(0L, 1000, clock::get);
+
+        assertTrue(index.claim("AC001", 19509, Transaction.DEPOSIT, 100L, null));
+        assertTrue(index.claim("AC001", 19509, Transaction.DEPOSIT, 100L, null));
+        assertEquals(0L, index.size());
+    }
+
+    @Test
+    void claim_ConcurrentReplaysWhileRotating_AcceptsEachPostingOnce() throws Exception {
+        // Every claim moves the clock on, so generations rotate while the threads claim
+        IdempotencyIndex index = new IdempotencyIndex(1_000_000L, 1 << 20, clock::incrementAndGet);
+        int threads = 4;
+        int postings = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> accepted = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                accepted.add(executor.submit(() -> {
+                    int count = 0;
+                    for (int i = 0; i < postings; i++) {
+                        if (index.claim("AC" + (i % 100), 19509, Transaction.DEPOSIT, i, null)) {
+                            count++;
+                        }
+                    }
+                    return count;
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> future : accepted) {
+                total += future.get();
+            }
+            assertEquals(postings, total);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
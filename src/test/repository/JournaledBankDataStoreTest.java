@@ -0,0 +1,159 @@
+package test.repository;
+
+import main.exceptions.InvalidInputException;
+import main.models.BankAccount;
+import main.models.InterestRule;
+import main.models.PostingResult;
+import main.models.Transaction;
+import main.repository.BankDataStore;
+import main.repository.JournaledBankDataStore;
+import main.repository.PostingJournal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournaledBankDataStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void open_AfterChanges_RestoresSameState() throws IOException, ParseException {
+        Path journal = tempDir.resolve("bank.journal");
+        try (JournaledBankDataStore store = JournaledBankDataStore.open(journal, BankDataStore.newInstance())) {
+            store.addInterestRule(new InterestRule("20230601", "RULE01", 2.2));
+            store.deposit("AC001", "20230601", 15000L, "D");
+            store.batch(() -> {
+                store.deposit("AC002", "20230601", 500L, "D");
+                store.withdrawIfSufficient("AC001", "20230605", 2500L);
+            });
+            assertEquals(PostingResult.INSUFFICIENT_FUNDS, store.withdrawIfSufficient("AC002", "20230606", 900L));
+        }
+
+        try (JournaledBankDataStore restored = JournaledBankDataStore.open(journal, BankDataStore.newInstance())) {
+            assertEquals(1, restored.getAllInterestRules().size());
+            assertEquals(22000L, restored.getAllInterestRules().get(0).getRatePpm());
+
+            BankAccount account = restored.getBankAccount("AC001");
+            assertEquals(12500L, account.getBalance());
+            List<Transaction> transactions = account.getTransactions();
+            assertEquals(2, transactions.size());
+            assertEquals("W", transactions.get(1).getType());
+            assertEquals(12500L, transactions.get(1).getBalance());
+            assertEquals(500L, restored.getBankAccount("AC002").getBalance());
+            assertEquals(1, restored.getBankAccount("AC002").getTransactions().size());
+        }
+    }
+
+    @Test
+    void open_TornTail_ReplaysIntactRecordsAndAppendsAfterThem() throws IOException, ParseException {
+        Path journal = tempDir.resolve("bank.journal");
+        long intactSize;
+        try (JournaledBankDataStore store = JournaledBankDataStore.open(journal, BankDataStore.newInstance())) {
+            store.deposit("AC001", "20230601", 15000L, "D");
+            intactSize = store.getJournalPosition();
+            store.deposit("AC001", "20230602", 1000L, "D");
+        }
+        // Simulate a crash in the middle of writing the last record
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (JournaledBankDataStore restored = JournaledBankDataStore.open(journal, BankDataStore.newInstance())) {
+            assertEquals(intactSize, restored.getJournalPosition());
+            assertEquals(15000L, restored.getBankAccount("AC001").getBalance());
+            restored.deposit("AC001", "20230603", 2000L, "D");
+        }
+
+        try (JournaledBankDataStore restored = JournaledBankDataStore.open(journal, BankDataStore.newInstance())) {
+            assertEquals(17000L, restored.getBankAccount("AC001").getBalance());
+            assertEquals(2, restored.getBankAccount("AC001").getTransactions().size());
+        }
+    }
+
+    @Test
+    void open_CorruptRecordBeforeOthers_FailsWithoutTruncating() throws IOException, ParseException {
+        Path journal = tempDir.resolve("bank.journal");
+        long corruptPosition;
+        try (JournaledBankDataStore store = JournaledBankDataStore.open(journal, BankDataStore.newInstance())) {
+            store.deposit("AC001", "20230601", 15000L, "D");
+            corruptPosition = store.getJournalPosition();
+            store.deposit("AC001", "20230602", 1000L, "D");
+            store.deposit("AC001", "20230603", 2000L, "D");
+        }
+        long size;
+        // Flip the last byte of the payload of the second posting, i.e. its sequence
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(4);
+            channel.read(header, corruptPosition);
+            long lastPayloadByte = corruptPosition + 8 + header.getInt(0) - 1;
+            ByteBuffer payloadByte = ByteBuffer.allocate(1);
+            channel.read(payloadByte, lastPayloadByte);
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) ~payloadByte.get(0)}), lastPayloadByte);
+        }
+
+        IOException e = assertThrows(IOException.class,
+                () -> JournaledBankDataStore.open(journal, BankDataStore.newInstance()));
+        assertTrue(e.getMessage().contains("position " + corruptPosition));
+        assertEquals(size, Files.size(journal));
+    }
+
+    @Test
+    void getOrCreateBankAccount_IdTooLongForJournal_ThrowsInvalidInput() throws IOException, ParseException {
+        Path journal = tempDir.resolve("bank.journal");
+        String longId = "A".repeat(PostingJournal.MAX_ID_BYTES + 1);
+        try (JournaledBankDataStore store = JournaledBankDataStore.open(journal, BankDataStore.newInstance())) {
+            assertThrows(InvalidInputException.class, () -> store.deposit(longId, "20230601", 15000L, "D"));
+            assertThrows(InvalidInputException.class,
+                    () -> store.addInterestRule(new InterestRule("20230601", longId, 2.2)));
+            store.deposit("A".repeat(PostingJournal.MAX_ID_BYTES), "20230601", 15000L, "D");
+        }
+
+        try (JournaledBankDataStore restored = JournaledBankDataStore.open(journal, BankDataStore.newInstance())) {
+            assertNull(restored.getBankAccount(longId));
+            assertTrue(restored.getAllInterestRules().isEmpty());
+            assertEquals(15000L, restored.getBankAccount("A".repeat(PostingJournal.MAX_ID_BYTES)).getBalance());
+        }
+    }
+
+    @Test
+    void open_WithSnapshot_LoadsHistoryLazilyAndReplaysTail() throws IOException, ParseException {
+        Path journal = tempDir.resolve("bank.journal");
+        Path snapshot = tempDir.resolve("bank.journal.snapshot");
+        List<String> transactionIds;
+        try (JournaledBankDataStore store = JournaledBankDataStore.open(journal, snapshot, BankDataStore.newInstance())) {
+            store.addInterestRule(new InterestRule("20230601", "RULE01", 2.2));
+            store.deposit("AC001", "20230601", 15000L, "D");
+            store.deposit("AC002", "20230601", 500L, "D");
+            store.snapshot();
+            store.withdrawIfSufficient("AC001", "20230605", 2500L);
+            transactionIds = store.getBankAccount("AC001").getTransactions().stream()
+                    .map(Transaction::getTransactionId).toList();
+        }
+
+        try (JournaledBankDataStore restored = JournaledBankDataStore.open(journal, snapshot, BankDataStore.newInstance())) {
+            BankAccount untouched = restored.getBankAccount("AC002");
+            assertNotNull(untouched.getPendingHistory());
+            assertEquals(500L, untouched.getBalance());
+            assertEquals(1, untouched.getTransactionCount());
+            assertEquals(500L, untouched.getTransactions().get(0).getBalance());
+            assertNull(untouched.getPendingHistory());
+
+            BankAccount account = restored.getBankAccount("AC001");
+            assertEquals(12500L, account.getBalance());
+            assertEquals(transactionIds, account.getTransactions().stream().map(Transaction::getTransactionId).toList());
+            assertEquals(1, restored.getAllInterestRules().size());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package test.repository;
+
+import main.models.BankAccount;
+import main.models.InterestRule;
+import main.models.Transaction;
+import main.models.TransactionLog;
+import main.repository.BankDataStore;
+import main.repository.MappedTransactionArchive;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedTransactionArchiveTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void archive_RowsOfLog_ReadBackUnchanged() throws IOException {
+        TransactionLog log = new TransactionLog();
+        TransactionLog expected = new TransactionLog();
+        Random random = new Random(42);
+        long balance = 0L;
+        int epochDay = 19000;
+        for (int row = 0; row < 1000; row++) {
+            epochDay += random.nextInt(3);
+            byte type = row % 7 == 0 ? Transaction.WITHDRAWAL : row % 31 == 0 ? Transaction.INTEREST : Transaction.DEPOSIT;
+            long amount = 1 + random.nextInt(1_000_000);
+            // Now and then a balance that does not follow from the amount, e.g. as restored from a journal
+            balance += type == Transaction.WITHDRAWAL ? -amount : amount + (row % 97 == 0 ? Long.MAX_VALUE / 4 : 0);
+            int sequence = random.nextInt(150);
+            log.append(epochDay, type, amount, balance, sequence);
+            expected.append(epochDay, type, amount, balance, sequence);
+        }
+
+        try (MappedTransactionArchive archive = MappedTransactionArchive.create(tempDir.resolve("bank.archive"))) {
+            assertEquals(700, log.archive(700, archive));
+            assertEquals(0, log.archive(500, archive));
+            assertEquals(250, log.archive(950, archive));
+            log.append(epochDay + 1, Transaction.DEPOSIT, 5L, balance + 5, 1);
+            expected.append(epochDay + 1, Transaction.DEPOSIT, 5L, balance + 5, 1);
+
+            assertEquals(950, log.getArchivedSize());
+            assertEquals(expected.size(), log.size());
+            assertTrue(archive.getArchivedBytes() < 950 * 25 / 2);
+            // Read backwards, so every block is decoded again
+            for (int row = expected.size() - 1; row >= 0; row--) {
+                assertEquals(expected.getEpochDay(row), log.getEpochDay(row));
+                assertEquals(expected.getType(row), log.getType(row));
+                assertEquals(expected.getAmount(row), log.getAmount(row));
+                assertEquals(expected.getBalance(row), log.getBalance(row));
+                assertEquals(expected.getSequence(row), log.getSequence(row));
+            }
+            for (int day = 18990; day <= epochDay + 2; day++) {
+                assertEquals(expected.firstRowOnOrAfter(day), log.firstRowOnOrAfter(day));
+            }
+        }
+    }
+
+    @Test
+    void archiveThrough_ClosedMonths_StatementsAndInterestUnchanged() throws IOException, ParseException {
+        BankDataStore dataStore = BankDataStore.newInstance();
+        dataStore.addInterestRule(new InterestRule("20230101", "RULE01", 1.95));
+        dataStore.addInterestRule(new InterestRule("20230615", "RULE02", 2.20));
+        BankAccount account = dataStore.getOrCreateBankAccount("AC001");
+        for (int month = 1; month <= 8; month++) {
+            for (int day = 1; day <= 28; day += 3) {
+                account.deposit(String.format("2023%02d%02d", month, day), 1000L + day, "D");
+                account.withdraw(String.format("2023%02d%02d", month, day), 300L);
+            }
+        }
+        YearMonth june = YearMonth.of(2023, 6);
+        long juneAccrual = account.getMonthlyAccrual(june);
+        long augustAccrual = account.getMonthlyAccrual(YearMonth.of(2023, 8));
+        List<String> juneIds = account.getTransactions(june).stream().map(Transaction::getTransactionId).toList();
+
+        try (MappedTransactionArchive archive = MappedTransactionArchive.create(tempDir.resolve("bank.archive"))) {
+            assertEquals(120, account.archiveThrough(june, archive));
+
+            assertEquals(120, account.getTransactionLog().getArchivedSize());
+            assertEquals(juneIds, account.getTransactions(june).stream().map(Transaction::getTransactionId).toList());
+            // A rule change makes the accruals replay over the archived rows
+            dataStore.addInterestRule(new InterestRule("20230101", "RULE01", 1.95));
+            assertEquals(juneAccrual, account.getMonthlyAccrual(june));
+            assertEquals(augustAccrual, account.getMonthlyAccrual(YearMonth.of(2023, 8)));
+            account.deposit("20230901", 100L, "D");
+            assertEquals(161, account.getTransactions().size());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package test.repository;
+
+import main.models.BankAccount;
+import main.models.PostingResult;
+import main.models.Transaction;
+import main.repository.BankDataStore;
+import main.repository.BankDataStoreI;
+import main.repository.JournaledBankDataStore;
+import main.repository.ShardedBankDataStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedBankDataStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void depositAsync_ManyAccounts_AppliesPostingsInQueuedOrder() throws ParseException {
+        try (ShardedBankDataStore store = new ShardedBankDataStore(BankDataStore.newInstance(), 4, 8)) {
+            List<CompletableFuture<PostingResult>> results = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                String account = "AC" + (i % 10);
+                results.add(store.depositAsync(account, "20230601", 100L, "D"));
+                results.add(store.withdrawIfSufficientAsync(account, "20230601", 150L));
+            }
+            // Every account gets a deposit of 100 and a withdrawal of 150 in turn, so one in three withdrawals is short
+            for (int i = 0; i < results.size(); i += 2) {
+                assertEquals(PostingResult.POSTED, results.get(i).join());
+            }
+            for (int i = 0; i < 10; i++) {
+                BankAccount account = store.getBankAccount("AC" + i);
+                assertEquals(100L, account.getBalance());
+                List<Transaction> transactions = account.getTransactions();
+                assertEquals(166, transactions.size());
+                assertEquals("D", transactions.get(0).getType());
+            }
+            assertEquals(PostingResult.INSUFFICIENT_FUNDS, results.get(1).join());
+            assertEquals(PostingResult.POSTED, results.get(21).join());
+            assertEquals(PostingResult.POSTED, store.withdrawIfSufficient("AC0", "20230603", 100L));
+            assertEquals(0L, store.getBankAccount("AC0").getBalance());
+        }
+    }
+
+    @Test
+    void deposit_InvalidDate_ThrowsParseException() {
+        try (ShardedBankDataStore store = new ShardedBankDataStore(BankDataStore.newInstance(), 2, 4)) {
+            assertThrows(ParseException.class, () -> store.deposit("AC001", "2023-06-01", 100L, "D"));
+        }
+    }
+
+    @Test
+    void submit_FullQueue_BlocksCallerUntilShardCatchesUp() throws InterruptedException {
+        try (ShardedBankDataStore store = new ShardedBankDataStore(BankDataStore.newInstance(), 1, 1)) {
+            CountDownLatch release = new CountDownLatch(1);
+            store.submit("AC001", () -> {
+                release.await();
+                return null;
+            });
+            // Fills the queue behind the running task, so the next one has to wait for a free slot
+            store.depositAsync("AC001", "20230601", 100L, "D");
+            Thread producer = new Thread(() -> store.depositAsync("AC001", "20230602", 100L, "D"));
+            producer.start();
+            producer.join(200);
+            assertTrue(producer.isAlive());
+
+            release.countDown();
+            producer.join();
+            store.batch(() -> { });
+            assertEquals(200L, store.getBankAccount("AC001").getBalance());
+        }
+    }
+
+    @Test
+    void deposit_WhileHoldingAccountLock_PostsInPlace() throws ParseException {
+        try (ShardedBankDataStore store = new ShardedBankDataStore(BankDataStore.newInstance(), 2, 4)) {
+            BankAccount account = store.getOrCreateBankAccount("AC001");
+            account.lock();
+            try {
+                // Queuing would wait on the worker, which waits on the lock held here
+                assertEquals(PostingResult.POSTED, store.deposit("AC001", "20230630", 39L, "I"));
+            } finally {
+                account.unlock();
+            }
+            assertEquals(39L, account.getBalance());
+        }
+    }
+
+    @Test
+    void batch_JournaledStore_DurableOnceAllShardsApplied() throws IOException, ParseException {
+        Path journal = tempDir.resolve("bank.journal");
+        try (JournaledBankDataStore journaled = JournaledBankDataStore.open(journal, BankDataStore.newInstance());
+             ShardedBankDataStore store = new ShardedBankDataStore(journaled, 3, 16)) {
+            store.batch(() -> {
+                for (int i = 0; i < 30; i++) {
+                    store.depositAsync("AC" + i, "20230601", 100L + i, "D");
+                }
+            });
+        }
+
+        try (JournaledBankDataStore restored = JournaledBankDataStore.open(journal, BankDataStore.newInstance())) {
+            for (int i = 0; i < 30; i++) {
+                assertEquals(100L + i, restored.getBankAccount("AC" + i).getBalance());
+            }
+        }
+    }
+
+    @Test
+    void depositAsync_AfterClose_Fails() {
+        BankDataStoreI delegate = BankDataStore.newInstance();
+        ShardedBankDataStore store = new ShardedBankDataStore(delegate, 2, 4);
+        CompletableFuture<PostingResult> queued = store.depositAsync("AC001", "20230601", 100L, "D");
+        store.close();
+
+        assertEquals(PostingResult.POSTED, queued.join());
+        CompletionException thrown = assertThrows(CompletionException.class,
+                () -> store.depositAsync("AC001", "20230602", 100L, "D").join());
+        assertInstanceOf(IllegalStateException.class, thrown.getCause());
+        assertEquals(100L, delegate.getBankAccount("AC001").getBalance());
+    }
+}
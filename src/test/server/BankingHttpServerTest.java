@@ -0,0 +1,191 @@
+package test.server;
+
+import main.repository.BankDataStore;
+import main.repository.BankDataStoreI;
+import main.repository.JournaledBankDataStore;
+import main.server.BankingHttpServer;
+import main.service.importer.TransactionImportService;
+import main.service.ledger.LedgerService;
+import main.service.query.AccountQueryService;
+import main.service.statement.StatementService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BankingHttpServerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private BankingHttpServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void setUp() throws IOException, NoSuchFieldException, IllegalAccessException {
+        server = BankingHttpServer.start(new InetSocketAddress("127.0.0.1", 0));
+        client = HttpClient.newHttpClient();
+        useDataStore(BankDataStore.newInstance());
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void postTransactions_WithInvalidLine_AppliesValidLinesAndReportsRejected() throws Exception {
+        HttpResponse<String> response = post("/transactions",
+                "20230601|AC001|D|100.00\n20230602|AC001|W|250.00\n20230603|AC001|W|20.50\n");
+
+        assertEquals(200, response.statusCode());
+        String[] lines = response.body().split("\n");
+        assertEquals("2|1", lines[0]);
+        assertEquals(2, lines.length);
+        assertTrue(lines[1].startsWith("2|"));
+
+        HttpResponse<String> statement = get("/statements/AC001?layout=csv");
+        assertEquals(200, statement.statusCode());
+        assertTrue(statement.body().contains("79.50"));
+    }
+
+    @Test
+    void postInterestRules_WithInvalidRate_DefinesNoRule() throws Exception {
+        HttpResponse<String> response = post("/interest-rules", "20230601|RULE01|1.95\n20230615|RULE02|120\n");
+
+        assertEquals(400, response.statusCode());
+        assertEquals("", get("/interest-rules").body());
+
+        assertEquals("2\n", post("/interest-rules", "20230601|RULE01|1.95\n20230615|RULE02|2.20\n").body());
+        assertEquals("20230601|RULE01|1.95\n20230615|RULE02|2.20\n", get("/interest-rules").body());
+    }
+
+    @Test
+    void getStatement_UnknownAccount_Returns404() throws Exception {
+        assertEquals(404, get("/statements/UNKNOWN").statusCode());
+        assertEquals(404, get("/interest/UNKNOWN?month=6").statusCode());
+    }
+
+    @Test
+    void getStatement_InvalidLayout_Returns400() throws Exception {
+        post("/transactions", "20230601|AC001|D|100.00\n");
+
+        assertEquals(400, get("/statements/AC001?layout=pdf").statusCode());
+        assertEquals(400, get("/interest/AC001?month=13").statusCode());
+    }
+
+    @Test
+    void getBalances_ReturnsBalanceAsOfDateAndDailySummary() throws Exception {
+        post("/transactions", "20230601|AC001|D|100.00\n20230611|AC001|W|40.00\n");
+
+        assertEquals("100.00\n", get("/balances/AC001?date=20230610").body());
+        assertEquals("60.00\n", get("/balances/AC001?date=20230611").body());
+        assertEquals("60.00|100.00|80.00\n", get("/balances/AC001?from=20230601&to=20230620").body());
+        assertEquals(400, get("/balances/AC001?date=20230631").statusCode());
+        assertEquals(400, get("/balances/AC001?from=20230620&to=20230601").statusCode());
+        assertEquals(404, get("/balances/UNKNOWN?date=20230601").statusCode());
+    }
+
+    @Test
+    void getLedger_ReturnsDailyAndMonthlyTotals() throws Exception {
+        int year = Year.now().getValue();
+        post("/transactions", year + "0601|AC001|D|100.00\n" + year + "0601|AC002|D|50.00\n"
+                + year + "0602|AC001|W|40.00\n");
+
+        assertEquals(year + "0601|150.00|0.00|0.00|150.00\n" + year + "0602|0.00|40.00|0.00|-40.00\n",
+                get("/ledger?from=" + year + "0601&to=" + year + "0602").body());
+        assertEquals(year + "-06|150.00|40.00|0.00|110.00\n", get("/ledger?month=6").body());
+        assertEquals(400, get("/ledger?from=" + year + "0602&to=" + year + "0601").statusCode());
+    }
+
+    @Test
+    void postTransactions_Replayed_RejectsDuplicates() throws Exception {
+        BankDataStore store = BankDataStore.newInstance();
+        useDataStore(store);
+        String body = "20230601|AC001|D|100.00|payment-1\n20230601|AC001|D|100.00|payment-2\n";
+
+        assertEquals("2|0\n", post("/transactions", body).body());
+        HttpResponse<String> replay = post("/transactions", body + "20230601|AC001|D|100.00|payment-3\n");
+
+        assertEquals("1|2\n1|Duplicate transaction. It was already posted.|20230601|AC001|D|100.00|payment-1\n"
+                + "2|Duplicate transaction. It was already posted.|20230601|AC001|D|100.00|payment-2\n", replay.body());
+        assertEquals(30000L, store.getBankAccount("AC001").getBalance());
+    }
+
+    @Test
+    void postTransactions_WithGet_Returns405() throws Exception {
+        HttpResponse<String> response = get("/transactions");
+
+        assertEquals(405, response.statusCode());
+        assertEquals("POST", response.headers().firstValue("Allow").orElse(null));
+    }
+
+    @Test
+    void postTransactions_ConcurrentClientsOnJournal_PostsEveryTransaction() throws Exception {
+        try (JournaledBankDataStore store = JournaledBankDataStore.open(tempDir.resolve("bank.journal"),
+                BankDataStore.newInstance())) {
+            useDataStore(store);
+            int requests = 500;
+            List<Future<HttpResponse<String>>> responses = new ArrayList<>();
+            try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < requests; i++) {
+                    // Opens new accounts as well as posting to existing ones. Same lines are told apart by their keys
+                    String body = "20230601|AC" + (i % 100) + "|D|1.00|request-" + i + "\n";
+                    responses.add(clients.submit(() -> post("/transactions", body)));
+                }
+            }
+
+            for (Future<HttpResponse<String>> response : responses) {
+                assertEquals("1|0\n", response.get().body());
+            }
+            assertEquals(100, store.getAllBankAccounts().size());
+            assertEquals(500L, store.getBankAccount("AC0").getBalance());
+        }
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(uri(path)).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(String path, String body) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(uri(path)).POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    // Using reflection here to point the server and the services it calls at the given store
+    private void useDataStore(BankDataStoreI dataStore) throws NoSuchFieldException, IllegalAccessException {
+        setDataStore(BankingHttpServer.class, server, dataStore);
+        setDataStore(StatementService.class, StatementService.getInstance(), dataStore);
+        setDataStore(TransactionImportService.class, TransactionImportService.getInstance(), dataStore);
+        setDataStore(AccountQueryService.class, AccountQueryService.getInstance(), dataStore);
+        setDataStore(LedgerService.class, LedgerService.getInstance(), dataStore);
+    }
+
+    private static void setDataStore(Class<?> type, Object target, BankDataStoreI dataStore)
+            throws NoSuchFieldException, IllegalAccessException {
+        Field dataStoreField = type.getDeclaredField("DATA_STORE");
+        dataStoreField.setAccessible(true);
+        dataStoreField.set(target, dataStore);
+    }
+}
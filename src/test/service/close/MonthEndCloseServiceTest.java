@@ -0,0 +1,135 @@
+package test.service.close;
+
+import main.models.BankAccount;
+import main.models.Transaction;
+import main.repository.BankDataStore;
+import main.repository.MappedTransactionArchive;
+import main.service.close.CloseSummary;
+import main.service.close.MonthEndCloseService;
+import main.service.statement.StatementServiceI;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Month;
+import java.time.Year;
+import java.time.YearMonth;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+public class MonthEndCloseServiceTest {
+
+    private static final int ACCOUNTS = 50;
+
+    private MonthEndCloseService closeService;
+    private BankDataStore dataStore;
+    private AutoCloseable mocks;
+
+    @Mock
+    private StatementServiceI statementService;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws NoSuchFieldException, IllegalAccessException, ParseException {
+        mocks = MockitoAnnotations.openMocks(this);
+        closeService = MonthEndCloseService.getInstance();
+        dataStore = BankDataStore.newInstance();
+
+        // Using reflection here to set the package-private DATA_STORE and STATEMENT_SERVICE fields
+        Field dataStoreField = MonthEndCloseService.class.getDeclaredField("DATA_STORE");
+        dataStoreField.setAccessible(true);
+        dataStoreField.set(closeService, dataStore);
+        Field statementServiceField = MonthEndCloseService.class.getDeclaredField("STATEMENT_SERVICE");
+        statementServiceField.setAccessible(true);
+        statementServiceField.set(closeService, statementService);
+
+        String june = Year.now().getValue() + "0601";
+        for (int i = 0; i < ACCOUNTS; i++) {
+            dataStore.deposit("AC" + i, june, 10000L, "D");
+        }
+        when(statementService.generateMonthlyInterestForAccount(anyString(), eq(Month.JUNE))).thenReturn(39L);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mocks.close();
+    }
+
+    @Test
+    void closeMonth_AllAccounts_PostsInterestOnce() throws IOException {
+        Path checkpoint = tempDir.resolve("close.checkpoint");
+
+        CloseSummary summary = closeService.closeMonth(Month.JUNE, checkpoint);
+
+        assertEquals(ACCOUNTS, summary.getAccounts());
+        assertEquals(ACCOUNTS, summary.getPosted());
+        assertEquals(0, summary.getFailed());
+        for (BankAccount account : dataStore.getAllBankAccounts()) {
+            Transaction interest = account.getLastTransaction();
+            assertEquals("I", interest.getType());
+            assertEquals(YearMonth.of(Year.now().getValue(), Month.JUNE).atEndOfMonth(), interest.getDate());
+            assertEquals(10039L, account.getBalance());
+        }
+    }
+
+    @Test
+    void closeMonth_Resumed_DoesNotPostTwice() throws IOException {
+        Path checkpoint = tempDir.resolve("close.checkpoint");
+        closeService.closeMonth(Month.JUNE, checkpoint);
+
+        // Every shard is in the checkpoint, so the resumed close has nothing left to do
+        CloseSummary resumed = closeService.closeMonth(Month.JUNE, checkpoint);
+        assertTrue(resumed.getShards().stream().allMatch(CloseSummary.ShardReport::isFromCheckpoint));
+
+        // Without the checkpoint, accounts that already have their interest are skipped
+        Files.delete(checkpoint);
+        CloseSummary rerun = closeService.closeMonth(Month.JUNE, checkpoint);
+        assertEquals(0, rerun.getPosted());
+        for (BankAccount account : dataStore.getAllBankAccounts()) {
+            assertEquals(2, account.getTransactions().size());
+            assertEquals(10039L, account.getBalance());
+        }
+    }
+
+    @Test
+    void closeMonth_WithArchive_MovesClosedMonthOutOfHeap() throws IOException, ParseException,
+            NoSuchFieldException, IllegalAccessException {
+        Field archiveField = MonthEndCloseService.class.getDeclaredField("ARCHIVE");
+        archiveField.setAccessible(true);
+        try (MappedTransactionArchive archive = MappedTransactionArchive.create(tempDir.resolve("bank.archive"))) {
+            archiveField.set(closeService, archive);
+            closeService.closeMonth(Month.JUNE, tempDir.resolve("close.checkpoint"));
+
+            dataStore.deposit("AC0", Year.now().getValue() + "0702", 500L, "D");
+            BankAccount account = dataStore.getBankAccount("AC0");
+            // The July deposit is after the closed month, so it stays on the heap
+            assertEquals(2, account.getTransactionLog().getArchivedSize());
+            assertEquals(3, account.getTransactions().size());
+            Transaction interest = account.getTransactions(YearMonth.of(Year.now().getValue(), Month.JUNE)).get(1);
+            assertEquals("I", interest.getType());
+            assertEquals(10039L, interest.getBalance());
+            assertEquals(10539L, account.getBalance());
+            assertEquals(2, dataStore.getBankAccount("AC1").getTransactionLog().getArchivedSize());
+            assertTrue(archive.getArchivedBytes() > 0);
+
+            // The interest in the archive is still found, so it is not posted twice
+            Files.delete(tempDir.resolve("close.checkpoint"));
+            assertEquals(0, closeService.closeMonth(Month.JUNE, tempDir.resolve("close.checkpoint")).getPosted());
+        } finally {
+            archiveField.set(closeService, null);
+        }
+    }
+}
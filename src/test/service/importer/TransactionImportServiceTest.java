@@ -0,0 +1,133 @@
+package test.service.importer;
+
+import main.models.BankAccount;
+import main.models.Transaction;
+import main.repository.BankDataStore;
+import main.service.importer.ImportSummary;
+import main.service.importer.TransactionImportService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionImportServiceTest {
+
+    private TransactionImportService importService;
+    private BankDataStore dataStore;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws NoSuchFieldException, IllegalAccessException {
+        importService = TransactionImportService.getInstance();
+        dataStore = BankDataStore.newInstance();
+
+        // Using reflection here to set the package-private DATA_STORE field
+        Field dataStoreField = TransactionImportService.class.getDeclaredField("DATA_STORE");
+        dataStoreField.setAccessible(true);
+        dataStoreField.set(importService, dataStore);
+    }
+
+    @Test
+    void importTransactions_FeedLargerThanChunk_AppliesLinesInFileOrder() throws IOException {
+        // About 1.5 MB of CRLF lines, so lines straddle the 1 MB chunks, with no line break after the last line
+        int lines = 60_000;
+        int rejectedLine = 50_001;
+        StringBuilder feed = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            if (i + 1 == rejectedLine) {
+                feed.append("20230602|AC1|X|1.00\r\n");
+            } else {
+                feed.append("2023060").append(1 + i / 20_000).append("|AC").append(i % 50).append("|D|")
+                        .append(i / 100).append('.').append(String.format("%02d", i % 100)).append("\r\n");
+            }
+        }
+        feed.append("20230603|AC0|W|0.01");
+        Path feedFile = tempDir.resolve("feed.txt");
+        Path report = tempDir.resolve("feed.txt.rejected");
+        Files.writeString(feedFile, feed, StandardCharsets.UTF_8);
+
+        ImportSummary summary = importService.importTransactions(feedFile, report);
+
+        assertEquals(lines + 1, summary.getLinesRead());
+        // The first line deposits 0.00, which is not a valid amount
+        assertEquals(lines - 1, summary.getAccepted());
+        assertEquals(2, summary.getRejected());
+        assertEquals(List.of("1|Invalid amount. Amount should be greater than 0.|20230601|AC0|D|0.00",
+                        rejectedLine + "|Invalid transaction type. Use 'D' for deposit or 'W' for withdrawal."
+                                + "|20230602|AC1|X|1.00"),
+                Files.readAllLines(report, StandardCharsets.UTF_8));
+        // Chunks are parsed in parallel but applied in file order, so every account has its amounts in order
+        for (int account = 0; account < 50; account++) {
+            List<Transaction> transactions = dataStore.getBankAccount("AC" + account).getTransactions();
+            for (int i = 1; i < transactions.size(); i++) {
+                if ("D".equals(transactions.get(i).getType())) {
+                    assertTrue(transactions.get(i).getAmount() > transactions.get(i - 1).getAmount());
+                }
+            }
+        }
+        BankAccount lastAccount = dataStore.getBankAccount("AC0");
+        assertEquals("W", lastAccount.getLastTransaction().getType());
+        // Its 1200 deposit lines, less the first and the rejected one, and the withdrawal
+        assertEquals(1200 - 2 + 1, lastAccount.getTransactionCount());
+    }
+
+    @Test
+    void importTransactions_LineLongerThanChunk_GrowsBuffer() throws IOException {
+        String longLine = "x".repeat(3 << 20);
+        Path feedFile = tempDir.resolve("feed.txt");
+        Path report = tempDir.resolve("feed.txt.rejected");
+        Files.writeString(feedFile, "20230601|AC001|D|100.00\n" + longLine + "\n20230602|AC001|D|50.00\n",
+                StandardCharsets.UTF_8);
+
+        ImportSummary summary = importService.importTransactions(feedFile, report);
+
+        assertEquals(3, summary.getLinesRead());
+        assertEquals(2, summary.getAccepted());
+        assertEquals(List.of("2|Invalid input format. Please use the format <Date>|<Account>|<Type>|<Amount>.|"
+                + longLine), Files.readAllLines(report, StandardCharsets.UTF_8));
+        assertEquals(15000L, dataStore.getBankAccount("AC001").getBalance());
+    }
+
+    @Test
+    void importTransactions_IdempotencyKeys_RejectsReplaysAndEmptyKeys() throws IOException {
+        Path feedFile = tempDir.resolve("feed.txt");
+        Path report = tempDir.resolve("feed.txt.rejected");
+        Files.writeString(feedFile, "20230601|AC001|D|100.00|k1\n"
+                + "20230601|AC001|D|100.00|k2\n"
+                + "20230601|AC001|D|100.00|\n"
+                + "20230601|AC001|D|100.00|k1\n"
+                + "20230601|AC001|W|500.00|k3\n"
+                + "20230601|AC001|D|100.00\n"
+                + "20230601|AC001|D|100.00|k4|extra\n", StandardCharsets.UTF_8);
+
+        ImportSummary summary = importService.importTransactions(feedFile, report);
+
+        assertEquals(3, summary.getAccepted());
+        assertEquals(List.of("3|Invalid idempotency key. Key must not be empty.|20230601|AC001|D|100.00|",
+                        "4|Duplicate transaction. It was already posted.|20230601|AC001|D|100.00|k1",
+                        "5|Withdrawal amount exceeds account balance.|20230601|AC001|W|500.00|k3",
+                        "7|Invalid input format. Please use the format <Date>|<Account>|<Type>|<Amount>.|"
+                                + "20230601|AC001|D|100.00|k4|extra"),
+                Files.readAllLines(report, StandardCharsets.UTF_8));
+        assertEquals(30000L, dataStore.getBankAccount("AC001").getBalance());
+
+        // A posting that was rejected for another reason can be retried with its key
+        Files.writeString(feedFile, "20230601|AC001|W|300.00|k3\n20230601|AC001|D|100.00\n", StandardCharsets.UTF_8);
+        summary = importService.importTransactions(feedFile, report);
+
+        assertEquals(1, summary.getAccepted());
+        assertEquals(List.of("2|Duplicate transaction. It was already posted.|20230601|AC001|D|100.00"),
+                Files.readAllLines(report, StandardCharsets.UTF_8));
+        assertEquals(0L, dataStore.getBankAccount("AC001").getBalance());
+    }
+}
@@ -0,0 +1,131 @@
+package test.service.interchange;
+
+import main.models.BankAccount;
+import main.models.InterestRule;
+import main.models.Transaction;
+import main.repository.BankDataStore;
+import main.service.importer.ImportSummary;
+import main.service.interchange.InterchangeReader;
+import main.service.interchange.InterchangeService;
+import main.service.interchange.InterchangeWriter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InterchangeServiceTest {
+
+    private InterchangeService interchangeService;
+    private Field dataStoreField;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws NoSuchFieldException {
+        interchangeService = InterchangeService.getInstance();
+        // Using reflection here to set the package-private DATA_STORE field
+        dataStoreField = InterchangeService.class.getDeclaredField("DATA_STORE");
+        dataStoreField.setAccessible(true);
+    }
+
+    @Test
+    void exportFile_ImportedIntoEmptyStore_RestoresSameState() throws IOException, ParseException,
+            IllegalAccessException {
+        BankDataStore source = BankDataStore.newInstance();
+        source.addInterestRule(new InterestRule("20230515", "RULE02", 1.90));
+        source.addInterestRule(new InterestRule("20230615", "RULE03", 2.20));
+        source.deposit("AC001", "20230526", 10000L, "D");
+        source.deposit("AC001", "20230601", 15000L, "D");
+        source.withdrawIfSufficient("AC001", "20230626", 2000L);
+        source.deposit("AC001", "20230630", 39L, "I");
+        for (int i = 0; i < 10_000; i++) {
+            source.deposit("AC" + (i % 100 + 100), "20230701", 100L + i, "D");
+        }
+        Path file = tempDir.resolve("bank.bin");
+        dataStoreField.set(interchangeService, source);
+        assertEquals(10_006, interchangeService.exportFile(file));
+
+        BankDataStore target = BankDataStore.newInstance();
+        dataStoreField.set(interchangeService, target);
+        ImportSummary summary = interchangeService.importFile(file, tempDir.resolve("bank.bin.rejected"));
+
+        assertEquals(10_006, summary.getLinesRead());
+        assertEquals(0, summary.getRejected());
+        assertEquals(2, target.getAllInterestRules().size());
+        assertEquals(22000L, target.getAllInterestRules().get(1).getRatePpm());
+        assertEquals(101, target.getAllBankAccounts().size());
+        for (BankAccount account : source.getAllBankAccounts()) {
+            BankAccount restored = target.getBankAccount(account.getAccountNumber());
+            assertEquals(account.getBalance(), restored.getBalance());
+            assertEquals(account.getTransactions().size(), restored.getTransactions().size());
+        }
+        List<Transaction> transactions = target.getBankAccount("AC001").getTransactions();
+        assertEquals("W", transactions.get(2).getType());
+        assertEquals("I", transactions.get(3).getType());
+        assertEquals("20230630", transactions.get(3).getDateString());
+    }
+
+    @Test
+    void importFile_InvalidRecords_ReportsThemWithRecordNumber() throws IOException, IllegalAccessException {
+        Path file = tempDir.resolve("feed.bin");
+        try (InterchangeWriter writer = InterchangeWriter.create(file)) {
+            writer.writeTransaction("AC001", 19509, Transaction.DEPOSIT, 10000L);
+            writer.writeTransaction("AC001", 19510, Transaction.WITHDRAWAL, 20000L);
+            writer.writeTransaction("AC001", 19510, (byte) 'X', 100L);
+            writer.writeTransaction("AC002", 19510, Transaction.DEPOSIT, -5L);
+            writer.writeTransaction("AC001", 19511, Transaction.WITHDRAWAL, 2500L);
+        }
+        BankDataStore dataStore = BankDataStore.newInstance();
+        dataStoreField.set(interchangeService, dataStore);
+        Path report = tempDir.resolve("feed.bin.rejected");
+
+        ImportSummary summary = interchangeService.importFile(file, report);
+
+        assertEquals(5, summary.getLinesRead());
+        assertEquals(2, summary.getAccepted());
+        assertEquals(3, summary.getRejected());
+        assertEquals(7500L, dataStore.getBankAccount("AC001").getBalance());
+        List<String> rejected = Files.readAllLines(report);
+        assertEquals(3, rejected.size());
+        assertTrue(rejected.get(0).startsWith("2|"));
+        assertTrue(rejected.get(0).endsWith("|20230602|AC001|W|200.00"));
+        assertTrue(rejected.get(1).startsWith("3|Invalid transaction type."));
+        assertTrue(rejected.get(2).startsWith("4|"));
+    }
+
+    @Test
+    void importFile_TruncatedRecord_Fails() throws IOException, IllegalAccessException {
+        Path file = tempDir.resolve("feed.bin");
+        try (InterchangeWriter writer = InterchangeWriter.create(file)) {
+            writer.writeTransaction("AC001", 19509, Transaction.DEPOSIT, 10000L);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        dataStoreField.set(interchangeService, BankDataStore.newInstance());
+
+        assertThrows(IOException.class, () -> interchangeService.importFile(file, tempDir.resolve("rejected")));
+    }
+
+    @Test
+    void isInterchangeFile_TextFeed_ReturnsFalse() throws IOException {
+        Path text = Files.writeString(tempDir.resolve("feed.txt"), "20230601|AC001|D|100.00\n");
+        Path binary = tempDir.resolve("feed.bin");
+        InterchangeWriter.create(binary).close();
+
+        assertFalse(InterchangeReader.isInterchangeFile(text));
+        assertTrue(InterchangeReader.isInterchangeFile(binary));
+        assertThrows(IOException.class, () -> InterchangeReader.open(text));
+    }
+}
@@ -0,0 +1,178 @@
+package test.service.ledger;
+
+import main.exceptions.InvalidInputException;
+import main.models.BankAccount;
+import main.models.LedgerTotals;
+import main.models.Transaction;
+import main.models.TransactionHistory;
+import main.models.TransactionLog;
+import main.repository.BankDataStore;
+import main.repository.BankDataStoreI;
+import main.service.ledger.LedgerService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LedgerServiceTest {
+
+    private LedgerService ledgerService;
+    private BankDataStoreI dataStore;
+
+    @BeforeEach
+    void setUp() throws NoSuchFieldException, IllegalAccessException {
+        ledgerService = LedgerService.getInstance();
+        dataStore = BankDataStore.newInstance();
+
+        // Using reflection here to set the private DATA_STORE field
+        Field dataStoreField = LedgerService.class.getDeclaredField("DATA_STORE");
+        dataStoreField.setAccessible(true);
+        dataStoreField.set(ledgerService, dataStore);
+    }
+
+    @Test
+    void getDailyTotals_CountsEveryPostingOfTheDay() throws ParseException {
+        dataStore.deposit("AC001", "20230601", 10000L, "D");
+        dataStore.deposit("AC002", "20230601", 5000L, "D");
+        dataStore.withdrawIfSufficient("AC001", "20230601", 2500L);
+        // Rejected postings are not counted
+        dataStore.withdrawIfSufficient("AC002", "20230601", 9000L);
+        dataStore.deposit("AC001", "20230630", 39L, "I");
+        dataStore.deposit("AC001", "20230701", 100L, "D");
+
+        LedgerTotals june1 = ledgerService.getDailyTotals(LocalDate.of(2023, 6, 1));
+        assertEquals(2, june1.getDepositCount());
+        assertEquals(15000L, june1.getDeposits());
+        assertEquals(1, june1.getWithdrawalCount());
+        assertEquals(2500L, june1.getWithdrawals());
+        assertEquals(12500L, june1.getNetFlow());
+
+        LedgerTotals june = ledgerService.getMonthlyTotals(YearMonth.of(2023, 6));
+        assertEquals(15000L, june.getDeposits());
+        assertEquals(1, june.getInterestCount());
+        assertEquals(39L, june.getInterest());
+        assertEquals(12539L, june.getNetFlow());
+
+        List<LedgerTotals> days = ledgerService.getDailyTotals(LocalDate.of(2023, 6, 29), LocalDate.of(2023, 7, 1));
+        assertEquals(3, days.size());
+        assertEquals(0L, days.get(0).getNetFlow());
+        assertEquals(39L, days.get(1).getNetFlow());
+        assertEquals(100L, days.get(2).getNetFlow());
+    }
+
+    @Test
+    void getDailyTotals_StartAfterEnd_ThrowsException() {
+        assertThrows(InvalidInputException.class,
+                () -> ledgerService.getDailyTotals(LocalDate.of(2023, 6, 2), LocalDate.of(2023, 6, 1)));
+    }
+
+    @Test
+    void getMonthlyTotals_AccountRestoredWithHistory_RebuildsFirst() throws ParseException {
+        dataStore.deposit("AC001", "20230601", 10000L, "D");
+        // Posted before the store knows about the account, as when it is restored
+        BankAccount restored = new BankAccount("AC002");
+        restored.deposit("20230602", 7000L, "D");
+        restored.withdraw("20230603", 1000L);
+        dataStore.addAccount(restored);
+
+        assertFalse(dataStore.getLedger().isComplete());
+        LedgerTotals june = ledgerService.getMonthlyTotals(YearMonth.of(2023, 6));
+
+        assertTrue(dataStore.getLedger().isComplete());
+        assertEquals(17000L, june.getDeposits());
+        assertEquals(1000L, june.getWithdrawals());
+    }
+
+    @Test
+    void getMonthlyTotals_AccountWithPendingHistory_LeavesHistoryPending() {
+        int june2 = (int) LocalDate.of(2023, 6, 2).toEpochDay();
+        TransactionHistory history = new TransactionHistory() {
+            @Override
+            public int size() {
+                return 2;
+            }
+
+            @Override
+            public void copyTo(TransactionLog log) {
+                log.append(june2, Transaction.DEPOSIT, 7000L, 7000L, 1);
+                log.append(june2 + 1, Transaction.WITHDRAWAL, 1000L, 6000L, 1);
+            }
+        };
+        // Restored as from a snapshot, with the transactions left in the history until they are needed
+        BankAccount restored = new BankAccount("AC001", 6000L, june2 + 1, history, dataStore.getInterestRates(),
+                dataStore.getLedger());
+        dataStore.addAccount(restored);
+
+        LedgerTotals june = ledgerService.getMonthlyTotals(YearMonth.of(2023, 6));
+
+        assertEquals(7000L, june.getDeposits());
+        assertEquals(1000L, june.getWithdrawals());
+        assertSame(history, restored.getPendingHistory());
+    }
+
+    @Test
+    void rebuild_WhilePosting_CountsEveryPostingOnce() throws Exception {
+        int accounts = 200;
+        int postingsPerAccount = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> postings = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                int first = thread;
+                postings.add(executor.submit(() -> {
+                    for (int i = 0; i < postingsPerAccount; i++) {
+                        String date = String.format("2023%02d%02d", 1 + i / 50, 1 + i % 50 / 2);
+                        for (int account = first; account < accounts; account += 4) {
+                            dataStore.deposit("AC" + account, date, 100L, "D");
+                            dataStore.withdrawIfSufficient("AC" + account, date, 30L);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            // Rebuilds race with the postings, and with accounts being opened
+            for (int i = 0; i < 5; i++) {
+                ledgerService.rebuild();
+            }
+            for (Future<?> posting : postings) {
+                posting.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long deposits = 0L;
+        long withdrawals = 0L;
+        for (BankAccount account : dataStore.getAllBankAccounts()) {
+            for (Transaction transaction : account.getTransactions()) {
+                if (transaction.getTypeCode() == Transaction.WITHDRAWAL) {
+                    withdrawals += transaction.getAmount();
+                } else {
+                    deposits += transaction.getAmount();
+                }
+            }
+        }
+        long depositCount = 0L;
+        long ledgerDeposits = 0L;
+        long ledgerWithdrawals = 0L;
+        for (int month = 1; month <= 12; month++) {
+            LedgerTotals totals = ledgerService.getMonthlyTotals(YearMonth.of(2023, month));
+            depositCount += totals.getDepositCount();
+            ledgerDeposits += totals.getDeposits();
+            ledgerWithdrawals += totals.getWithdrawals();
+        }
+        assertEquals((long) accounts * postingsPerAccount, depositCount);
+        assertEquals(deposits, ledgerDeposits);
+        assertEquals(withdrawals, ledgerWithdrawals);
+    }
+}
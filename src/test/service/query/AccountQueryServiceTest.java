@@ -0,0 +1,127 @@
+package test.service.query;
+
+import main.exceptions.AccountNotFoundException;
+import main.exceptions.InvalidInputException;
+import main.models.BankAccount;
+import main.models.Transaction;
+import main.repository.BankDataStoreI;
+import main.service.query.AccountQueryService;
+import main.service.query.BalanceSummary;
+import main.util.Money;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.lang.reflect.Field;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class AccountQueryServiceTest {
+
+    private AccountQueryService queryService;
+    private AutoCloseable mocks;
+
+    @Mock
+    private BankDataStoreI dataStore;
+
+    @BeforeEach
+    void setUp() throws NoSuchFieldException, IllegalAccessException {
+        mocks = MockitoAnnotations.openMocks(this);
+        queryService = AccountQueryService.getInstance();
+
+        // Using reflection here to set the private DATA_STORE field
+        Field dataStoreField = AccountQueryService.class.getDeclaredField("DATA_STORE");
+        dataStoreField.setAccessible(true);
+        dataStoreField.set(queryService, dataStore);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mocks.close();
+    }
+
+    @Test
+    void getBalanceAsOf_AccountNotFound_ThrowsException() {
+        when(dataStore.getBankAccount("AC404")).thenReturn(null);
+
+        assertThrows(AccountNotFoundException.class,
+                () -> queryService.getBalanceAsOf("AC404", LocalDate.of(2023, 6, 1)));
+    }
+
+    @Test
+    void getBalanceAsOf_ReturnsEndOfDayBalance() throws ParseException {
+        BankAccount bankAccount = createAccount();
+        when(dataStore.getBankAccount("AC001")).thenReturn(bankAccount);
+
+        assertEquals(0L, queryService.getBalanceAsOf("AC001", LocalDate.of(2023, 5, 31)));
+        assertEquals(Money.parse("150.00"), queryService.getBalanceAsOf("AC001", LocalDate.of(2023, 6, 1)));
+        assertEquals(Money.parse("150.00"), queryService.getBalanceAsOf("AC001", LocalDate.of(2023, 6, 9)));
+        assertEquals(Money.parse("80.00"), queryService.getBalanceAsOf("AC001", LocalDate.of(2023, 6, 10)));
+        assertEquals(Money.parse("280.00"), queryService.getBalanceAsOf("AC001", LocalDate.of(2024, 1, 1)));
+    }
+
+    @Test
+    void getTransactions_ReturnsTransactionsInRange() throws ParseException {
+        BankAccount bankAccount = createAccount();
+        when(dataStore.getBankAccount("AC001")).thenReturn(bankAccount);
+
+        List<Transaction> transactions = queryService.getTransactions("AC001", LocalDate.of(2023, 6, 2),
+                LocalDate.of(2023, 6, 20));
+
+        assertEquals(2, transactions.size());
+        assertEquals("20230610", transactions.get(0).getDateString());
+        assertEquals("20230620", transactions.get(1).getDateString());
+        assertTrue(queryService.getTransactions("AC001", LocalDate.of(2023, 6, 2), LocalDate.of(2023, 6, 9))
+                .isEmpty());
+        assertEquals(4, queryService.getTransactions("AC001", LocalDate.of(2023, 1, 1), LocalDate.of(2023, 12, 31))
+                .size());
+    }
+
+    @Test
+    void getTransactions_StartAfterEnd_ThrowsException() {
+        assertThrows(InvalidInputException.class,
+                () -> queryService.getTransactions("AC001", LocalDate.of(2023, 6, 2), LocalDate.of(2023, 6, 1)));
+    }
+
+    @Test
+    void getDailyBalanceSummary_WeighsEveryDayByItsEndOfDayBalance() throws ParseException {
+        BankAccount bankAccount = createAccount();
+        when(dataStore.getBankAccount("AC001")).thenReturn(bankAccount);
+
+        // 9 days at 150.00, 10 days at 80.00, 11 days at 280.00
+        BalanceSummary summary = queryService.getDailyBalanceSummary("AC001", LocalDate.of(2023, 6, 1),
+                LocalDate.of(2023, 6, 30));
+
+        assertEquals(Money.parse("80.00"), summary.getMinBalance());
+        assertEquals(Money.parse("280.00"), summary.getMaxBalance());
+        assertEquals(Math.round((9 * 15000 + 10 * 8000 + 11 * 28000) / 30.0), summary.getAverageBalance());
+    }
+
+    @Test
+    void getDailyBalanceSummary_RangeBeforeFirstPosting_ReturnsZeroBalances() throws ParseException {
+        BankAccount bankAccount = createAccount();
+        when(dataStore.getBankAccount("AC001")).thenReturn(bankAccount);
+
+        BalanceSummary summary = queryService.getDailyBalanceSummary("AC001", LocalDate.of(2023, 5, 1),
+                LocalDate.of(2023, 5, 31));
+
+        assertEquals(0L, summary.getMinBalance());
+        assertEquals(0L, summary.getMaxBalance());
+        assertEquals(0L, summary.getAverageBalance());
+    }
+
+    private BankAccount createAccount() throws ParseException {
+        BankAccount bankAccount = new BankAccount("AC001");
+        bankAccount.deposit("20230601", Money.parse("100.00"), "D");
+        bankAccount.deposit("20230601", Money.parse("50.00"), "D");
+        bankAccount.withdraw("20230610", Money.parse("70.00"));
+        bankAccount.deposit("20230620", Money.parse("200.00"), "D");
+        return bankAccount;
+    }
+}
@@ -0,0 +1,146 @@
+package test.service.statement;
+
+import main.models.BankAccount;
+import main.models.InterestRule;
+import main.repository.BankDataStore;
+import main.repository.BankDataStoreI;
+import main.service.statement.StatementExportService;
+import main.service.statement.StatementExportSummary;
+import main.service.statement.StatementLayout;
+import main.service.statement.StatementRenderer;
+import main.service.statement.StatementService;
+import main.service.statement.StatementSink;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Month;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatementExportServiceTest {
+
+    private static final int YEAR = Year.now().getValue();
+    private static final YearMonth JUNE = YearMonth.of(YEAR, Month.JUNE);
+
+    @TempDir
+    Path tempDir;
+
+    private StatementExportService exportService;
+    private BankDataStoreI dataStore;
+
+    @BeforeEach
+    void setUp() throws NoSuchFieldException, IllegalAccessException, ParseException {
+        exportService = StatementExportService.getInstance();
+        dataStore = BankDataStore.newInstance();
+        dataStore.addInterestRule(new InterestRule(YEAR + "0101", "RULE01", 2.0));
+
+        // Using reflection here to point the export and the statement service at the same store
+        setDataStore(StatementExportService.class, exportService);
+        setDataStore(StatementService.class, StatementService.getInstance());
+    }
+
+    @Test
+    void exportStatements_FilePerAccount_WritesStatementWithUnpostedInterest() throws ParseException, IOException {
+        addHistory("AC001", 3);
+        addHistory("AC/002", 5);
+        BankAccount account = dataStore.getBankAccount("AC001");
+        int transactionCount = account.getTransactionCount();
+
+        StatementExportSummary summary = exportService.exportStatements(Month.JUNE, StatementLayout.TEXT,
+                tempDir.resolve("statements"), false);
+
+        assertEquals(2, summary.getAccounts());
+        assertEquals(2, summary.getFiles());
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(tempDir.resolve("statements"))) {
+            files = listing.sorted().collect(Collectors.toList());
+        }
+        assertEquals(2, files.size());
+        assertEquals("AC001-" + JUNE + ".txt", files.get(0).getFileName().toString());
+        assertTrue(files.get(1).getFileName().toString().startsWith("AC_002-"));
+
+        long interest = StatementService.getInstance().generateMonthlyInterestForAccount("AC001", Month.JUNE);
+        assertEquals(expectedStatement(account, interest, account.getBalance() + interest),
+                Files.readString(files.get(0), StandardCharsets.UTF_8));
+        assertEquals(summary.getBytes(), Files.size(files.get(0)) + Files.size(files.get(1)));
+        // The interest is only shown, not posted
+        assertEquals(transactionCount, account.getTransactionCount());
+    }
+
+    @Test
+    void exportStatements_InterestPosted_WritesPostedInterest() throws ParseException, IOException {
+        addHistory("AC001", 3);
+        dataStore.deposit("AC001", YEAR + "0630", 123L, "I");
+        BankAccount account = dataStore.getBankAccount("AC001");
+
+        exportService.exportStatements(Month.JUNE, StatementLayout.TEXT, tempDir, false);
+
+        assertEquals(expectedStatement(account, 123L, account.getBalance()),
+                Files.readString(tempDir.resolve("AC001-" + JUNE + ".txt"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void exportStatements_SingleCsvFile_OneHeaderAndWholeStatements() throws ParseException, IOException {
+        int accounts = 300;
+        for (int i = 0; i < accounts; i++) {
+            // Long statements take more than the buffers of a worker
+            addHistory("AC" + i, i % 100 == 0 ? 20_000 : 1 + i % 7);
+        }
+        Path file = tempDir.resolve("june.csv");
+
+        StatementExportSummary summary = exportService.exportStatements(Month.JUNE, StatementLayout.CSV, file, true);
+
+        assertEquals(accounts, summary.getAccounts());
+        assertEquals(1, summary.getFiles());
+        assertEquals(Files.size(file), summary.getBytes());
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals("Account,Date,Txn Id,Type,Amount,Balance", lines.get(0));
+        assertEquals(1, lines.stream().filter(line -> line.startsWith("Account,")).count());
+        // Every statement is contiguous and ends with its interest line
+        int line = 1;
+        for (int i = 0; i < accounts; i++) {
+            String account = lines.get(line).substring(0, lines.get(line).indexOf(','));
+            int rows = dataStore.getBankAccount(account).getTransactions(JUNE).size();
+            for (int row = 0; row < rows; row++) {
+                assertTrue(lines.get(line++).startsWith(account + ","));
+            }
+            assertTrue(lines.get(line++).startsWith(account + "," + YEAR + "0630,,I,"));
+        }
+        assertEquals(lines.size(), line);
+    }
+
+    private void addHistory(String account, int postings) throws ParseException {
+        for (int i = 0; i < postings; i++) {
+            String date = String.format("%d06%02d", YEAR, 1 + i * 29 / postings);
+            dataStore.deposit(account, date, 1000L + i, "D");
+        }
+    }
+
+    private static String expectedStatement(BankAccount account, long interest, long balance) throws IOException {
+        StringWriter writer = new StringWriter();
+        StatementRenderer renderer = new StatementRenderer(StatementLayout.TEXT, StatementSink.of(writer));
+        renderer.renderStatement(account, JUNE);
+        renderer.writeInterest((int) JUNE.atEndOfMonth().toEpochDay(), interest, balance);
+        renderer.flush();
+        return writer.toString();
+    }
+
+    private void setDataStore(Class<?> type, Object target) throws NoSuchFieldException, IllegalAccessException {
+        Field dataStoreField = type.getDeclaredField("DATA_STORE");
+        dataStoreField.setAccessible(true);
+        dataStoreField.set(target, dataStore);
+    }
+}
@@ -0,0 +1,134 @@
+package test.service.statement;
+
+import main.models.BankAccount;
+import main.models.Transaction;
+import main.service.statement.StatementLayout;
+import main.service.statement.StatementRenderer;
+import main.service.statement.StatementSink;
+import main.util.Money;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatementRendererTest {
+
+    @Test
+    void renderStatement_Text_SameAsPrintf() throws ParseException, IOException {
+        BankAccount bankAccount = accountWithHistory("AC001");
+        StringWriter writer = new StringWriter();
+
+        new StatementRenderer(StatementLayout.TEXT, StatementSink.of(writer)).renderStatement(bankAccount, YearMonth.of(2023, 6));
+
+        StringBuilder expected = new StringBuilder("Account: AC001\nDate \t\t| Txn Id \t\t| Type \t| Amount \t| Balance \t|\n");
+        for (Transaction transaction : bankAccount.getTransactions(YearMonth.of(2023, 6))) {
+            if (transaction.getTypeCode() != Transaction.INTEREST) {
+                expected.append(String.format("%s \t| %s \t| %s \t| %s \t| %s \t|\n", transaction.getDateString(),
+                        transaction.getTransactionId(), transaction.getType(), Money.format(transaction.getAmount()),
+                        Money.format(transaction.getBalance())));
+            }
+        }
+        assertEquals(expected.toString(), writer.toString());
+    }
+
+    @Test
+    void writeInterest_Text_SameAsPrintf() throws IOException {
+        StringWriter writer = new StringWriter();
+        StatementRenderer renderer = new StatementRenderer(StatementLayout.TEXT, StatementSink.of(writer));
+
+        renderer.writeInterest((int) LocalDate.of(2023, 6, 30).toEpochDay(), 39L, 13039L);
+        renderer.flush();
+
+        assertEquals(String.format("%s \t| %s \t\t\t| %s \t| %s \t\t| %s \t|\n", "20230630", " ", "I", "0.39", "130.39"),
+                writer.toString());
+    }
+
+    @Test
+    void renderStatement_Csv_HeaderOnceAndQuotedAccount() throws ParseException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StatementRenderer renderer = new StatementRenderer(StatementLayout.CSV, StatementSink.of(Channels.newChannel(out)));
+
+        BankAccount first = accountWithHistory("AC,1");
+        BankAccount second = accountWithHistory("AC002");
+        renderer.renderStatement(first, YearMonth.of(2023, 7));
+        renderer.renderStatement(second, YearMonth.of(2023, 7));
+
+        assertEquals(List.of("Account,Date,Txn Id,Type,Amount,Balance",
+                "\"AC,1\",20230701," + first.getLastTransaction().getTransactionId() + ",W,0.50,199.89",
+                "AC002,20230701," + second.getLastTransaction().getTransactionId() + ",W,0.50,199.89"),
+                out.toString(StandardCharsets.UTF_8).lines().toList());
+    }
+
+    @Test
+    void renderStatement_FixedWidth_ColumnsAligned() throws ParseException, IOException {
+        StringWriter writer = new StringWriter();
+
+        BankAccount bankAccount = accountWithHistory("AC001");
+
+        new StatementRenderer(StatementLayout.FIXED_WIDTH, StatementSink.of(writer)).renderStatement(bankAccount, YearMonth.of(2023, 7));
+
+        List<String> lines = writer.toString().lines().toList();
+        assertEquals("Account: AC001", lines.get(0));
+        assertEquals("Date     Txn Id        Type           Amount         Balance", lines.get(1));
+        assertEquals(String.format("20230701 %-14sW                0.50          199.89",
+                bankAccount.getLastTransaction().getTransactionId()), lines.get(2));
+    }
+
+    @Test
+    void renderStatement_SmallBuffer_RowsNeverSplit() throws ParseException, IOException {
+        BankAccount bankAccount = new BankAccount("AC001");
+        for (int day = 1; day <= 30; day++) {
+            bankAccount.deposit(String.format("202306%02d", day), 100L * day, "D");
+        }
+        StringBuilder written = new StringBuilder();
+        int[] writes = new int[1];
+        StatementSink sink = (bytes, offset, length) -> {
+            String text = new String(bytes, offset, length, StandardCharsets.UTF_8);
+            assertTrue(text.endsWith("\n"));
+            written.append(text);
+            writes[0]++;
+        };
+
+        new StatementRenderer(StatementLayout.TEXT, sink, 256).renderStatement(bankAccount, null);
+
+        assertTrue(writes[0] > 1);
+        assertEquals(32, written.toString().lines().count());
+    }
+
+    @Test
+    void startTable_Csv_WritesHeaderAgainOnlyIfAsked() throws ParseException, IOException {
+        StringWriter writer = new StringWriter();
+        StatementRenderer renderer = new StatementRenderer(StatementLayout.CSV, StatementSink.of(writer));
+        BankAccount bankAccount = accountWithHistory("AC001");
+
+        renderer.startTable(false);
+        renderer.renderStatement(bankAccount, YearMonth.of(2023, 6));
+        renderer.startTable(true);
+        renderer.renderStatement(bankAccount, YearMonth.of(2023, 6));
+
+        String[] lines = writer.toString().split("\n");
+        assertTrue(lines[0].startsWith("AC001,"));
+        assertEquals(1, Arrays.stream(lines).filter(line -> line.startsWith("Account,")).count());
+        assertEquals("Account,Date,Txn Id,Type,Amount,Balance", lines[3]);
+    }
+
+    private static BankAccount accountWithHistory(String accountNumber) throws ParseException {
+        BankAccount bankAccount = new BankAccount(accountNumber);
+        bankAccount.deposit("20230601", 10000L, "D");
+        bankAccount.deposit("20230615", 15050L, "D");
+        bankAccount.withdraw("20230620", 5050L);
+        bankAccount.deposit("20230630", 39L, "I");
+        bankAccount.withdraw("20230701", 50L);
+        return bankAccount;
+    }
+}
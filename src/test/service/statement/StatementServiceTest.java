@@ -4,17 +4,25 @@ import main.exceptions.AccountNotFoundException;
 import main.models.BankAccount;
 import main.models.InterestRule;
 import main.models.Transaction;
+import main.repository.BankDataStore;
 import main.repository.BankDataStoreI;
+import main.service.statement.StatementLayout;
 import main.service.statement.StatementService;
+import main.service.statement.StatementSink;
+import main.util.Money;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.lang.reflect.Field;
 import java.text.ParseException;
 import java.time.LocalDate;
 import java.time.Month;
+import java.time.Year;
+import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -55,9 +63,9 @@ public class StatementServiceTest {
         BankAccount bankAccount = new BankAccount(accountID);
         when(dataStore.getBankAccount(accountID)).thenReturn(bankAccount);
 
-        Double interest = statementService.generateMonthlyInterestForAccount(accountID, Month.JANUARY);
+        long interest = statementService.generateMonthlyInterestForAccount(accountID, Month.JANUARY);
 
-        assertEquals(0.0, interest);
+        assertEquals(0L, interest);
     }
 
     public List<InterestRule> createInterestRules() throws ParseException {
@@ -72,15 +80,15 @@ public class StatementServiceTest {
         String accountID = "existingAccount";
         BankAccount bankAccount = new BankAccount(accountID);
         List<Transaction> transactions = new ArrayList<>();
-        transactions.add(new Transaction("20230602","ac001","D", 100.0, 200.0));
+        transactions.add(new Transaction("20230602","ac001","D", 10000L, 20000L));
         when(dataStore.getBankAccount(accountID)).thenReturn(bankAccount);
         when(dataStore.getAllInterestRules()).thenReturn(createInterestRules());
 
         // Call the method
-        Double interest = statementService.generateMonthlyInterestForAccount(accountID, Month.JUNE);
+        long interest = statementService.generateMonthlyInterestForAccount(accountID, Month.JUNE);
 
         // Assert
-        assertEquals(0.0, interest, 0.001);
+        assertEquals(0L, interest);
     }
 
     @Test
@@ -88,15 +96,117 @@ public class StatementServiceTest {
         // Arrange the necessary params
         LocalDate startDate = LocalDate.of(2023, 6, 1);
         LocalDate endDate = LocalDate.of(2023, 6, 30);
-        double balance = 1000.0;
+        long balance = Money.parse("1000.00");
         List<InterestRule> interestRules = createInterestRules();
 
         // Act
-        double interest = statementService.calculateInterestBetweenDates(startDate, endDate, balance, interestRules);
+        long interest = statementService.calculateInterestBetweenDates(startDate, endDate, balance, interestRules);
+
+        // Assert, the rule is in effect from June 10 to June 30
+        assertEquals(Money.accrue(balance, 21, 50_000L), interest);
+    }
+
+    @Test
+    void calculateInterestBetweenDates_RulesOutOfOrder_SameAsOrdered() throws ParseException {
+        // Arrange the necessary params
+        LocalDate startDate = LocalDate.of(2023, 6, 1);
+        LocalDate endDate = LocalDate.of(2023, 6, 30);
+        long balance = Money.parse("1000.00");
+        List<InterestRule> orderedRules = List.of(new InterestRule("20230515", "RULE02", 1.90),
+                new InterestRule("20230610", "RULE03", 5.0), new InterestRule("20230620", "RULE04", 2.20));
+        List<InterestRule> unorderedRules = List.of(orderedRules.get(2), orderedRules.get(0), orderedRules.get(1));
+
+        // Act
+        long orderedInterest = statementService.calculateInterestBetweenDates(startDate, endDate, balance, orderedRules);
+        long unorderedInterest = statementService.calculateInterestBetweenDates(startDate, endDate, balance, unorderedRules);
 
         // Assert
-        assertEquals(1000, interest, 0.001);
+        assertEquals(orderedInterest, unorderedInterest);
+        assertEquals(Money.accrue(balance, 9, 19_000L) + Money.accrue(balance, 10, 50_000L)
+                + Money.accrue(balance, 11, 22_000L), orderedInterest);
+    }
+
+    @Test
+    void calculateInterestBetweenDates_RateCalendar_MatchesRuleOfEveryDay() throws ParseException {
+        // Arrange a real rule index, with rules spanning a year end
+        BankDataStore rulesStore = BankDataStore.newInstance();
+        rulesStore.addInterestRule(new InterestRule("20221215", "RULE01", 1.50));
+        rulesStore.addInterestRule(new InterestRule("20230520", "RULE02", 1.90));
+        rulesStore.addInterestRule(new InterestRule("20230615", "RULE03", 2.20));
+        when(dataStore.getInterestRates()).thenReturn(rulesStore.getInterestRates());
+        LocalDate startDate = LocalDate.of(2022, 12, 1);
+        LocalDate endDate = LocalDate.of(2023, 7, 10);
+        long balance = Money.parse("1000.00");
+
+        // Act and Assert
+        assertEquals(accrueDayByDay(rulesStore, startDate, endDate, balance),
+                statementService.calculateInterestBetweenDates(startDate, endDate, balance));
+
+        // A new rule only rebuilds the calendars it affects, and is picked up straight away
+        rulesStore.addInterestRule(new InterestRule("20230101", "RULE04", 3.00));
+        assertEquals(accrueDayByDay(rulesStore, startDate, endDate, balance),
+                statementService.calculateInterestBetweenDates(startDate, endDate, balance));
     }
+
+    @Test
+    void generateMonthlyInterestForAccount_Cached_InvalidatedOnlyByChangesOfTheMonth() throws ParseException {
+        // Arrange an account of a real data store, so it accrues at the rates of its rules
+        int year = Year.now().getValue();
+        BankDataStore store = BankDataStore.newInstance();
+        store.addInterestRule(new InterestRule(year + "0101", "RULE01", 2.00));
+        BankAccount bankAccount = store.getOrCreateBankAccount("AC001");
+        bankAccount.deposit(year + "0601", Money.parse("1000.00"), "D");
+        when(dataStore.getBankAccount("AC001")).thenReturn(bankAccount);
+        YearMonth june = YearMonth.of(year, Month.JUNE);
+        long interest = statementService.generateMonthlyInterestForAccount("AC001", Month.JUNE);
+        long version = bankAccount.getAccrualVersion(june);
+
+        // Rules and postings after June leave it as it is
+        store.addInterestRule(new InterestRule(year + "0801", "RULE02", 5.00));
+        store.addInterestRule(new InterestRule(year + "0710", "RULE03", 4.00));
+        bankAccount.deposit(year + "0701", Money.parse("500.00"), "D");
+        assertEquals(version, bankAccount.getAccrualVersion(june));
+        assertEquals(interest, statementService.generateMonthlyInterestForAccount("AC001", Month.JUNE));
+
+        // A rule within June changes it
+        store.addInterestRule(new InterestRule(year + "0615", "RULE04", 3.00));
+        assertNotEquals(version, bankAccount.getAccrualVersion(june));
+        long changedInterest = statementService.generateMonthlyInterestForAccount("AC001", Month.JUNE);
+        assertTrue(changedInterest > interest);
+        assertEquals(Money.accruedInterest(bankAccount.getMonthlyAccrual(june), Year.of(year).length()), changedInterest);
+    }
+
+    @Test
+    void writeStatement_Cached_InvalidatedByPostingIntoTheMonth() throws ParseException, IOException {
+        int year = Year.now().getValue();
+        BankAccount bankAccount = new BankAccount("AC001");
+        bankAccount.deposit(year + "0601", Money.parse("100.00"), "D");
+        YearMonth june = YearMonth.of(year, Month.JUNE);
+
+        String statement = writeStatement(bankAccount, june);
+        assertEquals(3, statement.lines().count());
+        assertEquals(statement, writeStatement(bankAccount, june));
+
+        bankAccount.deposit(year + "0602", Money.parse("100.00"), "D");
+        assertEquals(4, writeStatement(bankAccount, june).lines().count());
+        assertEquals(2, writeStatement(bankAccount, YearMonth.of(year, Month.JULY)).lines().count());
+    }
+
+    private String writeStatement(BankAccount bankAccount, YearMonth month) throws IOException {
+        StringWriter writer = new StringWriter();
+        statementService.writeStatement(bankAccount, month, StatementLayout.TEXT, StatementSink.of(writer));
+        return writer.toString();
+    }
+
+    private static long accrueDayByDay(BankDataStore rulesStore, LocalDate startDate, LocalDate endDate, long balance) {
+        long accrual = 0L;
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            InterestRule rule = rulesStore.getEffectiveInterestRule(date);
+            accrual += rule == null ? 0L : Money.accrue(balance, 1, rule.getRatePpm());
+        }
+        return accrual;
+    }
+
     // Not all scenarios are covered here .Similar to this can add more tests to cover different scenarios and improve coverage
 }
 
@@ -0,0 +1,68 @@
+package test.util;
+
+import main.util.DateCodec;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DateCodecTest {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    @Test
+    void parseAndFormat_EveryDay_SameAsLocalDate() {
+        byte[] buffer = new byte[DateCodec.LENGTH];
+        for (LocalDate date = LocalDate.of(1899, 1, 1); date.getYear() < 2101; date = date.plusDays(1)) {
+            String text = date.format(FORMATTER);
+            int epochDay = (int) date.toEpochDay();
+
+            assertEquals(epochDay, DateCodec.parse(text));
+            assertEquals(text, DateCodec.format(epochDay));
+            DateCodec.format(epochDay, buffer, 0);
+            assertEquals(epochDay, DateCodec.parse(buffer, 0));
+        }
+    }
+
+    @Test
+    void parse_RangeEnds_SameAsLocalDate() {
+        assertEquals(LocalDate.of(1, 1, 1).toEpochDay(), DateCodec.parse("00010101"));
+        assertEquals(LocalDate.of(9999, 12, 31).toEpochDay(), DateCodec.parse("99991231"));
+        assertEquals("00010101", DateCodec.format((int) LocalDate.of(1, 1, 1).toEpochDay()));
+        assertEquals("99991231", DateCodec.format((int) LocalDate.of(9999, 12, 31).toEpochDay()));
+    }
+
+    @Test
+    void parse_InvalidDates_Invalid() {
+        assertEquals(DateCodec.INVALID, DateCodec.parse("20230231"));
+        assertEquals(DateCodec.INVALID, DateCodec.parse("20230229"));
+        assertEquals(DateCodec.INVALID, DateCodec.parse("19000229"));
+        assertEquals(DateCodec.INVALID, DateCodec.parse("20231301"));
+        assertEquals(DateCodec.INVALID, DateCodec.parse("20230100"));
+        assertEquals(DateCodec.INVALID, DateCodec.parse("00000101"));
+        assertEquals(DateCodec.INVALID, DateCodec.parse("2023061"));
+        assertEquals(DateCodec.INVALID, DateCodec.parse("2023-6-1"));
+        assertEquals((int) LocalDate.of(2024, 2, 29).toEpochDay(), DateCodec.parse("20240229"));
+    }
+
+    @Test
+    void parse_Bytes_ReadsAtOffset() {
+        byte[] line = "AC001|20230626|D|100".getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals(LocalDate.of(2023, 6, 26).toEpochDay(), DateCodec.parse(line, 6));
+        assertEquals(DateCodec.INVALID, DateCodec.parse(line, 0));
+        assertEquals(DateCodec.INVALID, DateCodec.parse(line, line.length - 4));
+    }
+
+    @Test
+    void format_Builder_AppendsDigits() {
+        StringBuilder builder = new StringBuilder("on ");
+
+        DateCodec.format((int) LocalDate.of(2023, 6, 1).toEpochDay(), builder).append('-');
+
+        assertEquals("on 20230601-", builder.toString());
+    }
+}
@@ -0,0 +1,78 @@
+package test.util;
+
+import main.util.Money;
+import org.junit.jupiter.api.Test;
+
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoneyTest {
+
+    @Test
+    void parse_DecimalAmounts_ExactCents() {
+        assertEquals(10000L, Money.parse("100"));
+        assertEquals(10050L, Money.parse("100.5"));
+        assertEquals(2000L, Money.parse("20.00"));
+        assertEquals(-2001L, Money.parse("-20.005"));
+        assertEquals(1L, Money.parse("0.014999"));
+    }
+
+    @Test
+    void parse_Bytes_SameAsText() {
+        byte[] line = "20230626|AC001|W|100.25".getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals(10025L, Money.parse(line, 17, line.length));
+    }
+
+    @Test
+    void parse_InvalidAmount_ThrowsException() {
+        assertThrows(NumberFormatException.class, () -> Money.parse("abc"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("."));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1.2.3"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("99999999999999999999"));
+        // Beyond the maximum amount, whose accrual would not fit
+        assertEquals(Money.MAX_AMOUNT, Money.parse(Money.format(Money.MAX_AMOUNT)));
+        assertThrows(NumberFormatException.class, () -> Money.parse(Money.format(Money.MAX_AMOUNT + 1L)));
+        assertThrows(NumberFormatException.class, () -> Money.parse("90000000000000000.00"));
+    }
+
+    @Test
+    void format_Cents_TwoDecimalPlaces() {
+        assertEquals("130.39", Money.format(13039L));
+        assertEquals("0.05", Money.format(5L));
+        assertEquals("-20.00", Money.format(-2000L));
+    }
+
+    @Test
+    void format_LongRange_SameAsText() {
+        byte[] buffer = new byte[Money.MAX_FORMATTED_LENGTH];
+
+        assertEquals("-92233720368547758.08", Money.format(Long.MIN_VALUE));
+        assertEquals("92233720368547758.07", Money.format(Long.MAX_VALUE));
+        int end = Money.format(Long.MIN_VALUE, buffer, 0);
+        assertEquals("-92233720368547758.08", new String(buffer, 0, end, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void parseInterestProperties_InvalidValues_ThrowsException() {
+        assertEquals(2, Money.InterestSettings.parseAccrualScale("2"));
+        assertEquals(RoundingMode.HALF_EVEN, Money.InterestSettings.parseInterestRounding("HALF_EVEN"));
+        assertThrows(IllegalArgumentException.class, () -> Money.InterestSettings.parseAccrualScale("7"));
+        assertThrows(IllegalArgumentException.class, () -> Money.InterestSettings.parseAccrualScale("two"));
+        assertThrows(IllegalArgumentException.class, () -> Money.InterestSettings.parseInterestRounding("HALF"));
+        assertThrows(IllegalArgumentException.class, () -> Money.InterestSettings.parseInterestRounding("UNNECESSARY"));
+    }
+
+    @Test
+    void divide_RoundingModes() {
+        assertEquals(3L, Money.divide(25L, 10L, RoundingMode.HALF_UP));
+        assertEquals(2L, Money.divide(25L, 10L, RoundingMode.HALF_EVEN));
+        assertEquals(2L, Money.divide(25L, 10L, RoundingMode.HALF_DOWN));
+        assertEquals(-3L, Money.divide(-25L, 10L, RoundingMode.HALF_UP));
+        assertEquals(-2L, Money.divide(-21L, 10L, RoundingMode.CEILING));
+        assertEquals(-3L, Money.divide(-21L, 10L, RoundingMode.FLOOR));
+        assertThrows(ArithmeticException.class, () -> Money.divide(21L, 10L, RoundingMode.UNNECESSARY));
+    }
+}
@@ -0,0 +1,106 @@
+package test.util;
+
+import main.util.ResultCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResultCacheTest {
+
+    @Test
+    void get_SameStamp_Hits() {
+        ResultCache<String, String> cache = new ResultCache<>(10, value -> 1L);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("v1", cache.get("key", 1L, () -> "v" + loads.incrementAndGet()));
+        assertEquals("v1", cache.get("key", 1L, () -> "v" + loads.incrementAndGet()));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void get_NewStamp_Recomputes() {
+        ResultCache<String, String> cache = new ResultCache<>(10, value -> 1L);
+
+        cache.get("key", 1L, () -> "old");
+
+        assertEquals("new", cache.get("key", 2L, () -> "new"));
+        assertEquals("new", cache.get("key", 2L, () -> "other"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void get_OverWeight_EvictsLeastRecentlyUsed() {
+        ResultCache<String, byte[]> cache = new ResultCache<>(100, value -> value.length);
+
+        cache.get("a", 0L, () -> new byte[40]);
+        cache.get("b", 0L, () -> new byte[40]);
+        cache.get("a", 0L, () -> new byte[40]);
+        cache.get("c", 0L, () -> new byte[40]);
+
+        assertEquals(80, cache.weight());
+        byte[] reloaded = new byte[1];
+        assertSame(reloaded, cache.get("b", 0L, () -> reloaded));
+        assertNotSame(reloaded, cache.get("c", 0L, () -> reloaded));
+    }
+
+    @Test
+    void get_HeavierThanCache_NotCached() {
+        ResultCache<String, byte[]> cache = new ResultCache<>(10, value -> value.length);
+
+        cache.get("big", 0L, () -> new byte[11]);
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+    }
+
+    @Test
+    void get_ConcurrentMisses_ComputedOnce() throws Exception {
+        ResultCache<String, Integer> cache = new ResultCache<>(10, value -> 1L);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> first = executor.submit(() -> cache.get("key", 1L, () -> {
+                loading.countDown();
+                awaitQuietly(release);
+                return loads.incrementAndGet();
+            }));
+            loading.await();
+            Future<Integer> second = executor.submit(() -> cache.get("key", 1L, loads::incrementAndGet));
+            Thread.sleep(50);
+            release.countDown();
+
+            assertEquals(1, first.get());
+            assertEquals(1, second.get());
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void get_LoaderFails_NothingCached() {
+        ResultCache<String, String> cache = new ResultCache<>(10, value -> 1L);
+
+        assertThrows(IllegalStateException.class, () -> cache.get("key", 1L, () -> {
+            throw new IllegalStateException("failed");
+        }));
+
+        assertEquals("value", cache.get("key", 1L, () -> "value"));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package test.util;
+
+import main.util.TransactionIdSequencer;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionIdSequencerTest {
+
+    private final TransactionIdSequencer sequencer = TransactionIdSequencer.getInstance();
+
+    @Test
+    void next_InterleavedDates_NoReset() {
+        int firstDay = (int) LocalDate.of(2001, 3, 1).toEpochDay();
+        int secondDay = firstDay + 1;
+
+        assertEquals(1, sequencer.next(firstDay));
+        assertEquals(1, sequencer.next(secondDay));
+        assertEquals(2, sequencer.next(firstDay));
+        assertEquals(2, sequencer.next(secondDay));
+    }
+
+    @Test
+    void next_ConcurrentPostings_UniqueSequences() throws InterruptedException {
+        int epochDay = (int) LocalDate.of(2001, 4, 1).toEpochDay();
+        Set<Integer> sequences = ConcurrentHashMap.newKeySet();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.execute(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    sequences.add(sequencer.next(epochDay));
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(80_000, sequences.size());
+        assertEquals(80_000, sequencer.current(epochDay));
+    }
+
+    @Test
+    void format_PadsSequenceToTwoDigits() {
+        int epochDay = (int) LocalDate.of(2023, 6, 26).toEpochDay();
+
+        assertEquals("20230626-01", TransactionIdSequencer.format(epochDay, 1));
+        assertEquals("20230626-10", TransactionIdSequencer.format(epochDay, 10));
+    }
+}